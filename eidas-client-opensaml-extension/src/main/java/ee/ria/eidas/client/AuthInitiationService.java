@@ -2,18 +2,22 @@ package ee.ria.eidas.client;
 
 import ee.ria.eidas.client.authnrequest.AssuranceLevel;
 import ee.ria.eidas.client.authnrequest.AuthnRequestBuilder;
+import ee.ria.eidas.client.authnrequest.AuthnRequestTemplateCache;
 import ee.ria.eidas.client.authnrequest.EidasAttribute;
+import ee.ria.eidas.client.authnrequest.EidasAttributeSet;
 import ee.ria.eidas.client.authnrequest.EidasHTTPPostEncoder;
+import ee.ria.eidas.client.authnrequest.PresignedAuthnRequestPool;
 import ee.ria.eidas.client.config.EidasClientProperties;
 import ee.ria.eidas.client.exception.EidasClientException;
 import ee.ria.eidas.client.exception.InvalidRequestException;
 import ee.ria.eidas.client.metadata.IDPMetadataResolver;
+import ee.ria.eidas.client.metadata.SupportedCountries;
 import ee.ria.eidas.client.session.RequestSession;
 import ee.ria.eidas.client.session.RequestSessionService;
 import ee.ria.eidas.client.session.UnencodedRequestSession;
 import ee.ria.eidas.client.util.OpenSAMLUtils;
+import ee.ria.eidas.client.util.SAMLSigner;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
-import org.apache.commons.collections.CollectionUtils;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.encoder.MessageEncodingException;
 import org.opensaml.saml.common.messaging.context.SAMLEndpointContext;
@@ -25,89 +29,165 @@ import org.opensaml.xmlsec.context.SecurityParametersContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletResponse;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class AuthInitiationService {
 
     public static final List<EidasAttribute> DEFAULT_REQUESTED_ATTRIBUTE_SET = Collections.unmodifiableList(Arrays.asList(EidasAttribute.CURRENT_FAMILY_NAME, EidasAttribute.CURRENT_GIVEN_NAME, EidasAttribute.DATE_OF_BIRTH, EidasAttribute.PERSON_IDENTIFIER));
 
+    private static final EidasAttributeSet DEFAULT_REQUESTED_ATTRIBUTES = EidasAttributeSet.copyOf(DEFAULT_REQUESTED_ATTRIBUTE_SET);
+
     private static final Logger LOGGER = LoggerFactory.getLogger(AuthInitiationService.class);
 
     private static final String RELAYSTATE_VALIDATION_REGEXP = "^[a-zA-Z0-9-_]{0,80}$";
 
-    private RequestSessionService requestSessionService;
+    private static final int RELAYSTATE_MAX_LENGTH = 80;
 
-    private Credential authnReqSigningCredential;
+    private static final String INVALID_ATTRIBUTES_MESSAGE = "Found one or more invalid Attributes value(s). Valid values are: " +
+            Arrays.stream(EidasAttribute.values()).map(EidasAttribute::getFriendlyName).collect(Collectors.toList());
+
+    private RequestSessionService requestSessionService;
 
     private EidasClientProperties eidasClientProperties;
 
     private IDPMetadataResolver idpMetadataResolver;
 
+    private AuthnRequestTemplateCache authnRequestTemplateCache;
+
+    private volatile SAMLSigner authnRequestSigner;
 
+    private PresignedAuthnRequestPool authnRequestPool;
+
+    private volatile AllowedEidasAttributes allowedEidasAttributes;
 
     public AuthInitiationService(RequestSessionService requestSessionService, Credential authnReqSigningCredential, EidasClientProperties eidasClientProperties, IDPMetadataResolver idpMetadataResolver) {
+        this(requestSessionService, new SAMLSigner(eidasClientProperties.getRequestSignatureAlgorithm(), authnReqSigningCredential), eidasClientProperties, idpMetadataResolver);
+    }
+
+    public AuthInitiationService(RequestSessionService requestSessionService, SAMLSigner authnRequestSigner, EidasClientProperties eidasClientProperties, IDPMetadataResolver idpMetadataResolver) {
         this.requestSessionService = requestSessionService;
-        this.authnReqSigningCredential = authnReqSigningCredential;
         this.eidasClientProperties = eidasClientProperties;
         this.idpMetadataResolver = idpMetadataResolver;
+        this.authnRequestTemplateCache = new AuthnRequestTemplateCache(eidasClientProperties);
+        this.authnRequestSigner = authnRequestSigner;
+        if (eidasClientProperties.isAuthnRequestPoolEnabled()) {
+            this.authnRequestPool = new PresignedAuthnRequestPool(eidasClientProperties, this::buildAuthnRequest);
+            this.authnRequestPool.start();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (authnRequestPool != null) {
+            authnRequestPool.shutdown();
+        }
+    }
+
+    /**
+     * Replaces the AuthnRequest signer, for example after the request signing key has been rotated. Pre-signed requests
+     * in the pool are discarded, since they are signed with the previous key.
+     */
+    public void setAuthnRequestSigner(SAMLSigner authnRequestSigner) {
+        if (authnRequestSigner == this.authnRequestSigner) {
+            return;
+        }
+        if (authnRequestPool != null) {
+            authnRequestPool.flush(() -> this.authnRequestSigner = authnRequestSigner);
+        } else {
+            this.authnRequestSigner = authnRequestSigner;
+        }
     }
 
     public void authenticate(HttpServletResponse response, String country, AssuranceLevel loa, String relayState, String attributesSet) {
         validateCountry(country);
         validateRelayState(relayState);
-        List<EidasAttribute> eidasAttributes = determineEidasAttributes(attributesSet);
+        EidasAttributeSet eidasAttributes = determineEidasAttributes(attributesSet);
         redirectUserForAuthentication(response, country, loa, relayState, eidasAttributes);
     }
 
-    private List<EidasAttribute> determineEidasAttributes(String attributesSet) {
-        List<EidasAttribute> eidasAttributes = parseEidasAttributes(attributesSet);
-        if (CollectionUtils.isEmpty(eidasAttributes)) {
+    private EidasAttributeSet determineEidasAttributes(String attributesSet) {
+        EidasAttributeSet eidasAttributes = parseEidasAttributes(attributesSet);
+        if (eidasAttributes.isEmpty()) {
             LOGGER.debug("No eIDAS attributes presented, using default (natural person) set: {}", DEFAULT_REQUESTED_ATTRIBUTE_SET);
-            return new ArrayList<>(DEFAULT_REQUESTED_ATTRIBUTE_SET);
+            return DEFAULT_REQUESTED_ATTRIBUTES;
         }
         validateEidasAttributesAllowed(eidasAttributes);
         LOGGER.debug("Using following eIDAS attributes presented in the request: {}", eidasAttributes);
         return eidasAttributes;
     }
 
-    private List<EidasAttribute> parseEidasAttributes(String attributesSet) {
+    /**
+     * Parses the space separated friendly names with the same semantics as {@code attributesSet.split(" ")}: trailing
+     * separators are ignored, while empty tokens elsewhere (including an empty string) are invalid. Repeated
+     * attributes are requested once.
+     */
+    private EidasAttributeSet parseEidasAttributes(String attributesSet) {
         if (attributesSet == null) {
-            return new ArrayList<>();
+            return EidasAttributeSet.EMPTY;
         }
 
-        try {
-            return Arrays.stream(attributesSet.split(" ")).map(EidasAttribute::fromString).collect(Collectors.toList());
-        } catch (IllegalArgumentException e) {
-            List<String> validEidasAttributes = Arrays.stream(EidasAttribute.values()).map(EidasAttribute::getFriendlyName).collect(Collectors.toList());
-            throw new InvalidRequestException("Found one or more invalid Attributes value(s). Valid values are: " + validEidasAttributes, e);
+        int end = attributesSet.length();
+        while (end > 0 && attributesSet.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end == 0 && !attributesSet.isEmpty()) {
+            return EidasAttributeSet.EMPTY;
         }
+
+        EidasAttributeSet.Builder eidasAttributes = EidasAttributeSet.builder();
+        int start = 0;
+        while (start <= end) {
+            int separator = attributesSet.indexOf(' ', start);
+            int tokenEnd = separator >= 0 && separator < end ? separator : end;
+            EidasAttribute eidasAttribute = EidasAttribute.fromFriendlyName(attributesSet, start, tokenEnd);
+            if (eidasAttribute == null) {
+                throw new InvalidRequestException(INVALID_ATTRIBUTES_MESSAGE,
+                        new IllegalArgumentException("No constant with friendlyName '" + attributesSet.substring(start, tokenEnd) + "' found"));
+            }
+            eidasAttributes.add(eidasAttribute);
+            start = tokenEnd + 1;
+        }
+        return eidasAttributes.build();
     }
 
-    private void validateEidasAttributesAllowed(List<EidasAttribute> eidasAttributes) {
+    private void validateEidasAttributesAllowed(EidasAttributeSet eidasAttributes) {
         List<EidasAttribute> allowedEidasAttributes = eidasClientProperties.getAllowedEidasAttributes();
-        for (EidasAttribute eidasAttribute : eidasAttributes) {
-            if (!allowedEidasAttributes.contains(eidasAttribute)) {
-                throw new InvalidRequestException("Attributes value '" + eidasAttribute.getFriendlyName() + "' is not allowed. Allowed values are: " +
-                        allowedEidasAttributes.stream().map(EidasAttribute::getFriendlyName).collect(Collectors.toList()));
-            }
+        AllowedEidasAttributes allowed = this.allowedEidasAttributes;
+        if (allowed == null || allowed.source != allowedEidasAttributes) {
+            allowed = new AllowedEidasAttributes(allowedEidasAttributes);
+            this.allowedEidasAttributes = allowed;
+        }
+        if (!allowed.attributes.containsAll(eidasAttributes)) {
+            EidasAttribute eidasAttribute = eidasAttributes.minus(allowed.attributes).iterator().next();
+            throw new InvalidRequestException("Attributes value '" + eidasAttribute.getFriendlyName() + "' is not allowed. Allowed values are: " +
+                    allowedEidasAttributes.stream().map(EidasAttribute::getFriendlyName).collect(Collectors.toList()));
         }
     }
 
-    private void redirectUserForAuthentication(HttpServletResponse httpServletResponse, String country, AssuranceLevel loa, String relayState, List<EidasAttribute> eidasAttributes) {
-        AuthnRequestBuilder authnRequestBuilder = new AuthnRequestBuilder(authnReqSigningCredential, eidasClientProperties, idpMetadataResolver.getSingeSignOnService());
-        AuthnRequest authnRequest = authnRequestBuilder.buildAuthnRequest(loa, eidasAttributes);
+    private void redirectUserForAuthentication(HttpServletResponse httpServletResponse, String country, AssuranceLevel loa, String relayState, EidasAttributeSet eidasAttributes) {
+        AuthnRequest authnRequest = null;
+        List<EidasAttribute> requestedAttributes = eidasAttributes.toList();
+        if (authnRequestPool != null) {
+            authnRequest = authnRequestPool.take(loa, requestedAttributes, idpMetadataResolver.getSingeSignOnService().getLocation());
+        }
+        if (authnRequest == null) {
+            authnRequest = buildAuthnRequest(loa, requestedAttributes);
+        }
         saveRequestAsSession(authnRequest, eidasAttributes);
         redirectUserWithRequest(httpServletResponse, authnRequest, country, relayState);
     }
 
-    private void saveRequestAsSession(AuthnRequest authnRequest, List<EidasAttribute> eidasAttributes) {
+    private AuthnRequest buildAuthnRequest(AssuranceLevel loa, List<EidasAttribute> eidasAttributes) {
+        AuthnRequestBuilder authnRequestBuilder = new AuthnRequestBuilder(authnRequestSigner, eidasClientProperties, idpMetadataResolver.getSingeSignOnService(), authnRequestTemplateCache);
+        return authnRequestBuilder.buildAuthnRequest(loa, eidasAttributes);
+    }
+
+    private void saveRequestAsSession(AuthnRequest authnRequest, EidasAttributeSet eidasAttributes) {
         String loa = authnRequest.getRequestedAuthnContext().getAuthnContextClassRefs().get(0).getAuthnContextClassRef();
         RequestSession requestSession = new UnencodedRequestSession(authnRequest.getID(), authnRequest.getIssueInstant(), AssuranceLevel.toEnum(loa), eidasAttributes);
         requestSessionService.saveRequestSession(requestSession.getRequestId(), requestSession);
@@ -124,7 +204,7 @@ public class AuthInitiationService {
         endpointContext.setEndpoint(idpMetadataResolver.getSingeSignOnService());
 
         SignatureSigningParameters signatureSigningParameters = new SignatureSigningParameters();
-        signatureSigningParameters.setSigningCredential(authnReqSigningCredential);
+        signatureSigningParameters.setSigningCredential(authnRequestSigner.getCredential());
         signatureSigningParameters.setSignatureAlgorithm(eidasClientProperties.getRequestSignatureAlgorithm());
 
 
@@ -157,22 +237,46 @@ public class AuthInitiationService {
     }
 
     private void validateCountry(String country) {
-        List<String> validCountries = idpMetadataResolver.getSupportedCountries();
-        if (!validCountries.stream().anyMatch(country::equalsIgnoreCase)) {
+        SupportedCountries validCountries = idpMetadataResolver.getSupportedCountriesSnapshot();
+        if (!validCountries.contains(country)) {
             throw new InvalidRequestException("Invalid country! Valid countries:" + validCountries);
         }
     }
 
+    /**
+     * Hand-written equivalent of matching the RelayState against {@link #RELAYSTATE_VALIDATION_REGEXP}.
+     */
     private void validateRelayState(String relayState) {
         if (relayState == null) {
             return;
         }
-        Pattern pattern = Pattern.compile(RELAYSTATE_VALIDATION_REGEXP);
-        Matcher matcher = pattern.matcher(relayState);
-        if (!matcher.matches()) {
+        if (!isValidRelayState(relayState)) {
             throw new InvalidRequestException("Invalid RelayState! Must match the following regexp: " + RELAYSTATE_VALIDATION_REGEXP);
         }
+    }
 
+    static boolean isValidRelayState(String relayState) {
+        if (relayState.length() > RELAYSTATE_MAX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < relayState.length(); i++) {
+            char c = relayState.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class AllowedEidasAttributes {
+
+        private final List<EidasAttribute> source;
+        private final EidasAttributeSet attributes;
+
+        private AllowedEidasAttributes(List<EidasAttribute> source) {
+            this.source = source;
+            this.attributes = EidasAttributeSet.copyOf(source);
+        }
     }
 
 }
@@ -4,22 +4,22 @@ import ee.ria.eidas.client.config.EidasClientProperties;
 import ee.ria.eidas.client.config.OpenSAMLConfiguration;
 import ee.ria.eidas.client.exception.AuthenticationFailedException;
 import ee.ria.eidas.client.exception.EidasClientException;
+import ee.ria.eidas.client.exception.ErrorCode;
 import ee.ria.eidas.client.exception.InvalidRequestException;
+import ee.ria.eidas.client.exception.ValidationFailureException;
 import ee.ria.eidas.client.metadata.IDPMetadataResolver;
+import ee.ria.eidas.client.metadata.IDPSigningCredentials;
+import ee.ria.eidas.client.response.AssertionDecrypter;
 import ee.ria.eidas.client.response.AssertionValidator;
 import ee.ria.eidas.client.response.AuthenticationResult;
 import ee.ria.eidas.client.session.RequestSession;
 import ee.ria.eidas.client.session.RequestSessionService;
 import ee.ria.eidas.client.util.OpenSAMLUtils;
+import ee.ria.eidas.client.util.SAMLObjectFactory;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.net.URIComparator;
 import net.shibboleth.utilities.java.support.net.URIException;
-import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
-import net.shibboleth.utilities.java.support.resolver.ResolverException;
 import org.apache.commons.lang.StringUtils;
-import org.joda.time.DateTime;
-import org.opensaml.core.criterion.EntityIdCriterion;
-import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.handler.MessageHandler;
 import org.opensaml.messaging.handler.MessageHandlerException;
@@ -28,32 +28,28 @@ import org.opensaml.messaging.handler.impl.SchemaValidateXMLMessage;
 import org.opensaml.saml.common.binding.security.impl.MessageLifetimeSecurityHandler;
 import org.opensaml.saml.common.binding.security.impl.ReceivedEndpointSecurityHandler;
 import org.opensaml.saml.common.messaging.context.SAMLMessageInfoContext;
-import org.opensaml.saml.common.xml.SAMLConstants;
-import org.opensaml.saml.criterion.EntityRoleCriterion;
-import org.opensaml.saml.criterion.ProtocolCriterion;
 import org.opensaml.saml.saml2.core.*;
-import org.opensaml.saml.saml2.encryption.Decrypter;
-import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
 import org.opensaml.saml.security.impl.SAMLSignatureProfileValidator;
 import org.opensaml.security.credential.Credential;
-import org.opensaml.security.credential.UsageType;
-import org.opensaml.security.criteria.UsageCriterion;
+import org.opensaml.security.x509.X509Credential;
 import org.opensaml.xmlsec.encryption.support.DecryptionException;
-import org.opensaml.xmlsec.encryption.support.InlineEncryptedKeyResolver;
-import org.opensaml.xmlsec.keyinfo.impl.StaticKeyInfoCredentialResolver;
+import org.opensaml.xmlsec.signature.Signature;
 import org.opensaml.xmlsec.signature.support.SignatureException;
 import org.opensaml.xmlsec.signature.support.SignatureValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.MissingServletRequestParameterException;
+import org.w3c.dom.Document;
 
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.validation.Schema;
 import java.io.ByteArrayInputStream;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class AuthResponseService {
 
@@ -65,16 +61,42 @@ public class AuthResponseService {
 
     private IDPMetadataResolver idpMetadataResolver;
 
-    private Credential spAssertionDecryptionCredential;
-
     private Schema samlSchema;
 
+    private Clock clock;
+
+    private AssertionValidator assertionValidator;
+
+    private volatile AssertionDecrypter assertionDecrypter;
+
     public AuthResponseService(RequestSessionService requestSessionService, EidasClientProperties eidasClientProperties, IDPMetadataResolver idpMetadataResolver, Credential spAssertionDecryptionCredential, Schema samlSchema) {
+        this(requestSessionService, eidasClientProperties, idpMetadataResolver, spAssertionDecryptionCredential, samlSchema, Clock.systemUTC());
+    }
+
+    public AuthResponseService(RequestSessionService requestSessionService, EidasClientProperties eidasClientProperties, IDPMetadataResolver idpMetadataResolver, Credential spAssertionDecryptionCredential, Schema samlSchema, Clock clock) {
+        this(requestSessionService, eidasClientProperties, idpMetadataResolver, new AssertionDecrypter(spAssertionDecryptionCredential), samlSchema, clock);
+    }
+
+    public AuthResponseService(RequestSessionService requestSessionService, EidasClientProperties eidasClientProperties, IDPMetadataResolver idpMetadataResolver, AssertionDecrypter assertionDecrypter, Schema samlSchema) {
+        this(requestSessionService, eidasClientProperties, idpMetadataResolver, assertionDecrypter, samlSchema, Clock.systemUTC());
+    }
+
+    public AuthResponseService(RequestSessionService requestSessionService, EidasClientProperties eidasClientProperties, IDPMetadataResolver idpMetadataResolver, AssertionDecrypter assertionDecrypter, Schema samlSchema, Clock clock) {
         this.requestSessionService = requestSessionService;
         this.eidasClientProperties = eidasClientProperties;
         this.idpMetadataResolver = idpMetadataResolver;
-        this.spAssertionDecryptionCredential = spAssertionDecryptionCredential;
         this.samlSchema = samlSchema;
+        this.clock = clock;
+        this.assertionValidator = new AssertionValidator(eidasClientProperties, clock);
+        this.assertionDecrypter = assertionDecrypter;
+    }
+
+    /**
+     * Replaces the assertion decrypter, for example after the SP decryption key has been rotated. Responses that are
+     * already being processed complete with the previous decrypter.
+     */
+    public void setAssertionDecrypter(AssertionDecrypter assertionDecrypter) {
+        this.assertionDecrypter = assertionDecrypter;
     }
 
     public AuthenticationResult getAuthenticationResult(HttpServletRequest req) throws MissingServletRequestParameterException {
@@ -104,6 +126,8 @@ public class AuthResponseService {
                 LOGGER.debug("Decrypted Assertion: {}", OpenSAMLUtils.getXmlString(assertion));
 
             return new AuthenticationResult(assertion);
+        } catch (ValidationFailureException exception) {
+            throw exception;
         } catch (InvalidRequestException exception) {
             throw new InvalidRequestException("Invalid SAMLResponse. " + exception.getMessage(), exception);
         }
@@ -121,8 +145,8 @@ public class AuthResponseService {
 
         try {
             byte[] decodedSamlResponse = Base64.getDecoder().decode(encodedSamlResponse);
-            Response samlResponse = (Response) XMLObjectSupport.unmarshallFromInputStream(
-                    OpenSAMLConfiguration.getParserPool(), new ByteArrayInputStream(decodedSamlResponse));
+            Document document = OpenSAMLConfiguration.getParserPool().parse(new ByteArrayInputStream(decodedSamlResponse));
+            Response samlResponse = SAMLObjectFactory.unmarshall(document.getDocumentElement(), Response.class);
 
             LOGGER.info("SAML response ID: " + samlResponse.getID());
             if (LOGGER.isDebugEnabled())
@@ -130,13 +154,14 @@ public class AuthResponseService {
 
             return samlResponse;
         } catch (Exception e) {
-            throw new InvalidRequestException("Failed to read SAMLResponse. " + e.getMessage(), e);
+            LOGGER.debug("Failed to read SAMLResponse", e);
+            throw new ValidationFailureException(ErrorCode.SAML_RESPONSE_UNREADABLE, "Failed to read SAMLResponse. " + e.getMessage());
         }
     }
 
     private void verifyResponseSignature(Response samlResponse) {
         if (!samlResponse.isSigned()) {
-            throw new InvalidRequestException("Response not signed.");
+            throw ValidationFailureException.of(ErrorCode.RESPONSE_NOT_SIGNED);
         }
         try {
             samlResponse.getDOM().setIdAttribute("ID", true);
@@ -144,17 +169,11 @@ public class AuthResponseService {
             SAMLSignatureProfileValidator profileValidator = new SAMLSignatureProfileValidator();
             profileValidator.validate(samlResponse.getSignature());
 
-            final CriteriaSet criteriaSet = new CriteriaSet();
-            criteriaSet.add(new UsageCriterion(UsageType.SIGNING));
-            criteriaSet.add(new EntityRoleCriterion(IDPSSODescriptor.DEFAULT_ELEMENT_NAME));
-            criteriaSet.add(new ProtocolCriterion(SAMLConstants.SAML20P_NS));
-            criteriaSet.add(new EntityIdCriterion(eidasClientProperties.getIdpMetadataUrl()));
-            Credential credential = idpMetadataResolver.responseSignatureTrustEngine().getCredentialResolver().resolveSingle(criteriaSet);
-            SignatureValidator.validate(samlResponse.getSignature(), credential);
+            validateIdpSignature(samlResponse.getSignature());
 
             LOGGER.debug("SAML Response signature verified");
-        } catch (SignatureException | ResolverException e) {
-            throw new InvalidRequestException("Invalid response signature.");
+        } catch (SignatureException e) {
+            throw ValidationFailureException.of(ErrorCode.RESPONSE_SIGNATURE_INVALID);
         }
     }
 
@@ -225,7 +244,7 @@ public class AuthResponseService {
         } catch (ComponentInitializationException e) {
             throw new EidasClientException("Error initializing handler chain", e);
         } catch (MessageHandlerException e) {
-            throw new InvalidRequestException("Error handling message: " + e.getMessage(), e);
+            throw new ValidationFailureException(ErrorCode.RESPONSE_REJECTED, "Error handling message: " + e.getMessage());
         }
 
     }
@@ -235,34 +254,27 @@ public class AuthResponseService {
 
         RequestSession requestSession = requestSessionService.getAndRemoveRequestSession(requestID);
         if (requestSession == null) {
-            throw new InvalidRequestException("No corresponding SAML request session found for the given response!");
+            throw ValidationFailureException.of(ErrorCode.REQUEST_SESSION_NOT_FOUND);
         } else if (!requestSession.getRequestId().equals(requestID)) {
             throw new EidasClientException("Request session ID mismatch!");
         } else {
-            DateTime now = new DateTime(requestSession.getIssueInstant().getZone());
-            int maxAuthenticationLifetime = eidasClientProperties.getMaximumAuthenticationLifetime();
-            int acceptedClockSkew = eidasClientProperties.getAcceptedClockSkew();
+            long maxAuthenticationLifetime = TimeUnit.SECONDS.toMillis(eidasClientProperties.getMaximumAuthenticationLifetime());
+            long acceptedClockSkew = TimeUnit.SECONDS.toMillis(eidasClientProperties.getAcceptedClockSkew());
 
-            if (now.isAfter(requestSession.getIssueInstant().plusSeconds(maxAuthenticationLifetime).plusSeconds(acceptedClockSkew))) {
-                throw new InvalidRequestException("Request session with ID " + requestID + " has expired!");
+            if (clock.millis() > requestSession.getIssueInstant().getMillis() + maxAuthenticationLifetime + acceptedClockSkew) {
+                throw new ValidationFailureException(ErrorCode.REQUEST_SESSION_EXPIRED, "Request session with ID " + requestID + " has expired!");
             }
         }
         return requestSession;
     }
 
     private void validateAssertion(Assertion assertion, RequestSession requestSession) {
-        AssertionValidator assertionValidator = new AssertionValidator(eidasClientProperties);
         assertionValidator.validate(assertion, requestSession);
     }
 
     private Assertion decryptAssertion(EncryptedAssertion encryptedAssertion) {
-        StaticKeyInfoCredentialResolver keyInfoCredentialResolver = new StaticKeyInfoCredentialResolver(spAssertionDecryptionCredential);
-
-        Decrypter decrypter = new Decrypter(null, keyInfoCredentialResolver, new InlineEncryptedKeyResolver());
-        decrypter.setRootInNewDocument(true);
-
         try {
-            return decrypter.decrypt(encryptedAssertion);
+            return assertionDecrypter.decrypt(encryptedAssertion);
         } catch (DecryptionException e) {
             throw new EidasClientException("Error decrypting assertion", e);
         }
@@ -270,26 +282,43 @@ public class AuthResponseService {
 
     private void verifyAssertionSignature(Assertion assertion) {
         if (!assertion.isSigned()) {
-            throw new InvalidRequestException("The SAML Assertion was not signed");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_NOT_SIGNED);
         }
         try {
             SAMLSignatureProfileValidator profileValidator = new SAMLSignatureProfileValidator();
             profileValidator.validate(assertion.getSignature());
 
-            final CriteriaSet criteriaSet = new CriteriaSet();
-            criteriaSet.add(new UsageCriterion(UsageType.SIGNING));
-            criteriaSet.add(new EntityRoleCriterion(IDPSSODescriptor.DEFAULT_ELEMENT_NAME));
-            criteriaSet.add(new ProtocolCriterion(SAMLConstants.SAML20P_NS));
-            criteriaSet.add(new EntityIdCriterion(eidasClientProperties.getIdpMetadataUrl()));
-            Credential credential = idpMetadataResolver.responseSignatureTrustEngine().getCredentialResolver().resolveSingle(criteriaSet);
-            SignatureValidator.validate(assertion.getSignature(), credential);
+            validateIdpSignature(assertion.getSignature());
 
             LOGGER.debug("SAML Assertion signature verified");
-        } catch (SignatureException | ResolverException e) {
+        } catch (SignatureException e) {
             throw new EidasClientException("Signature verification failed!", e);
         }
     }
 
+    /**
+     * Validates the signature with the IDP signing credential matching the certificate in the signature KeyInfo. When
+     * the KeyInfo does not identify a known certificate, each signing credential listed in the metadata is tried.
+     */
+    private void validateIdpSignature(Signature signature) throws SignatureException {
+        IDPSigningCredentials signingCredentials = idpMetadataResolver.getResponseSigningCredentials();
+        X509Credential credential = signingCredentials.findByKeyInfo(signature.getKeyInfo());
+        if (credential != null) {
+            SignatureValidator.validate(signature, credential);
+            return;
+        }
+        SignatureException lastException = null;
+        for (X509Credential signingCredential : signingCredentials.getCredentials()) {
+            try {
+                SignatureValidator.validate(signature, signingCredential);
+                return;
+            } catch (SignatureException e) {
+                lastException = e;
+            }
+        }
+        throw lastException;
+    }
+
     private EncryptedAssertion getEncryptedAssertion(Response samlResponse) {
         List<EncryptedAssertion> response = samlResponse.getEncryptedAssertions();
         if (response == null || response.isEmpty()) {
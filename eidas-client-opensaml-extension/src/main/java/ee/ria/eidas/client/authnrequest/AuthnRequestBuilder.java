@@ -33,33 +33,40 @@ public class AuthnRequestBuilder {
 
     public static final String REQUESTED_ATTRIBUTE_NAME_FORMAT = "urn:oasis:names:tc:SAML:2.0:attrname-format:uri";
 
-    private Credential authnReqSigningCredential;
+    private SAMLSigner signer;
 
     private EidasClientProperties eidasClientProperties;
 
     private SingleSignOnService singleSignOnService;
 
+    private AuthnRequestTemplateCache templateCache;
+
     public AuthnRequestBuilder(Credential authnReqSigningCredential, EidasClientProperties eidasClientProperties, SingleSignOnService singleSignOnService) {
-        this.authnReqSigningCredential = authnReqSigningCredential;
+        this(authnReqSigningCredential, eidasClientProperties, singleSignOnService, null);
+    }
+
+    public AuthnRequestBuilder(Credential authnReqSigningCredential, EidasClientProperties eidasClientProperties, SingleSignOnService singleSignOnService, AuthnRequestTemplateCache templateCache) {
+        this(new SAMLSigner(eidasClientProperties.getRequestSignatureAlgorithm(), authnReqSigningCredential), eidasClientProperties, singleSignOnService, templateCache);
+    }
+
+    public AuthnRequestBuilder(SAMLSigner signer, EidasClientProperties eidasClientProperties, SingleSignOnService singleSignOnService, AuthnRequestTemplateCache templateCache) {
+        this.signer = signer;
         this.eidasClientProperties = eidasClientProperties;
         this.singleSignOnService = singleSignOnService;
+        this.templateCache = templateCache;
     }
 
     public AuthnRequest buildAuthnRequest(AssuranceLevel loa, List<EidasAttribute> eidasAttributes) {
         try {
-            AuthnRequest authnRequest = OpenSAMLUtils.buildSAMLObject(AuthnRequest.class);
-            authnRequest.setIssueInstant(new DateTime());
-            authnRequest.setForceAuthn(true);
-            authnRequest.setIsPassive(false);
-            authnRequest.setProviderName(eidasClientProperties.getProviderName());
-            authnRequest.setDestination(singleSignOnService.getLocation());
-            authnRequest.setProtocolBinding(SAMLConstants.SAML2_POST_BINDING_URI);
-            authnRequest.setAssertionConsumerServiceURL(eidasClientProperties.getCallbackUrl());
-            authnRequest.setID(OpenSAMLUtils.generateSecureRandomId());
-            authnRequest.setIssuer(buildIssuer());
-            authnRequest.setNameIDPolicy(buildNameIdPolicy());
-            authnRequest.setRequestedAuthnContext(buildRequestedAuthnContext(loa));
-            authnRequest.setExtensions(buildExtensions(eidasAttributes));
+            AuthnRequest authnRequest;
+            if (templateCache != null) {
+                authnRequest = templateCache.newAuthnRequest(loa, eidasAttributes, this::buildUnsignedAuthnRequest);
+                authnRequest.setIssueInstant(new DateTime());
+                authnRequest.setDestination(singleSignOnService.getLocation());
+                authnRequest.setID(OpenSAMLUtils.generateSecureRandomId());
+            } else {
+                authnRequest = buildUnsignedAuthnRequest(loa, eidasAttributes);
+            }
 
             addSignature(authnRequest);
 
@@ -74,8 +81,25 @@ public class AuthnRequestBuilder {
         }
     }
 
+    AuthnRequest buildUnsignedAuthnRequest(AssuranceLevel loa, List<EidasAttribute> eidasAttributes) {
+        AuthnRequest authnRequest = OpenSAMLUtils.buildSAMLObject(AuthnRequest.class);
+        authnRequest.setIssueInstant(new DateTime());
+        authnRequest.setForceAuthn(true);
+        authnRequest.setIsPassive(false);
+        authnRequest.setProviderName(eidasClientProperties.getProviderName());
+        authnRequest.setDestination(singleSignOnService.getLocation());
+        authnRequest.setProtocolBinding(SAMLConstants.SAML2_POST_BINDING_URI);
+        authnRequest.setAssertionConsumerServiceURL(eidasClientProperties.getCallbackUrl());
+        authnRequest.setID(OpenSAMLUtils.generateSecureRandomId());
+        authnRequest.setIssuer(buildIssuer());
+        authnRequest.setNameIDPolicy(buildNameIdPolicy());
+        authnRequest.setRequestedAuthnContext(buildRequestedAuthnContext(loa));
+        authnRequest.setExtensions(buildExtensions(eidasAttributes));
+        return authnRequest;
+    }
+
     private void addSignature(AuthnRequest authnRequest) throws SecurityException, MarshallingException, SignatureException {
-        new SAMLSigner(eidasClientProperties.getRequestSignatureAlgorithm(), authnReqSigningCredential).sign(authnRequest);
+        signer.sign(authnRequest);
     }
 
     private NameIDPolicy buildNameIdPolicy() {
@@ -0,0 +1,52 @@
+package ee.ria.eidas.client.authnrequest;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Identifies the request specific content of an AuthnRequest: the level of assurance and the requested attributes.
+ * The order of the requested attributes is significant, since it determines the order of the RequestedAttribute
+ * extensions in the request.
+ */
+final class AuthnRequestKey {
+
+    private final AssuranceLevel loa;
+    private final EidasAttributeSet eidasAttributes;
+    private final int hashCode;
+
+    AuthnRequestKey(AssuranceLevel loa, List<EidasAttribute> eidasAttributes) {
+        this.loa = loa;
+        this.eidasAttributes = EidasAttributeSet.copyOf(eidasAttributes);
+        this.hashCode = Objects.hash(loa, this.eidasAttributes);
+    }
+
+    AssuranceLevel getLoa() {
+        return loa;
+    }
+
+    List<EidasAttribute> getEidasAttributes() {
+        return eidasAttributes.toList();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AuthnRequestKey)) {
+            return false;
+        }
+        AuthnRequestKey that = (AuthnRequestKey) o;
+        return loa == that.loa && eidasAttributes.equalsInOrder(that.eidasAttributes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return loa + " " + eidasAttributes;
+    }
+}
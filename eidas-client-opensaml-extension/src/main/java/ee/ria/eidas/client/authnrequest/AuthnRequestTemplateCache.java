@@ -0,0 +1,119 @@
+package ee.ria.eidas.client.authnrequest;
+
+import ee.ria.eidas.client.config.EidasClientProperties;
+import ee.ria.eidas.client.config.OpenSAMLConfiguration;
+import ee.ria.eidas.client.exception.EidasClientException;
+import ee.ria.eidas.client.util.SAMLObjectFactory;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Cache of pre-marshalled, unsigned AuthnRequest templates keyed by the level of assurance and the requested
+ * attributes. A new request is created by cloning the template DOM and unmarshalling it, so that only the ID,
+ * IssueInstant and Destination need to be set before signing. The child elements keep their cached DOM and are not
+ * marshalled again.
+ * <p>
+ * The cache is cleared when any of the properties used in the templates changes or when {@link #invalidate()} is
+ * called. The destination is always taken from the current IDP metadata, so metadata refreshes do not affect the
+ * templates.
+ */
+public class AuthnRequestTemplateCache {
+
+    static final int MAX_TEMPLATES = 256;
+
+    private final EidasClientProperties eidasClientProperties;
+
+    private final Map<AuthnRequestKey, Element> templates = new ConcurrentHashMap<>();
+
+    private volatile List<Object> fingerprint;
+
+    public AuthnRequestTemplateCache(EidasClientProperties eidasClientProperties) {
+        this.eidasClientProperties = eidasClientProperties;
+    }
+
+    /**
+     * Returns a new unsigned AuthnRequest created from the cached template, building the template with the given
+     * factory if it does not exist yet. The ID, IssueInstant and Destination of the returned request must be set by
+     * the caller.
+     */
+    public AuthnRequest newAuthnRequest(AssuranceLevel loa, List<EidasAttribute> eidasAttributes, BiFunction<AssuranceLevel, List<EidasAttribute>, AuthnRequest> templateFactory) {
+        List<Object> currentFingerprint = getFingerprint();
+        if (!currentFingerprint.equals(fingerprint)) {
+            synchronized (this) {
+                if (!currentFingerprint.equals(fingerprint)) {
+                    templates.clear();
+                    fingerprint = currentFingerprint;
+                }
+            }
+        }
+
+        AuthnRequestKey key = new AuthnRequestKey(loa != null ? loa : eidasClientProperties.getDefaultLoa(), eidasAttributes);
+        Element template = templates.get(key);
+        if (template == null) {
+            template = marshall(templateFactory.apply(loa, eidasAttributes));
+            if (templates.size() < MAX_TEMPLATES) {
+                Element existing = templates.putIfAbsent(key, template);
+                if (existing != null) {
+                    template = existing;
+                }
+            }
+        }
+        return unmarshall(cloneDocument(template));
+    }
+
+    public void invalidate() {
+        templates.clear();
+    }
+
+    int size() {
+        return templates.size();
+    }
+
+    private List<Object> getFingerprint() {
+        return Arrays.asList(
+                eidasClientProperties.getProviderName(),
+                eidasClientProperties.getCallbackUrl(),
+                eidasClientProperties.getSpEntityId(),
+                eidasClientProperties.getSpType(),
+                eidasClientProperties.getDefaultLoa());
+    }
+
+    private static Element marshall(AuthnRequest authnRequest) {
+        try {
+            return SAMLObjectFactory.marshall(authnRequest);
+        } catch (MarshallingException e) {
+            throw new EidasClientException("Failed to marshall authnRequest template", e);
+        }
+    }
+
+    private static Element cloneDocument(Element template) {
+        try {
+            Document document = OpenSAMLConfiguration.getParserPool().newDocument();
+            synchronized (template) {
+                Element clone = (Element) document.importNode(template, true);
+                document.appendChild(clone);
+                return clone;
+            }
+        } catch (XMLParserException e) {
+            throw new EidasClientException("Failed to clone authnRequest template", e);
+        }
+    }
+
+    private static AuthnRequest unmarshall(Element element) {
+        try {
+            return SAMLObjectFactory.unmarshall(element, AuthnRequest.class);
+        } catch (UnmarshallingException e) {
+            throw new EidasClientException("Failed to unmarshall authnRequest template", e);
+        }
+    }
+}
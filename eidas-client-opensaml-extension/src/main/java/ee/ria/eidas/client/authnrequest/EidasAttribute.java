@@ -21,6 +21,19 @@ public enum EidasAttribute {
         SIC("SIC", "http://eidas.europa.eu/attributes/legalperson/SIC", false),
         D_2012_17_EUIdentifier("D-2012-17-EUIdentifier", "http://eidas.europa.eu/attributes/legalperson/D-2012-17-EUIdentifier", false);
 
+        private static final int LOOKUP_TABLE_SIZE = 64;
+        private static final EidasAttribute[] LOOKUP_TABLE = new EidasAttribute[LOOKUP_TABLE_SIZE];
+
+        static {
+            for (EidasAttribute attribute : values()) {
+                int index = hash(attribute.friendlyName, 0, attribute.friendlyName.length()) & (LOOKUP_TABLE_SIZE - 1);
+                while (LOOKUP_TABLE[index] != null) {
+                    index = (index + 1) & (LOOKUP_TABLE_SIZE - 1);
+                }
+                LOOKUP_TABLE[index] = attribute;
+            }
+        }
+
         private String friendlyName;
         private String name;
         private boolean required;
@@ -32,12 +45,57 @@ public enum EidasAttribute {
         }
 
         public static EidasAttribute fromString(String str) {
-            for (EidasAttribute b : EidasAttribute.values()) {
-                if (b.friendlyName.equalsIgnoreCase(str)) {
-                    return b;
+            EidasAttribute attribute = str != null ? fromFriendlyName(str, 0, str.length()) : null;
+            if (attribute == null) {
+                throw new IllegalArgumentException("No constant with friendlyName '" + str + "' found");
+            }
+            return attribute;
+        }
+
+        /**
+         * Case-insensitive lookup of the attribute whose friendly name equals the given region of the string.
+         *
+         * @return the matching attribute or null if there is none
+         */
+        public static EidasAttribute fromFriendlyName(String str, int start, int end) {
+            int length = end - start;
+            int index = hash(str, start, end) & (LOOKUP_TABLE_SIZE - 1);
+            EidasAttribute attribute;
+            while ((attribute = LOOKUP_TABLE[index]) != null) {
+                if (attribute.friendlyName.length() == length && attribute.friendlyName.regionMatches(true, 0, str, start, length)) {
+                    return attribute;
                 }
+                index = (index + 1) & (LOOKUP_TABLE_SIZE - 1);
+            }
+            return isAscii(str, start, end) ? null : findIgnoreCase(str, start, length);
+        }
+
+        // Non-ASCII characters may still be case-insensitively equal to the ASCII friendly names (e.g. dotless i)
+        private static EidasAttribute findIgnoreCase(String str, int start, int length) {
+            for (EidasAttribute attribute : values()) {
+                if (attribute.friendlyName.length() == length && attribute.friendlyName.regionMatches(true, 0, str, start, length)) {
+                    return attribute;
+                }
+            }
+            return null;
+        }
+
+        private static boolean isAscii(String str, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (str.charAt(i) > 0x7f) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(String str, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                char c = str.charAt(i);
+                hash = 31 * hash + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
             }
-            throw new IllegalArgumentException("No constant with friendlyName '" + str + "' found");
+            return hash ^ (hash >>> 16);
         }
 
         public String getFriendlyName() {
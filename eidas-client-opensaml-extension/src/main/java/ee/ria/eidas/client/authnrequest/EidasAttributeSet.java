@@ -0,0 +1,276 @@
+package ee.ria.eidas.client.authnrequest;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of eIDAS attributes backed by a bitmask over the {@link EidasAttribute} ordinals.
+ * <p>
+ * Membership checks and set operations are single bitwise operations. Like a {@link java.util.LinkedHashSet}, the set
+ * iterates in the order the attributes were first added, so that the requested attributes keep the order in which
+ * they were presented. The order is stored only when it differs from the ordinal order. Equality is defined by the
+ * contained attributes only.
+ */
+public final class EidasAttributeSet implements Iterable<EidasAttribute>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final EidasAttribute[] ATTRIBUTES = EidasAttribute.values();
+
+    private static final long ALL_BITS = ATTRIBUTES.length == 64 ? -1L : (1L << ATTRIBUTES.length) - 1;
+
+    private static final long REQUIRED_BITS = requiredBits();
+
+    public static final EidasAttributeSet EMPTY = new EidasAttributeSet(0L, null);
+
+    private final long bits;
+
+    // attribute ordinals in iteration order, null if the iteration order is the ordinal order
+    private final byte[] order;
+
+    private EidasAttributeSet(long bits, byte[] order) {
+        this.bits = bits;
+        this.order = order;
+    }
+
+    public static EidasAttributeSet of(EidasAttribute... eidasAttributes) {
+        Builder builder = builder();
+        for (EidasAttribute eidasAttribute : eidasAttributes) {
+            builder.add(eidasAttribute);
+        }
+        return builder.build();
+    }
+
+    public static EidasAttributeSet copyOf(Collection<EidasAttribute> eidasAttributes) {
+        if (eidasAttributes == null) {
+            return EMPTY;
+        }
+        Builder builder = builder();
+        for (EidasAttribute eidasAttribute : eidasAttributes) {
+            builder.add(eidasAttribute);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean contains(EidasAttribute eidasAttribute) {
+        return eidasAttribute != null && (bits & bit(eidasAttribute)) != 0;
+    }
+
+    public boolean containsAll(EidasAttributeSet other) {
+        return (other.bits & ~bits) == 0;
+    }
+
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    public int size() {
+        return Long.bitCount(bits);
+    }
+
+    /**
+     * @return the attributes of this set that are mandatory in the eIDAS minimum data set
+     */
+    public EidasAttributeSet required() {
+        return retain(REQUIRED_BITS);
+    }
+
+    /**
+     * @return the attributes of this set that are not contained in the other set, in the iteration order of this set
+     */
+    public EidasAttributeSet minus(EidasAttributeSet other) {
+        return retain(~other.bits);
+    }
+
+    /**
+     * @return the bitmask of the attribute ordinals
+     */
+    public long getBits() {
+        return bits;
+    }
+
+    /**
+     * @return true if the other set contains the same attributes in the same iteration order
+     */
+    public boolean equalsInOrder(EidasAttributeSet other) {
+        return other != null && bits == other.bits && Arrays.equals(order, other.order);
+    }
+
+    public List<EidasAttribute> toList() {
+        List<EidasAttribute> eidasAttributes = new ArrayList<>(size());
+        for (EidasAttribute eidasAttribute : this) {
+            eidasAttributes.add(eidasAttribute);
+        }
+        return Collections.unmodifiableList(eidasAttributes);
+    }
+
+    @Override
+    public Iterator<EidasAttribute> iterator() {
+        if (order != null) {
+            return new Iterator<EidasAttribute>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < order.length;
+                }
+
+                @Override
+                public EidasAttribute next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return ATTRIBUTES[order[index++]];
+                }
+            };
+        }
+        return new Iterator<EidasAttribute>() {
+            private long remaining = bits;
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+
+            @Override
+            public EidasAttribute next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int ordinal = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return ATTRIBUTES[ordinal];
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EidasAttributeSet)) {
+            return false;
+        }
+        return bits == ((EidasAttributeSet) o).bits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (EidasAttribute eidasAttribute : this) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(eidasAttribute);
+        }
+        return sb.append(']').toString();
+    }
+
+    private EidasAttributeSet retain(long mask) {
+        long retained = bits & mask;
+        if (retained == bits) {
+            return this;
+        }
+        if (retained == 0) {
+            return EMPTY;
+        }
+        if (order == null) {
+            return new EidasAttributeSet(retained, null);
+        }
+        Builder builder = builder();
+        for (byte ordinal : order) {
+            if ((retained & (1L << ordinal)) != 0) {
+                builder.add(ATTRIBUTES[ordinal]);
+            }
+        }
+        return builder.build();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if ((bits & ~ALL_BITS) != 0) {
+            throw new InvalidObjectException("Unknown eIDAS attribute in set");
+        }
+        if (order != null) {
+            long orderBits = 0;
+            for (byte ordinal : order) {
+                if (ordinal < 0 || ordinal >= ATTRIBUTES.length || (orderBits & (1L << ordinal)) != 0) {
+                    throw new InvalidObjectException("Invalid eIDAS attribute set order");
+                }
+                orderBits |= 1L << ordinal;
+            }
+            if (orderBits != bits) {
+                throw new InvalidObjectException("Invalid eIDAS attribute set order");
+            }
+        }
+    }
+
+    private static long bit(EidasAttribute eidasAttribute) {
+        return 1L << eidasAttribute.ordinal();
+    }
+
+    private static long requiredBits() {
+        long required = 0;
+        for (EidasAttribute eidasAttribute : ATTRIBUTES) {
+            if (eidasAttribute.isRequired()) {
+                required |= bit(eidasAttribute);
+            }
+        }
+        return required;
+    }
+
+    /**
+     * Collects attributes into a new {@link EidasAttributeSet}. Attributes that are already present are ignored.
+     */
+    public static final class Builder {
+
+        private final byte[] order = new byte[ATTRIBUTES.length];
+
+        private long bits;
+
+        private int size;
+
+        private boolean ordinalOrder = true;
+
+        private Builder() {
+        }
+
+        public Builder add(EidasAttribute eidasAttribute) {
+            long bit = bit(eidasAttribute);
+            if ((bits & bit) == 0) {
+                if ((bits & -bit) != 0) {
+                    ordinalOrder = false;
+                }
+                bits |= bit;
+                order[size++] = (byte) eidasAttribute.ordinal();
+            }
+            return this;
+        }
+
+        public EidasAttributeSet build() {
+            if (bits == 0) {
+                return EMPTY;
+            }
+            return new EidasAttributeSet(bits, ordinalOrder ? null : Arrays.copyOf(order, size));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package ee.ria.eidas.client.authnrequest;
+
+import ee.ria.eidas.client.config.EidasClientProperties;
+import org.joda.time.DateTime;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded pool of signed AuthnRequests for the most recently requested (LoA, attributes) combinations. A low priority
+ * background thread keeps the pools filled, so that the signing cost is paid outside of the request processing.
+ * <p>
+ * The pool of a combination is sized by its demand: it holds as many requests as were taken during the last refill
+ * interval, decaying by half for every interval without demand and capped by the configured pool size. Combinations
+ * nobody asks for are therefore not signed again once their pooled requests have expired.
+ * <p>
+ * A pooled request is handed out only if its IssueInstant is not older than the configured maximum age and its
+ * destination matches the current IDP single sign-on service. The maximum age is capped by the accepted clock skew,
+ * so using a pooled request never shortens the authentication lifetime accepted by the response validation beyond
+ * the tolerated clock skew. If the resulting lifetime is too short for the requests to be worth signing ahead, the
+ * pool stays disabled. When no suitable request is available, the caller builds and signs the request inline.
+ */
+public class PresignedAuthnRequestPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PresignedAuthnRequestPool.class);
+
+    static final int MAX_KEYS = 16;
+
+    static final long REFILL_INTERVAL_MILLIS = 200;
+
+    static final long IDLE_KEY_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    static final long MIN_USABLE_LIFETIME_MILLIS = 1000;
+
+    private final EidasClientProperties eidasClientProperties;
+
+    private final BiFunction<AssuranceLevel, List<EidasAttribute>, AuthnRequest> requestFactory;
+
+    private final Map<AuthnRequestKey, Pool> pools = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "authn-request-pool");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public PresignedAuthnRequestPool(EidasClientProperties eidasClientProperties, BiFunction<AssuranceLevel, List<EidasAttribute>, AuthnRequest> requestFactory) {
+        this.eidasClientProperties = eidasClientProperties;
+        this.requestFactory = requestFactory;
+    }
+
+    public void start() {
+        if (!isUsable()) {
+            LOGGER.warn("AuthnRequest pool disabled: maximum age of {} ms leaves less than {} ms to use a pre-signed request",
+                    getMaxAgeMillis(), MIN_USABLE_LIFETIME_MILLIS);
+            return;
+        }
+        executor.scheduleWithFixedDelay(this::refill, REFILL_INTERVAL_MILLIS, REFILL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Returns a fresh pre-signed request for the given LoA and attributes or null if none is available. Each call also
+     * registers the demand for the combination, so that the background thread produces requests for it.
+     */
+    public AuthnRequest take(AssuranceLevel loa, List<EidasAttribute> eidasAttributes, String destination) {
+        if (!isUsable()) {
+            return null;
+        }
+        AuthnRequestKey key = new AuthnRequestKey(loa != null ? loa : eidasClientProperties.getDefaultLoa(), eidasAttributes);
+        Pool pool = pools.get(key);
+        if (pool == null) {
+            if (pools.size() < MAX_KEYS) {
+                pools.computeIfAbsent(key, k -> new Pool()).requested();
+            }
+            return null;
+        }
+
+        pool.requested();
+        DateTime oldestAccepted = DateTime.now().minus(getMaxAgeMillis());
+        AuthnRequest authnRequest;
+        while ((authnRequest = pool.requests.poll()) != null) {
+            if (authnRequest.getIssueInstant().isAfter(oldestAccepted) && Objects.equals(destination, authnRequest.getDestination())) {
+                return authnRequest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Discards all pooled requests, for example after the signing credential has changed.
+     */
+    public void flush() {
+        flush(() -> {
+        });
+    }
+
+    /**
+     * Runs the given change of the request factory state, such as a signer replacement, and discards all pooled
+     * requests. Both happen while no refill is in progress, so no request produced with the previous state can be
+     * added to the pool afterwards.
+     */
+    public synchronized void flush(Runnable change) {
+        change.run();
+        pools.values().forEach(pool -> pool.requests.clear());
+    }
+
+    int size(AssuranceLevel loa, List<EidasAttribute> eidasAttributes) {
+        Pool pool = pools.get(new AuthnRequestKey(loa, eidasAttributes));
+        return pool != null ? pool.requests.size() : 0;
+    }
+
+    long getMaxAgeMillis() {
+        int maxAge = Math.min(eidasClientProperties.getAuthnRequestPoolMaxAge(), eidasClientProperties.getAcceptedClockSkew());
+        return TimeUnit.SECONDS.toMillis(maxAge);
+    }
+
+    /**
+     * A pooled request is kept only while it stays valid until the next refill, so this is the time it can be used.
+     */
+    boolean isUsable() {
+        return getMaxAgeMillis() - REFILL_INTERVAL_MILLIS >= MIN_USABLE_LIFETIME_MILLIS;
+    }
+
+    synchronized void refill() {
+        if (!isUsable()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            pools.entrySet().removeIf(entry -> now - entry.getValue().lastRequested > IDLE_KEY_TIMEOUT_MILLIS);
+            for (Map.Entry<AuthnRequestKey, Pool> entry : pools.entrySet()) {
+                refill(entry.getKey(), entry.getValue());
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Failed to pre-sign AuthnRequests: {}", e.getMessage(), e);
+        }
+    }
+
+    private void refill(AuthnRequestKey key, Pool pool) {
+        removeStaleRequests(pool);
+        int demand = pool.demand.getAndSet(0);
+        pool.targetSize = Math.min(Math.max(demand, pool.targetSize / 2), pool.requests.remainingCapacity() + pool.requests.size());
+        while (pool.requests.size() < pool.targetSize && !Thread.currentThread().isInterrupted()) {
+            if (!pool.requests.offer(requestFactory.apply(key.getLoa(), key.getEidasAttributes()))) {
+                break;
+            }
+        }
+    }
+
+    private void removeStaleRequests(Pool pool) {
+        DateTime oldestAccepted = DateTime.now().minus(getMaxAgeMillis() - REFILL_INTERVAL_MILLIS);
+        AuthnRequest head;
+        while ((head = pool.requests.peek()) != null && !head.getIssueInstant().isAfter(oldestAccepted)) {
+            pool.requests.remove(head);
+        }
+    }
+
+    private final class Pool {
+
+        private final BlockingQueue<AuthnRequest> requests = new ArrayBlockingQueue<>(eidasClientProperties.getAuthnRequestPoolSize());
+
+        private final AtomicInteger demand = new AtomicInteger();
+
+        private volatile long lastRequested = System.currentTimeMillis();
+
+        private int targetSize;
+
+        private void requested() {
+            lastRequested = System.currentTimeMillis();
+            demand.incrementAndGet();
+        }
+    }
+}
@@ -3,33 +3,30 @@ package ee.ria.eidas.client.config;
 import ee.ria.eidas.client.AuthInitiationService;
 import ee.ria.eidas.client.AuthResponseService;
 import ee.ria.eidas.client.exception.EidasClientException;
+import ee.ria.eidas.client.metadata.HazelcastIDPMetadataCoordinator;
+import ee.ria.eidas.client.metadata.IDPMetadataInitializer;
 import ee.ria.eidas.client.metadata.IDPMetadataResolver;
 import ee.ria.eidas.client.metadata.SPMetadataGenerator;
 import ee.ria.eidas.client.session.RequestSessionService;
 import ee.ria.eidas.client.session.LocalRequestSessionServiceImpl;
-import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
-import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
-import net.shibboleth.utilities.java.support.resolver.Criterion;
-import net.shibboleth.utilities.java.support.resolver.ResolverException;
-import org.opensaml.core.criterion.EntityIdCriterion;
+import ee.ria.eidas.client.util.OpenSAMLUtils;
+import net.shibboleth.utilities.java.support.security.IdentifierGenerationStrategy;
 import org.opensaml.saml.common.xml.SAMLSchemaBuilder;
-import org.opensaml.saml.metadata.resolver.impl.PredicateRoleDescriptorResolver;
-import org.opensaml.saml.security.impl.MetadataCredentialResolver;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.CredentialSupport;
-import org.opensaml.security.credential.impl.KeyStoreCredentialResolver;
 import org.opensaml.security.credential.impl.StaticCredentialResolver;
 import org.opensaml.security.x509.X509Credential;
 import org.opensaml.xmlsec.config.impl.DefaultSecurityConfigurationBootstrap;
-import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
 import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.Resource;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.env.Environment;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.xml.sax.SAXException;
@@ -38,8 +35,6 @@ import javax.xml.validation.Schema;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.cert.X509Certificate;
-import java.util.HashMap;
-import java.util.Map;
 
 @Configuration
 @EnableConfigurationProperties({
@@ -48,22 +43,31 @@ import java.util.Map;
 @EnableScheduling
 public class EidasClientConfiguration {
 
+    private static final int DEFAULT_TOMCAT_MAX_THREADS = 200;
+
     @Autowired
     private EidasClientProperties eidasClientProperties;
 
     @Autowired
     private ResourceLoader resourceLoader;
 
+    @Autowired(required = false)
+    public void setIdentifierGenerationStrategy(IdentifierGenerationStrategy identifierGenerationStrategy) {
+        OpenSAMLUtils.setIdentifierGenerationStrategy(identifierGenerationStrategy);
+    }
+
     @Bean
     public KeyStore samlKeystore() {
-        try {
-            KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
-            Resource resource = resourceLoader.getResource(eidasClientProperties.getKeystore());
-            keystore.load(resource.getInputStream(), eidasClientProperties.getKeystorePass().toCharArray());
-            return keystore;
-        } catch (Exception e) {
-            throw new EidasClientException("Something went wrong reading the keystore", e);
+        return SPCredentialRegistry.loadKeystore(resourceLoader, eidasClientProperties);
+    }
+
+    @Bean
+    public SPCredentialRegistry spCredentialRegistry(@Qualifier("metadataSigningCredential") Credential metadataSigningCredential, @Qualifier("authnReqSigningCredential") Credential authnReqSigningCredential, @Qualifier("responseAssertionDecryptionCredential") Credential responseAssertionDecryptionCredential) {
+        SPCredentialRegistry spCredentialRegistry = new SPCredentialRegistry(eidasClientProperties, resourceLoader, metadataSigningCredential, authnReqSigningCredential, responseAssertionDecryptionCredential);
+        if (eidasClientProperties.isKeystoreReloadEnabled()) {
+            spCredentialRegistry.start();
         }
+        return spCredentialRegistry;
     }
 
     @Bean
@@ -75,33 +79,42 @@ public class EidasClientConfiguration {
         }
     }
 
+    /**
+     * Metadata signing credential read from the keystore at startup. It is not replaced when the keystore is reloaded,
+     * the credential in use is available from {@link SPCredentialRegistry#getCurrent()}.
+     */
     @Bean
-    public Credential metadataSigningCredential(KeyStore keyStore) {
-        return getCredential(
-                keyStore,
-                eidasClientProperties.getMetadataSigningKeyId(),
-                eidasClientProperties.getMetadataSigningKeyPass());
+    public Credential metadataSigningCredential(KeyStore samlKeystore) {
+        return SPCredentialRegistry.getCredential(samlKeystore, eidasClientProperties.getMetadataSigningKeyId(), eidasClientProperties.getMetadataSigningKeyPass());
     }
 
+    /**
+     * AuthnRequest signing credential read from the keystore at startup. It is not replaced when the keystore is
+     * reloaded, the credential in use is available from {@link SPCredentialRegistry#getCurrent()}.
+     */
     @Bean
-    public Credential authnReqSigningCredential(KeyStore keyStore) {
-        return getCredential(
-                keyStore,
-                eidasClientProperties.getRequestSigningKeyId(),
-                eidasClientProperties.getRequestSigningKeyPass());
+    public Credential authnReqSigningCredential(KeyStore samlKeystore) {
+        return SPCredentialRegistry.getCredential(samlKeystore, eidasClientProperties.getRequestSigningKeyId(), eidasClientProperties.getRequestSigningKeyPass());
     }
 
+    /**
+     * Response decryption credential read from the keystore at startup. It is not replaced when the keystore is
+     * reloaded, the credential in use is available from {@link SPCredentialRegistry#getCurrent()}.
+     */
     @Bean
-    public Credential responseAssertionDecryptionCredential(KeyStore keyStore) {
-        return getCredential(
-                keyStore,
-                eidasClientProperties.getResponseDecryptionKeyId(),
-                eidasClientProperties.getResponseDecryptionKeyPass());
+    public Credential responseAssertionDecryptionCredential(KeyStore samlKeystore) {
+        return SPCredentialRegistry.getCredential(samlKeystore, eidasClientProperties.getResponseDecryptionKeyId(), eidasClientProperties.getResponseDecryptionKeyPass());
     }
 
     @Bean
-    public SPMetadataGenerator metadataGenerator(@Qualifier("metadataSigningCredential") Credential metadataSigningCredential, @Qualifier("authnReqSigningCredential") Credential authnReqSigningCredential, @Qualifier("responseAssertionDecryptionCredential") Credential responseAssertionDecryptionCredential) {
-        return new SPMetadataGenerator(eidasClientProperties, metadataSigningCredential, authnReqSigningCredential, responseAssertionDecryptionCredential);
+    public SPMetadataGenerator metadataGenerator(SPCredentialRegistry spCredentialRegistry) {
+        SPCredentials initialCredentials = spCredentialRegistry.getCurrent();
+        SPMetadataGenerator metadataGenerator = new SPMetadataGenerator(eidasClientProperties, initialCredentials.getMetadataSigningCredential(), initialCredentials.getAuthnReqSigningCredential(), initialCredentials.getResponseDecryptionCredential());
+        spCredentialRegistry.addListener(credentials -> metadataGenerator.setCredentials(
+                credentials.getMetadataSigningCredential(),
+                credentials.getAuthnReqSigningCredential(),
+                credentials.getResponseDecryptionCredential()));
+        return metadataGenerator;
     }
 
     @Bean
@@ -120,28 +133,26 @@ public class EidasClientConfiguration {
     }
 
     @Bean
-    public ExplicitKeySignatureTrustEngine idpMetadataSignatureTrustEngine(IDPMetadataResolver idpMetadataResolver) {
-        MetadataCredentialResolver metadataCredentialResolver = new MetadataCredentialResolver();
-        PredicateRoleDescriptorResolver roleResolver = new PredicateRoleDescriptorResolver(idpMetadataResolver.resolve());
-
-        KeyInfoCredentialResolver keyResolver = DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver();
-
-        metadataCredentialResolver.setKeyInfoCredentialResolver(keyResolver);
-        metadataCredentialResolver.setRoleDescriptorResolver(roleResolver);
-
-        try {
-            metadataCredentialResolver.initialize();
-            roleResolver.initialize();
-        } catch (final ComponentInitializationException e) {
-            throw new EidasClientException("Error initializing metadataCredentialResolver", e);
+    public InstrumentedParserPool parserPool(Environment environment) {
+        Integer maxPoolSize = eidasClientProperties.getParserPoolMaxSize();
+        if (maxPoolSize == null) {
+            maxPoolSize = environment.getProperty("server.tomcat.threads.max", Integer.class,
+                    environment.getProperty("server.tomcat.max-threads", Integer.class, DEFAULT_TOMCAT_MAX_THREADS));
         }
+        return OpenSAMLConfiguration.configureParserPool(maxPoolSize, eidasClientProperties.getParserPoolPrewarmSize());
+    }
 
-        return new ExplicitKeySignatureTrustEngine(metadataCredentialResolver, keyResolver);
+    @Bean
+    @DependsOn("parserPool")
+    public IDPMetadataResolver idpMetadataResolver(@Qualifier("idpMetadataSignatureTrustEngine") ExplicitKeySignatureTrustEngine metadataSignatureTrustEngine, ObjectProvider<HazelcastIDPMetadataCoordinator> idpMetadataCoordinator) {
+        IDPMetadataResolver idpMetadataResolver = new IDPMetadataResolver(eidasClientProperties.getIdpMetadataUrl(), metadataSignatureTrustEngine, eidasClientProperties);
+        idpMetadataCoordinator.ifAvailable(idpMetadataResolver::setClusterCoordinator);
+        return idpMetadataResolver;
     }
 
     @Bean
-    public IDPMetadataResolver idpMetadataResolver(@Qualifier("idpMetadataSignatureTrustEngine") ExplicitKeySignatureTrustEngine metadataSignatureTrustEngine) {
-        return new IDPMetadataResolver(eidasClientProperties.getIdpMetadataUrl(), metadataSignatureTrustEngine);
+    public IDPMetadataInitializer idpMetadataInitializer(IDPMetadataResolver idpMetadataResolver) {
+        return new IDPMetadataInitializer(idpMetadataResolver, eidasClientProperties.getIdpMetadataInitializationRetryInterval());
     }
 
     @ConditionalOnProperty(name = "eidas.client.hazelcast-enabled", havingValue = "false", matchIfMissing = true)
@@ -151,31 +162,20 @@ public class EidasClientConfiguration {
     }
 
     @Bean
-    public AuthInitiationService authInitiationService(@Qualifier("requestSessionService") RequestSessionService requestSessionService, @Qualifier("authnReqSigningCredential") Credential signingCredential, IDPMetadataResolver idpMetadataResolver) {
-        return new AuthInitiationService(requestSessionService, signingCredential, eidasClientProperties, idpMetadataResolver);
+    public AuthInitiationService authInitiationService(@Qualifier("requestSessionService") RequestSessionService requestSessionService, IDPMetadataResolver idpMetadataResolver, SPCredentialRegistry spCredentialRegistry) {
+        AuthInitiationService authInitiationService = new AuthInitiationService(requestSessionService, spCredentialRegistry.getCurrent().getAuthnRequestSigner(), eidasClientProperties, idpMetadataResolver);
+        spCredentialRegistry.addListener(credentials -> authInitiationService.setAuthnRequestSigner(credentials.getAuthnRequestSigner()));
+        return authInitiationService;
     }
 
     @Bean
     public AuthResponseService authResponseService(
             RequestSessionService requestSessionService,
             IDPMetadataResolver idpMetadataResolver,
-            @Qualifier("responseAssertionDecryptionCredential") Credential responseAssertionDecryptionCredential, Schema samlSchema) {
-        return new AuthResponseService(requestSessionService, eidasClientProperties, idpMetadataResolver, responseAssertionDecryptionCredential, samlSchema);
-    }
-
-    private Credential getCredential(KeyStore keystore, String keyPairId, String privateKeyPass) {
-        try {
-            Map<String, String> passwordMap = new HashMap<>();
-            passwordMap.put(keyPairId, privateKeyPass);
-            KeyStoreCredentialResolver resolver = new KeyStoreCredentialResolver(keystore, passwordMap);
-
-            Criterion criterion = new EntityIdCriterion(keyPairId);
-            CriteriaSet criteriaSet = new CriteriaSet();
-            criteriaSet.add(criterion);
-
-            return resolver.resolveSingle(criteriaSet);
-        } catch (ResolverException e) {
-            throw new IllegalStateException("Something went wrong reading credentials", e);
-        }
+            Schema samlSchema,
+            SPCredentialRegistry spCredentialRegistry) {
+        AuthResponseService authResponseService = new AuthResponseService(requestSessionService, eidasClientProperties, idpMetadataResolver, spCredentialRegistry.getCurrent().getAssertionDecrypter(), samlSchema);
+        spCredentialRegistry.addListener(credentials -> authResponseService.setAssertionDecrypter(credentials.getAssertionDecrypter()));
+        return authResponseService;
     }
 }
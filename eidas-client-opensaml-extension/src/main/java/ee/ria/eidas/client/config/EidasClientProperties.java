@@ -9,6 +9,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
 import javax.annotation.Nonnegative;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 import java.util.Arrays;
@@ -23,6 +24,17 @@ public class EidasClientProperties {
     private static final String DEFAULT_IDP_METADATA_SIGN_CERT_KEY = "metadata";
     private static final int DEFAULT_ACCEPTED_CLOCK_SKEW = 2;
     private static final int DEFAULT_RESPONSE_MESSAGE_LIFETIME = 900;
+    private static final int DEFAULT_METADATA_CACHE_MAX_AGE = 600;
+    private static final int DEFAULT_IDP_METADATA_CONNECT_TIMEOUT = 5;
+    private static final int DEFAULT_IDP_METADATA_READ_TIMEOUT = 10;
+    private static final int DEFAULT_IDP_METADATA_MAX_CONNECTIONS = 2;
+    private static final int DEFAULT_IDP_METADATA_INITIALIZATION_RETRY_INTERVAL = 10;
+    private static final int DEFAULT_HAZELCAST_IDP_METADATA_REFRESH_INTERVAL = 300;
+    private static final int DEFAULT_AUTHN_REQUEST_POOL_SIZE = 10;
+    private static final int DEFAULT_AUTHN_REQUEST_POOL_MAX_AGE = 5;
+    private static final int DEFAULT_PARSER_POOL_PREWARM_SIZE = 10;
+    private static final int DEFAULT_KEYSTORE_RELOAD_INTERVAL = 60;
+    private static final int DEFAULT_RESPONSE_DECRYPTION_KEY_OVERLAP = 900;
     private static final List<EidasAttribute> DEFAULT_ALLOWED_EIDAS_ATTRIBUTES = Arrays.asList(EidasAttribute.values());
 
     public static final String DEFAULT_HAZELCAST_SIGNING_ALGORITHM = "HS512";
@@ -34,6 +46,11 @@ public class EidasClientProperties {
     @NotNull
     private String keystorePass;
 
+    private boolean keystoreReloadEnabled = false;
+
+    @Min(1)
+    private int keystoreReloadInterval = DEFAULT_KEYSTORE_RELOAD_INTERVAL;
+
     @NotNull
     private String metadataSigningKeyId;
 
@@ -46,6 +63,11 @@ public class EidasClientProperties {
     @NotNull
     private Integer metadataValidityInDays = 1;
 
+    @Min(0)
+    private int metadataCacheMaxAge = DEFAULT_METADATA_CACHE_MAX_AGE;
+
+    private boolean metadataGzipEnabled = false;
+
     @NotNull
     private String requestSigningKeyId;
 
@@ -58,6 +80,9 @@ public class EidasClientProperties {
     @NotNull
     private String responseDecryptionKeyPass;
 
+    @Min(0)
+    private int responseDecryptionKeyOverlap = DEFAULT_RESPONSE_DECRYPTION_KEY_OVERLAP;
+
     @NotNull
     private String callbackUrl;
 
@@ -90,6 +115,20 @@ public class EidasClientProperties {
     @NotNull
     private String idpMetadataSigningCertificateKeyId = DEFAULT_IDP_METADATA_SIGN_CERT_KEY;
 
+    private String idpMetadataBackupFile;
+
+    @Nonnegative
+    private int idpMetadataConnectTimeout = DEFAULT_IDP_METADATA_CONNECT_TIMEOUT;
+
+    @Nonnegative
+    private int idpMetadataReadTimeout = DEFAULT_IDP_METADATA_READ_TIMEOUT;
+
+    @Min(1)
+    private int idpMetadataMaxConnections = DEFAULT_IDP_METADATA_MAX_CONNECTIONS;
+
+    @Min(1)
+    private int idpMetadataInitializationRetryInterval = DEFAULT_IDP_METADATA_INITIALIZATION_RETRY_INTERVAL;
+
     @NotNull
     @Nonnegative
     private int acceptedClockSkew = DEFAULT_ACCEPTED_CLOCK_SKEW;
@@ -97,6 +136,20 @@ public class EidasClientProperties {
     @NotNull
     private int responseMessageLifetime = DEFAULT_RESPONSE_MESSAGE_LIFETIME;
 
+    private boolean authnRequestPoolEnabled = false;
+
+    @Min(1)
+    private int authnRequestPoolSize = DEFAULT_AUTHN_REQUEST_POOL_SIZE;
+
+    @Min(1)
+    private int authnRequestPoolMaxAge = DEFAULT_AUTHN_REQUEST_POOL_MAX_AGE;
+
+    @Min(1)
+    private Integer parserPoolMaxSize;
+
+    @Min(0)
+    private int parserPoolPrewarmSize = DEFAULT_PARSER_POOL_PREWARM_SIZE;
+
     private boolean hazelcastEnabled = false;
 
     private String hazelcastConfig;
@@ -113,6 +166,9 @@ public class EidasClientProperties {
 
     private int hazelcastStorageTimeout = 0;
 
+    @Min(1)
+    private int hazelcastIdpMetadataRefreshInterval = DEFAULT_HAZELCAST_IDP_METADATA_REFRESH_INTERVAL;
+
     @Pattern(regexp="^(HS512|HS384|HS256)$",message="Invalid signing algorithm! Must be one of the following values: HS512, HS384, HS256.")
     private String hazelcastSigningAlgorithm = DEFAULT_HAZELCAST_SIGNING_ALGORITHM;
 
@@ -3,9 +3,12 @@ package ee.ria.eidas.client.config;
 import com.hazelcast.config.*;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import ee.ria.eidas.client.metadata.HazelcastIDPMetadataCoordinator;
 import ee.ria.eidas.client.session.*;
 import lombok.extern.slf4j.Slf4j;
+import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -45,6 +48,11 @@ public class HazelcastConfiguration {
         return new HazelcastRequestSessionServiceImpl(eidasClientProperties, hazelcast());
     }
 
+    @Bean
+    public HazelcastIDPMetadataCoordinator idpMetadataCoordinator(@Qualifier("idpMetadataSignatureTrustEngine") ExplicitKeySignatureTrustEngine metadataSignatureTrustEngine) {
+        return new HazelcastIDPMetadataCoordinator(hazelcast(), eidasClientProperties, metadataSignatureTrustEngine);
+    }
+
     private Config getConfig() {
         if (eidasClientProperties.getHazelcastConfig() != null) {
             Resource resource = resourceLoader.getResource(eidasClientProperties.getHazelcastConfig());
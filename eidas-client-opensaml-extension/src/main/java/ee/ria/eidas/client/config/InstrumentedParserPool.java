@@ -0,0 +1,144 @@
+package ee.ria.eidas.client.config;
+
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.parsers.DocumentBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link BasicParserPool} that counts pool hits, misses and created builders, measures the time spent waiting for a
+ * builder and discards builders that failed to parse a document instead of returning them to the pool. Only builders
+ * borrowed from this pool and not yet returned are counted as in use, so returning a builder twice or returning a
+ * builder of another pool does not affect the statistics.
+ * <p>
+ * The pool can be filled with {@link #prewarm(int)} builders after initialization, so that the first requests do not
+ * need to create a {@link DocumentBuilder}.
+ */
+public class InstrumentedParserPool extends BasicParserPool {
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder createCount = new LongAdder();
+    private final LongAdder discardCount = new LongAdder();
+    private final LongAdder borrowTimeNanos = new LongAdder();
+    private final LongAccumulator maxBorrowTimeNanos = new LongAccumulator(Math::max, 0);
+    private final Set<DocumentBuilder> inUse = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicInteger prewarmed = new AtomicInteger();
+
+    @Override
+    public DocumentBuilder getBuilder() throws XMLParserException {
+        long start = System.nanoTime();
+        DocumentBuilder builder = super.getBuilder();
+        long borrowTime = System.nanoTime() - start;
+        borrowCount.increment();
+        borrowTimeNanos.add(borrowTime);
+        maxBorrowTimeNanos.accumulate(borrowTime);
+        inUse.add(builder);
+        return builder;
+    }
+
+    @Override
+    public void returnBuilder(@Nullable DocumentBuilder builder) {
+        if (builder != null) {
+            inUse.remove(builder);
+        }
+        super.returnBuilder(builder);
+    }
+
+    @Override
+    protected DocumentBuilder createBuilder() throws XMLParserException {
+        DocumentBuilder builder = super.createBuilder();
+        createCount.increment();
+        return builder;
+    }
+
+    @Override
+    public Document parse(@Nonnull InputStream input) throws XMLParserException {
+        DocumentBuilder builder = getBuilder();
+        boolean parsed = false;
+        try {
+            Document document = builder.parse(input);
+            parsed = true;
+            return document;
+        } catch (SAXException | IOException e) {
+            throw new XMLParserException("Unable to parse inputstream, it contained invalid XML", e);
+        } finally {
+            returnOrDiscard(builder, parsed);
+        }
+    }
+
+    @Override
+    public Document parse(@Nonnull Reader input) throws XMLParserException {
+        DocumentBuilder builder = getBuilder();
+        boolean parsed = false;
+        try {
+            Document document = builder.parse(new InputSource(input));
+            parsed = true;
+            return document;
+        } catch (SAXException | IOException e) {
+            throw new XMLParserException("Unable to parse reader, it contained invalid XML", e);
+        } finally {
+            returnOrDiscard(builder, parsed);
+        }
+    }
+
+    /**
+     * Creates builders until the given number of builders (at most the maximum pool size) are idle in the pool.
+     */
+    public void prewarm(int count) throws XMLParserException {
+        int size = Math.min(count, getMaxPoolSize());
+        List<DocumentBuilder> builders = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                builders.add(getBuilder());
+            }
+        } finally {
+            builders.forEach(this::returnBuilder);
+        }
+        prewarmed.addAndGet(builders.size());
+    }
+
+    public Map<String, Object> getStatistics() {
+        long borrowed = borrowCount.sum();
+        long created = createCount.sum();
+        int prewarmedBuilders = prewarmed.get();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("maxPoolSize", getMaxPoolSize());
+        statistics.put("inUse", inUse.size());
+        statistics.put("prewarmed", prewarmedBuilders);
+        statistics.put("borrowed", borrowed - prewarmedBuilders);
+        statistics.put("hits", borrowed - created);
+        statistics.put("misses", created - prewarmedBuilders);
+        statistics.put("created", created);
+        statistics.put("discardedAfterError", discardCount.sum());
+        statistics.put("totalWaitMillis", TimeUnit.NANOSECONDS.toMillis(borrowTimeNanos.sum()));
+        statistics.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxBorrowTimeNanos.get()));
+        return statistics;
+    }
+
+    private void returnOrDiscard(DocumentBuilder builder, boolean parsed) {
+        if (parsed) {
+            returnBuilder(builder);
+        } else if (inUse.remove(builder)) {
+            discardCount.increment();
+        }
+    }
+}
@@ -2,13 +2,14 @@ package ee.ria.eidas.client.config;
 
 import ee.ria.eidas.client.exception.EidasClientException;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
-import net.shibboleth.utilities.java.support.xml.BasicParserPool;
 import net.shibboleth.utilities.java.support.xml.ParserPool;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.opensaml.core.config.ConfigurationService;
 import org.opensaml.core.config.InitializationException;
 import org.opensaml.core.config.InitializationService;
 import org.opensaml.core.xml.config.XMLObjectProviderRegistry;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
 import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
 import org.opensaml.xmlsec.algorithm.SignatureAlgorithm;
 import org.slf4j.Logger;
@@ -22,7 +23,9 @@ import java.util.Map;
 public class OpenSAMLConfiguration {
     protected static final Logger LOGGER = LoggerFactory.getLogger(OpenSAMLConfiguration.class);
 
-    private static BasicParserPool parserPool;
+    static final int DEFAULT_PARSER_POOL_MAX_SIZE = 100;
+
+    private static volatile InstrumentedParserPool parserPool;
 
     private OpenSAMLConfiguration() {
     }
@@ -37,9 +40,30 @@ public class OpenSAMLConfiguration {
         return parserPool;
     }
 
-    private static void bootstrap() {
-        parserPool = new BasicParserPool();
-        parserPool.setMaxPoolSize(100);
+    public static InstrumentedParserPool getInstrumentedParserPool() {
+        return parserPool;
+    }
+
+    /**
+     * Replaces the parser pool with a new pool of the given maximum size and fills it with up to {@code prewarmSize}
+     * builders. Documents borrowed from the previous pool stay valid.
+     */
+    public static synchronized InstrumentedParserPool configureParserPool(int maxPoolSize, int prewarmSize) {
+        InstrumentedParserPool newParserPool = createParserPool(maxPoolSize);
+        try {
+            newParserPool.prewarm(prewarmSize);
+        } catch (final XMLParserException e) {
+            throw new EidasClientException("Error prewarming parserPool", e);
+        }
+        parserPool = newParserPool;
+        XMLObjectProviderRegistrySupport.setParserPool(newParserPool);
+        LOGGER.info("Parser pool configured with max size {}, {} builders prewarmed", maxPoolSize, Math.min(prewarmSize, maxPoolSize));
+        return newParserPool;
+    }
+
+    private static InstrumentedParserPool createParserPool(int maxPoolSize) {
+        InstrumentedParserPool parserPool = new InstrumentedParserPool();
+        parserPool.setMaxPoolSize(maxPoolSize);
         parserPool.setCoalescing(true);
         parserPool.setIgnoreComments(true);
         parserPool.setNamespaceAware(true);
@@ -64,6 +88,11 @@ public class OpenSAMLConfiguration {
         } catch (final ComponentInitializationException e) {
             throw new EidasClientException("Error initializing parserPool", e);
         }
+        return parserPool;
+    }
+
+    private static void bootstrap() {
+        parserPool = createParserPool(DEFAULT_PARSER_POOL_MAX_SIZE);
         try {
             InitializationService.initialize();
             AlgorithmSupport.getGlobalAlgorithmRegistry().register(new OpenSAMLConfiguration.SignatureRSASHA256MGF1());
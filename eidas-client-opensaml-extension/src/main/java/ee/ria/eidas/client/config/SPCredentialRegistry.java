@@ -0,0 +1,285 @@
+package ee.ria.eidas.client.config;
+
+import ee.ria.eidas.client.exception.EidasClientException;
+import ee.ria.eidas.client.response.AssertionDecrypter;
+import ee.ria.eidas.client.util.SAMLSigner;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.impl.KeyStoreCredentialResolver;
+import org.opensaml.security.x509.X509Credential;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Holds the current SP credentials and replaces them when the key pairs in the SAML keystore change, without
+ * restarting the application.
+ * <p>
+ * A reload is triggered by {@link #reload()} or, when {@code eidas.client.keystore-reload-enabled} is set, by a
+ * change of the keystore file modification time. The new key pairs are loaded and the derived AuthnRequest signer and
+ * assertion decrypter are prepared before the new {@link SPCredentials} snapshot is published to the listeners, so no
+ * request is served with a partially initialized credential. A keystore that cannot be read is ignored and the
+ * current credentials stay in use.
+ * <p>
+ * After a decryption key rotation the previous decryption key is accepted for
+ * {@code eidas.client.response-decryption-key-overlap} seconds, since the IDP may still encrypt responses with the key
+ * from the SP metadata it has cached.
+ */
+public class SPCredentialRegistry implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SPCredentialRegistry.class);
+
+    private final EidasClientProperties eidasClientProperties;
+
+    private final ResourceLoader resourceLoader;
+
+    private final Clock clock;
+
+    private final List<Consumer<SPCredentials>> listeners = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sp-credential-registry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile SPCredentials current;
+
+    private long keystoreLastModified;
+
+    /**
+     * Creates the registry with the given startup credentials, which were read from the keystore by the caller.
+     */
+    public SPCredentialRegistry(EidasClientProperties eidasClientProperties, ResourceLoader resourceLoader, Credential metadataSigningCredential,
+                                Credential authnReqSigningCredential, Credential responseDecryptionCredential) {
+        this(eidasClientProperties, resourceLoader, metadataSigningCredential, authnReqSigningCredential, responseDecryptionCredential, Clock.systemUTC());
+    }
+
+    SPCredentialRegistry(EidasClientProperties eidasClientProperties, ResourceLoader resourceLoader, KeyStore keystore, Clock clock) {
+        this(eidasClientProperties, resourceLoader,
+                getCredential(keystore, eidasClientProperties.getMetadataSigningKeyId(), eidasClientProperties.getMetadataSigningKeyPass()),
+                getCredential(keystore, eidasClientProperties.getRequestSigningKeyId(), eidasClientProperties.getRequestSigningKeyPass()),
+                getCredential(keystore, eidasClientProperties.getResponseDecryptionKeyId(), eidasClientProperties.getResponseDecryptionKeyPass()),
+                clock);
+    }
+
+    SPCredentialRegistry(EidasClientProperties eidasClientProperties, ResourceLoader resourceLoader, Credential metadataSigningCredential,
+                         Credential authnReqSigningCredential, Credential responseDecryptionCredential, Clock clock) {
+        this.eidasClientProperties = eidasClientProperties;
+        this.resourceLoader = resourceLoader;
+        this.clock = clock;
+        this.keystoreLastModified = getKeystoreLastModified();
+        this.current = new SPCredentials(
+                metadataSigningCredential,
+                authnReqSigningCredential,
+                responseDecryptionCredential,
+                null,
+                null,
+                new SAMLSigner(eidasClientProperties.getRequestSignatureAlgorithm(), authnReqSigningCredential),
+                new AssertionDecrypter(responseDecryptionCredential));
+    }
+
+    /**
+     * Starts watching the keystore for changes with the interval {@code eidas.client.keystore-reload-interval}.
+     */
+    public void start() {
+        int interval = eidasClientProperties.getKeystoreReloadInterval();
+        executor.scheduleWithFixedDelay(this::reloadIfModified, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    public SPCredentials getCurrent() {
+        return current;
+    }
+
+    /**
+     * Registers a listener that is notified with every new credentials snapshot.
+     */
+    public void addListener(Consumer<SPCredentials> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Loads the key pairs from the keystore and publishes them, if any of them has changed.
+     *
+     * @return true if new credentials were published
+     * @throws EidasClientException if the keystore or one of the key pairs cannot be read
+     */
+    public synchronized boolean reload() {
+        long lastModified = getKeystoreLastModified();
+        KeyStore keystore = loadKeystore(resourceLoader, eidasClientProperties);
+        SPCredentials previous = current;
+        Credential metadataSigningCredential = getMetadataSigningCredential(keystore);
+        Credential authnReqSigningCredential = getAuthnReqSigningCredential(keystore);
+        Credential responseDecryptionCredential = getResponseDecryptionCredential(keystore);
+
+        boolean metadataSigningKeyChanged = !isSameKeyPair(metadataSigningCredential, previous.getMetadataSigningCredential());
+        boolean authnReqSigningKeyChanged = !isSameKeyPair(authnReqSigningCredential, previous.getAuthnReqSigningCredential());
+        boolean decryptionKeyChanged = !isSameKeyPair(responseDecryptionCredential, previous.getResponseDecryptionCredential());
+        if (!metadataSigningKeyChanged && !authnReqSigningKeyChanged && !decryptionKeyChanged) {
+            keystoreLastModified = lastModified;
+            LOGGER.info("SP credentials in keystore {} have not changed", eidasClientProperties.getKeystore());
+            return false;
+        }
+
+        SAMLSigner authnRequestSigner = previous.getAuthnRequestSigner();
+        if (authnReqSigningKeyChanged) {
+            authnRequestSigner = new SAMLSigner(eidasClientProperties.getRequestSignatureAlgorithm(), authnReqSigningCredential);
+            prepare(authnRequestSigner);
+        } else {
+            authnReqSigningCredential = previous.getAuthnReqSigningCredential();
+        }
+        if (!metadataSigningKeyChanged) {
+            metadataSigningCredential = previous.getMetadataSigningCredential();
+        }
+
+        Credential previousDecryptionCredential = previous.getPreviousResponseDecryptionCredential();
+        Instant previousDecryptionCredentialExpiry = previous.getPreviousResponseDecryptionCredentialExpiry();
+        AssertionDecrypter assertionDecrypter = previous.getAssertionDecrypter();
+        int overlap = eidasClientProperties.getResponseDecryptionKeyOverlap();
+        if (decryptionKeyChanged) {
+            if (overlap > 0) {
+                previousDecryptionCredential = previous.getResponseDecryptionCredential();
+                previousDecryptionCredentialExpiry = clock.instant().plusSeconds(overlap);
+                assertionDecrypter = new AssertionDecrypter(Arrays.asList(responseDecryptionCredential, previousDecryptionCredential));
+            } else {
+                previousDecryptionCredential = null;
+                previousDecryptionCredentialExpiry = null;
+                assertionDecrypter = new AssertionDecrypter(responseDecryptionCredential);
+            }
+        } else {
+            responseDecryptionCredential = previous.getResponseDecryptionCredential();
+        }
+
+        publish(new SPCredentials(metadataSigningCredential, authnReqSigningCredential, responseDecryptionCredential,
+                previousDecryptionCredential, previousDecryptionCredentialExpiry, authnRequestSigner, assertionDecrypter));
+        keystoreLastModified = lastModified;
+        LOGGER.info("SP credentials reloaded from keystore {}", eidasClientProperties.getKeystore());
+        if (decryptionKeyChanged && previousDecryptionCredential != null) {
+            LOGGER.info("Previous response decryption key is accepted until {}", previousDecryptionCredentialExpiry);
+            executor.schedule(this::expirePreviousDecryptionCredential, overlap, TimeUnit.SECONDS);
+        }
+        return true;
+    }
+
+    synchronized void expirePreviousDecryptionCredential() {
+        SPCredentials credentials = current;
+        Instant expiry = credentials.getPreviousResponseDecryptionCredentialExpiry();
+        if (expiry == null || clock.instant().isBefore(expiry)) {
+            return;
+        }
+        publish(new SPCredentials(
+                credentials.getMetadataSigningCredential(),
+                credentials.getAuthnReqSigningCredential(),
+                credentials.getResponseDecryptionCredential(),
+                null,
+                null,
+                credentials.getAuthnRequestSigner(),
+                new AssertionDecrypter(credentials.getResponseDecryptionCredential())));
+        LOGGER.info("Previous response decryption key is no longer accepted");
+    }
+
+    private synchronized void reloadIfModified() {
+        try {
+            long lastModified = getKeystoreLastModified();
+            if (lastModified != keystoreLastModified) {
+                reload();
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to reload SP credentials from keystore {}: {}", eidasClientProperties.getKeystore(), e.getMessage(), e);
+        }
+    }
+
+    private void publish(SPCredentials credentials) {
+        current = credentials;
+        for (Consumer<SPCredentials> listener : listeners) {
+            listener.accept(credentials);
+        }
+    }
+
+    private Credential getMetadataSigningCredential(KeyStore keystore) {
+        return getCredential(keystore, eidasClientProperties.getMetadataSigningKeyId(), eidasClientProperties.getMetadataSigningKeyPass());
+    }
+
+    private Credential getAuthnReqSigningCredential(KeyStore keystore) {
+        return getCredential(keystore, eidasClientProperties.getRequestSigningKeyId(), eidasClientProperties.getRequestSigningKeyPass());
+    }
+
+    private Credential getResponseDecryptionCredential(KeyStore keystore) {
+        return getCredential(keystore, eidasClientProperties.getResponseDecryptionKeyId(), eidasClientProperties.getResponseDecryptionKeyPass());
+    }
+
+    private long getKeystoreLastModified() {
+        try {
+            return resourceLoader.getResource(eidasClientProperties.getKeystore()).lastModified();
+        } catch (IOException e) {
+            LOGGER.debug("Unable to determine modification time of keystore {}: {}", eidasClientProperties.getKeystore(), e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void prepare(SAMLSigner signer) {
+        try {
+            signer.prepare();
+        } catch (Exception e) {
+            throw new EidasClientException("Unable to prepare AuthnRequest signer", e);
+        }
+    }
+
+    private static boolean isSameKeyPair(Credential credential, Credential other) {
+        if (!Objects.equals(credential.getPublicKey(), other.getPublicKey()) || !Objects.equals(credential.getPrivateKey(), other.getPrivateKey())) {
+            return false;
+        }
+        if (credential instanceof X509Credential && other instanceof X509Credential) {
+            return Objects.equals(((X509Credential) credential).getEntityCertificate(), ((X509Credential) other).getEntityCertificate());
+        }
+        return true;
+    }
+
+    static KeyStore loadKeystore(ResourceLoader resourceLoader, EidasClientProperties eidasClientProperties) {
+        Resource resource = resourceLoader.getResource(eidasClientProperties.getKeystore());
+        try (InputStream inputStream = resource.getInputStream()) {
+            KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keystore.load(inputStream, eidasClientProperties.getKeystorePass().toCharArray());
+            return keystore;
+        } catch (Exception e) {
+            throw new EidasClientException("Something went wrong reading the keystore", e);
+        }
+    }
+
+    static Credential getCredential(KeyStore keystore, String keyPairId, String privateKeyPass) {
+        try {
+            KeyStoreCredentialResolver resolver = new KeyStoreCredentialResolver(keystore, Collections.singletonMap(keyPairId, privateKeyPass));
+            Credential credential = resolver.resolveSingle(new CriteriaSet(new EntityIdCriterion(keyPairId)));
+            if (credential == null) {
+                throw new EidasClientException("It seems you are missing a key pair with alias '" + keyPairId + "' in your keystore");
+            }
+            return credential;
+        } catch (ResolverException e) {
+            throw new IllegalStateException("Something went wrong reading credentials", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ee.ria.eidas.client.config;
+
+import ee.ria.eidas.client.response.AssertionDecrypter;
+import ee.ria.eidas.client.util.SAMLSigner;
+import org.opensaml.security.credential.Credential;
+
+import java.time.Instant;
+
+/**
+ * Immutable snapshot of the SP key pairs loaded from the SAML keystore, together with the AuthnRequest signer and the
+ * assertion decrypter derived from them. After the decryption key has been rotated the previous decryption credential
+ * is still accepted by the decrypter until {@link #getPreviousResponseDecryptionCredentialExpiry()}.
+ */
+public final class SPCredentials {
+
+    private final Credential metadataSigningCredential;
+    private final Credential authnReqSigningCredential;
+    private final Credential responseDecryptionCredential;
+    private final Credential previousResponseDecryptionCredential;
+    private final Instant previousResponseDecryptionCredentialExpiry;
+    private final SAMLSigner authnRequestSigner;
+    private final AssertionDecrypter assertionDecrypter;
+
+    SPCredentials(Credential metadataSigningCredential, Credential authnReqSigningCredential, Credential responseDecryptionCredential,
+                  Credential previousResponseDecryptionCredential, Instant previousResponseDecryptionCredentialExpiry,
+                  SAMLSigner authnRequestSigner, AssertionDecrypter assertionDecrypter) {
+        this.metadataSigningCredential = metadataSigningCredential;
+        this.authnReqSigningCredential = authnReqSigningCredential;
+        this.responseDecryptionCredential = responseDecryptionCredential;
+        this.previousResponseDecryptionCredential = previousResponseDecryptionCredential;
+        this.previousResponseDecryptionCredentialExpiry = previousResponseDecryptionCredentialExpiry;
+        this.authnRequestSigner = authnRequestSigner;
+        this.assertionDecrypter = assertionDecrypter;
+    }
+
+    public Credential getMetadataSigningCredential() {
+        return metadataSigningCredential;
+    }
+
+    public Credential getAuthnReqSigningCredential() {
+        return authnReqSigningCredential;
+    }
+
+    public Credential getResponseDecryptionCredential() {
+        return responseDecryptionCredential;
+    }
+
+    /**
+     * @return the decryption credential replaced by the last rotation, or null if the overlap window has passed
+     */
+    public Credential getPreviousResponseDecryptionCredential() {
+        return previousResponseDecryptionCredential;
+    }
+
+    public Instant getPreviousResponseDecryptionCredentialExpiry() {
+        return previousResponseDecryptionCredentialExpiry;
+    }
+
+    public SAMLSigner getAuthnRequestSigner() {
+        return authnRequestSigner;
+    }
+
+    public AssertionDecrypter getAssertionDecrypter() {
+        return assertionDecrypter;
+    }
+}
@@ -1,8 +1,12 @@
 package ee.ria.eidas.client.exception;
 
+/**
+ * The IDP reported that the authentication failed or the user denied consent. This is an expected outcome of the
+ * authentication, so the exception carries no stack trace.
+ */
 public class AuthenticationFailedException extends RuntimeException {
 
     public AuthenticationFailedException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -10,4 +10,8 @@ public class EidasClientException extends RuntimeException {
         super(message);
     }
 
+    protected EidasClientException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
 }
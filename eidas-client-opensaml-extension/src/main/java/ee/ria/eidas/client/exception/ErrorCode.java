@@ -0,0 +1,60 @@
+package ee.ria.eidas.client.exception;
+
+import org.opensaml.saml.saml2.core.NameIDType;
+import org.opensaml.saml.saml2.core.SubjectConfirmation;
+
+/**
+ * Stable codes of the expected SAMLResponse validation failures. Codes with a fixed message are thrown as preallocated
+ * {@link ValidationFailureException} instances, codes without one require the message to be given on every failure.
+ */
+public enum ErrorCode {
+
+    SAML_RESPONSE_UNREADABLE(null),
+    RESPONSE_NOT_SIGNED("Response not signed."),
+    RESPONSE_SIGNATURE_INVALID("Invalid response signature."),
+    RESPONSE_REJECTED(null),
+    REQUEST_SESSION_NOT_FOUND("No corresponding SAML request session found for the given response!"),
+    REQUEST_SESSION_EXPIRED(null),
+    ASSERTION_NOT_SIGNED("The SAML Assertion was not signed"),
+    ASSERTION_AUTHN_STATEMENT_COUNT("Assertion must contain exactly 1 AuthnStatement!"),
+    ASSERTION_ATTRIBUTE_STATEMENT_COUNT("Assertion must contain exactly 1 AttributeStatement!"),
+    ASSERTION_AUTHN_CONTEXT_MISSING("AuthnStatement must contain AuthnContext!"),
+    ASSERTION_AUTHN_CONTEXT_CLASS_REF_MISSING("AuthnContext must contain AuthnContextClassRef!"),
+    ASSERTION_ISSUE_INSTANT_EXPIRED("Assertion issue instant is expired!"),
+    ASSERTION_ISSUE_INSTANT_IN_FUTURE("Assertion issue instant is in the future!"),
+    ASSERTION_ISSUER_MISSING("Assertion is missing issuer!"),
+    ASSERTION_ISSUER_INVALID("Assertion issuer's value is not equal to the configured IDP metadata url!"),
+    ASSERTION_ISSUER_FORMAT_INVALID("Assertion issuer's format must equal to: " + NameIDType.ENTITY + "!"),
+    ASSERTION_SUBJECT_MISSING("Assertion is missing subject!"),
+    ASSERTION_NAME_ID_MISSING("Assertion subject is missing nameID!"),
+    ASSERTION_NAME_ID_FORMAT_INVALID(null),
+    ASSERTION_SUBJECT_CONFIRMATION_COUNT("Assertion subject must contain exactly 1 SubjectConfirmation!"),
+    ASSERTION_SUBJECT_CONFIRMATION_METHOD_INVALID("Assertion SubjectConfirmation must equal to: " + SubjectConfirmation.METHOD_BEARER + "!"),
+    ASSERTION_SUBJECT_CONFIRMATION_DATA_MISSING("Assertion's subject SubjectConfirmation!"),
+    ASSERTION_SUBJECT_CONFIRMATION_EXPIRED("SubjectConfirmationData NotOnOrAfter is not valid!"),
+    ASSERTION_RECIPIENT_INVALID("SubjectConfirmationData recipient does not match with configured callback URL!"),
+    ASSERTION_REQUEST_SESSION_NOT_FOUND("No corresponding SAML request session found for the given response assertion!"),
+    ASSERTION_LOA_INSUFFICIENT("AuthnContextClassRef is not greater or equal to the request level of assurance!"),
+    ASSERTION_MANDATORY_ATTRIBUTES_MISSING(null),
+    ASSERTION_CONDITION_COUNT("Assertion must contain exactly 1 Condition!"),
+    ASSERTION_CONDITION_EXPIRED("Assertion condition NotOnOrAfter is not valid!"),
+    ASSERTION_CONDITION_NOT_YET_VALID("Assertion condition NotBefore is not valid!"),
+    ASSERTION_AUDIENCE_RESTRICTION_COUNT("Assertion conditions must contain exactly 1 'AudienceRestriction' condition!"),
+    ASSERTION_AUDIENCE_MISSING("Assertion condition's AudienceRestriction must contain at least 1 Audience!"),
+    ASSERTION_AUDIENCE_INVALID("Audience does not match with configured SP entity ID!"),
+    ASSERTION_AUTHN_INSTANT_EXPIRED("AuthnInstant is expired!"),
+    ASSERTION_AUTHN_INSTANT_IN_FUTURE("AuthnInstant is in the future!");
+
+    private final String message;
+
+    ErrorCode(String message) {
+        this.message = message;
+    }
+
+    /**
+     * @return the fixed failure message, or null if the message depends on the failure
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -9,4 +9,8 @@ public class InvalidRequestException extends EidasClientException {
     public InvalidRequestException(String message) {
         super(message);
     }
+
+    protected InvalidRequestException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
 }
@@ -0,0 +1,49 @@
+package ee.ria.eidas.client.exception;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * An expected rejection of an invalid SAMLResponse, identified by its {@link ErrorCode}.
+ * <p>
+ * The exception carries neither a stack trace nor a cause, since its origin is fully described by the error code.
+ * Failures with a fixed message are preallocated and shared by {@link #of(ErrorCode)}, so rejecting a response does not
+ * create an exception at all.
+ */
+public class ValidationFailureException extends InvalidRequestException {
+
+    private static final String MESSAGE_PREFIX = "Invalid SAMLResponse. ";
+
+    private static final Map<ErrorCode, ValidationFailureException> PREALLOCATED = new EnumMap<>(ErrorCode.class);
+
+    static {
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            if (errorCode.getMessage() != null) {
+                PREALLOCATED.put(errorCode, new ValidationFailureException(errorCode, errorCode.getMessage()));
+            }
+        }
+    }
+
+    private final ErrorCode errorCode;
+
+    public ValidationFailureException(ErrorCode errorCode, String message) {
+        super(MESSAGE_PREFIX + message, null, false, false);
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * @return the preallocated exception of an error code with a fixed message
+     * @throws IllegalArgumentException if the error code has no fixed message
+     */
+    public static ValidationFailureException of(ErrorCode errorCode) {
+        ValidationFailureException exception = PREALLOCATED.get(errorCode);
+        if (exception == null) {
+            throw new IllegalArgumentException("Error code " + errorCode + " requires a message");
+        }
+        return exception;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+}
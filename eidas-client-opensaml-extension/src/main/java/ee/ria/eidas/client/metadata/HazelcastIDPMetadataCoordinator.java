@@ -0,0 +1,175 @@
+package ee.ria.eidas.client.metadata;
+
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ReplicatedMap;
+import ee.ria.eidas.client.config.EidasClientProperties;
+import ee.ria.eidas.client.config.OpenSAMLConfiguration;
+import ee.ria.eidas.client.exception.EidasClientException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.metadata.resolver.filter.impl.SignatureValidationFilter;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import org.springframework.core.io.ResourceLoader;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates the IDP metadata refresh between the Hazelcast cluster members. Only the oldest cluster member fetches
+ * the metadata from the remote server. After verifying its signature, the raw document is published together with
+ * a version number into a replicated map. All members are notified of new versions and load the published document
+ * with {@link HazelcastMetadataResolver}, verifying its signature locally against the configured certificate.
+ */
+@Slf4j
+public class HazelcastIDPMetadataCoordinator {
+
+    public static final String IDP_METADATA_MAP = "idpMetadataMap";
+
+    private final HazelcastInstance hazelcastInstance;
+
+    private final String url;
+
+    private final ExplicitKeySignatureTrustEngine metadataSignatureTrustEngine;
+
+    private final int refreshInterval;
+
+    private final CloseableHttpClient httpClient;
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idp-metadata-coordinator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ReplicatedMap<String, IDPMetadataDocument> metadataMap;
+
+    public HazelcastIDPMetadataCoordinator(HazelcastInstance hazelcastInstance, EidasClientProperties properties, ExplicitKeySignatureTrustEngine metadataSignatureTrustEngine) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.url = properties.getIdpMetadataUrl();
+        this.metadataSignatureTrustEngine = metadataSignatureTrustEngine;
+        this.refreshInterval = properties.getHazelcastIdpMetadataRefreshInterval();
+        this.httpClient = IDPMetadataResolver.buildHttpClient(properties);
+    }
+
+    @PostConstruct
+    public void start() {
+        metadataMap = hazelcastInstance.getReplicatedMap(IDP_METADATA_MAP);
+        metadataMap.addEntryListener(new EntryAdapter<String, IDPMetadataDocument>() {
+            @Override
+            public void onEntryEvent(EntryEvent<String, IDPMetadataDocument> event) {
+                log.debug("IDP metadata version {} published to the cluster", event.getValue() != null ? event.getValue().getVersion() : null);
+                executor.execute(() -> listeners.forEach(Runnable::run));
+            }
+        }, url);
+
+        if (isRemoteUrl()) {
+            executor.scheduleWithFixedDelay(this::refreshIfLeader, 0, refreshInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Failed to close IDP metadata HTTP client: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param listener notified when a new IDP metadata version has been published to the cluster
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the latest IDP metadata document published to the cluster or null if none is available yet
+     */
+    public IDPMetadataDocument getDocument() {
+        return metadataMap != null ? metadataMap.get(url) : null;
+    }
+
+    public boolean isLeader() {
+        return hazelcastInstance.getCluster().getMembers().iterator().next().localMember();
+    }
+
+    void refreshIfLeader() {
+        if (!isLeader()) {
+            return;
+        }
+
+        try {
+            IDPMetadataDocument current = getDocument();
+            HttpGet request = new HttpGet(url);
+            if (current != null && current.getEtag() != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, current.getEtag());
+            }
+            if (current != null && current.getLastModified() != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, current.getLastModified());
+            }
+
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+                    log.debug("IDP metadata has not been modified since version {}", current != null ? current.getVersion() : null);
+                    return;
+                } else if (statusCode != HttpStatus.SC_OK) {
+                    throw new EidasClientException("Unexpected HTTP status " + statusCode + " from " + url);
+                }
+
+                byte[] document = EntityUtils.toByteArray(response.getEntity());
+                if (current != null && Arrays.equals(current.getDocument(), document)) {
+                    log.debug("IDP metadata has not been modified since version {}", current.getVersion());
+                    return;
+                }
+
+                verifyDocument(document);
+                IDPMetadataDocument published = new IDPMetadataDocument(current != null ? current.getVersion() + 1 : 1, document,
+                        getHeaderValue(response.getFirstHeader(HttpHeaders.ETAG)), getHeaderValue(response.getFirstHeader(HttpHeaders.LAST_MODIFIED)));
+                metadataMap.put(url, published);
+                log.info("Published IDP metadata version {} to the cluster", published.getVersion());
+            }
+        } catch (Exception e) {
+            log.error("Failed to refresh IDP metadata from {}: {}", url, e.getMessage(), e);
+        }
+    }
+
+    private void verifyDocument(byte[] document) throws Exception {
+        XMLObject metadata = XMLObjectSupport.unmarshallFromInputStream(OpenSAMLConfiguration.getParserPool(), new ByteArrayInputStream(document));
+        new SignatureValidationFilter(metadataSignatureTrustEngine).filter(metadata);
+        if (!(metadata instanceof EntityDescriptor) || !url.equals(((EntityDescriptor) metadata).getEntityID())) {
+            throw new EidasClientException("No valid EntityDescriptor with entityID = '" + url + "' was found!");
+        }
+    }
+
+    private boolean isRemoteUrl() {
+        return url != null && !url.startsWith(ResourceLoader.CLASSPATH_URL_PREFIX);
+    }
+
+    private static String getHeaderValue(Header header) {
+        return header != null ? header.getValue() : null;
+    }
+}
@@ -0,0 +1,108 @@
+package ee.ria.eidas.client.metadata;
+
+import lombok.extern.slf4j.Slf4j;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.apache.commons.lang.StringUtils;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.saml.metadata.resolver.impl.AbstractReloadingMetadataResolver;
+import org.w3c.dom.Document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Metadata resolver that reads the IDP metadata published to the cluster by {@link HazelcastIDPMetadataCoordinator}
+ * instead of fetching it from the remote server. The document is parsed and its signature verified only when a new
+ * version has been published. A version is considered loaded only after it has been processed successfully, so a
+ * document failing the validation is retried on the next refresh.
+ * <p>
+ * When a backup file is configured, it is used until the first version has been published to the cluster and every
+ * successfully loaded version is written to it.
+ */
+@Slf4j
+class HazelcastMetadataResolver extends AbstractReloadingMetadataResolver {
+
+    private static final long NO_VERSION = 0;
+
+    private static final long BACKUP_FILE_VERSION = -1;
+
+    private final String url;
+
+    private final HazelcastIDPMetadataCoordinator coordinator;
+
+    private final String backupFile;
+
+    private volatile long currentVersion = NO_VERSION;
+
+    private volatile long fetchedVersion = NO_VERSION;
+
+    HazelcastMetadataResolver(String url, HazelcastIDPMetadataCoordinator coordinator, String backupFile) {
+        this.url = url;
+        this.coordinator = coordinator;
+        this.backupFile = StringUtils.trimToNull(backupFile);
+    }
+
+    @Override
+    protected String getMetadataIdentifier() {
+        return url;
+    }
+
+    @Override
+    protected byte[] fetchMetadata() throws ResolverException {
+        IDPMetadataDocument document = coordinator.getDocument();
+        if (document == null) {
+            return fetchBackupFile();
+        }
+        if (document.getVersion() == currentVersion) {
+            return null;
+        }
+        fetchedVersion = document.getVersion();
+        return document.getDocument();
+    }
+
+    @Override
+    protected void postProcessMetadata(byte[] metadataBytes, Document metadataDom, XMLObject originalMetadata, XMLObject filteredMetadata) throws ResolverException {
+        super.postProcessMetadata(metadataBytes, metadataDom, originalMetadata, filteredMetadata);
+        currentVersion = fetchedVersion;
+        if (currentVersion != BACKUP_FILE_VERSION) {
+            writeBackupFile(metadataBytes);
+        }
+    }
+
+    long getCurrentVersion() {
+        return currentVersion;
+    }
+
+    private byte[] fetchBackupFile() throws ResolverException {
+        if (currentVersion != NO_VERSION) {
+            return null;
+        }
+        if (backupFile == null || !Files.isReadable(Paths.get(backupFile))) {
+            throw new ResolverException("IDP metadata has not been published to the cluster yet");
+        }
+        try {
+            log.info("IDP metadata has not been published to the cluster yet, loading it from backup file {}", backupFile);
+            fetchedVersion = BACKUP_FILE_VERSION;
+            return Files.readAllBytes(Paths.get(backupFile));
+        } catch (IOException e) {
+            throw new ResolverException("Unable to read IDP metadata backup file " + backupFile, e);
+        }
+    }
+
+    private void writeBackupFile(byte[] metadataBytes) {
+        if (backupFile == null) {
+            return;
+        }
+        try {
+            Path target = Paths.get(backupFile);
+            Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+            Files.write(temporary, metadataBytes);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to write IDP metadata backup file {}: {}", backupFile, e.getMessage());
+        }
+    }
+}
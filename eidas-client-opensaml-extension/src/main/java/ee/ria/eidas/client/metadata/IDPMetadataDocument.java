@@ -0,0 +1,30 @@
+package ee.ria.eidas.client.metadata;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Raw signed IDP metadata document shared between the cluster members. The signature of the document is verified
+ * by every member before it is used.
+ */
+@Getter
+public class IDPMetadataDocument implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+
+    private final byte[] document;
+
+    private final String etag;
+
+    private final String lastModified;
+
+    public IDPMetadataDocument(long version, byte[] document, String etag, String lastModified) {
+        this.version = version;
+        this.document = document;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+}
@@ -0,0 +1,61 @@
+package ee.ria.eidas.client.metadata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads the IDP metadata in a background thread once the application context has been started, so that the
+ * application startup does not wait for the remote metadata download and signature verification. Failed attempts
+ * are retried until the first valid metadata snapshot is available (see {@link IDPMetadataResolver#isReady()}).
+ */
+public class IDPMetadataInitializer implements ApplicationListener<ContextRefreshedEvent>, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IDPMetadataInitializer.class);
+
+    private final IDPMetadataResolver idpMetadataResolver;
+
+    private final int retryInterval;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idp-metadata-initializer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public IDPMetadataInitializer(IDPMetadataResolver idpMetadataResolver, int retryInterval) {
+        this.idpMetadataResolver = idpMetadataResolver;
+        this.retryInterval = retryInterval;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (started.compareAndSet(false, true)) {
+            executor.execute(this::initialize);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    void initialize() {
+        try {
+            idpMetadataResolver.resolve();
+            LOGGER.info("IDP metadata successfully initialized");
+        } catch (Exception e) {
+            LOGGER.error("Failed to initialize IDP metadata, retrying in {} seconds: {}", retryInterval, e.getMessage(), e);
+            executor.schedule(this::initialize, retryInterval, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -8,25 +8,25 @@ import net.shibboleth.utilities.java.support.component.ComponentInitializationEx
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
 import net.shibboleth.utilities.java.support.xml.ParserPool;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.joda.time.DateTime;
 import org.opensaml.core.criterion.EntityIdCriterion;
 import org.opensaml.core.xml.XMLObject;
 import org.opensaml.core.xml.schema.impl.XSAnyImpl;
 import org.opensaml.saml.common.xml.SAMLConstants;
 import org.opensaml.saml.metadata.resolver.filter.impl.SignatureValidationFilter;
 import org.opensaml.saml.metadata.resolver.impl.AbstractReloadingMetadataResolver;
+import org.opensaml.saml.metadata.resolver.impl.FileBackedHTTPMetadataResolver;
 import org.opensaml.saml.metadata.resolver.impl.HTTPMetadataResolver;
 import org.opensaml.saml.metadata.resolver.impl.ResourceBackedMetadataResolver;
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
-import org.opensaml.saml.saml2.metadata.KeyDescriptor;
 import org.opensaml.saml.saml2.metadata.SingleSignOnService;
-import org.opensaml.security.credential.CredentialSupport;
-import org.opensaml.security.credential.UsageType;
 import org.opensaml.security.credential.impl.StaticCredentialResolver;
-import org.opensaml.security.x509.X509Credential;
 import org.opensaml.xmlsec.config.impl.DefaultSecurityConfigurationBootstrap;
-import org.opensaml.xmlsec.signature.impl.X509CertificateImpl;
 import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,16 +34,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.ResourceLoader;
 
-import java.io.ByteArrayInputStream;
+import javax.annotation.PreDestroy;
+
 import java.io.IOException;
-import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
-import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.stream.StreamSupport;
 
 public class IDPMetadataResolver {
@@ -51,27 +47,88 @@ public class IDPMetadataResolver {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
     private String url;
-    private AbstractReloadingMetadataResolver idpMetadataProvider;
+    private volatile AbstractReloadingMetadataResolver idpMetadataProvider;
     private ExplicitKeySignatureTrustEngine metadataSignatureTrustEngine;
     private ParserPool parserPool;
 
     @Autowired
     private EidasClientProperties eidasClientProperties;
 
+    private HazelcastIDPMetadataCoordinator clusterCoordinator;
+
+    private volatile SupportedCountriesSnapshot supportedCountries;
+
+    private volatile SigningCredentialsSnapshot signingCredentials;
+
     public IDPMetadataResolver(String url, ExplicitKeySignatureTrustEngine metadataSignatureTrustEngine) {
         this.url = url;
         this.metadataSignatureTrustEngine = metadataSignatureTrustEngine;
         this.parserPool = OpenSAMLConfiguration.getParserPool();
     }
 
+    public IDPMetadataResolver(String url, ExplicitKeySignatureTrustEngine metadataSignatureTrustEngine, EidasClientProperties eidasClientProperties) {
+        this(url, metadataSignatureTrustEngine);
+        this.eidasClientProperties = eidasClientProperties;
+    }
+
+    /**
+     * Returns the IDP metadata resolver, initializing it on the first call. Once initialized, the metadata is refreshed
+     * in the background by the resolver's own timer. A failed refresh keeps serving the last valid snapshot, so
+     * refresh failures never block the callers.
+     */
     public AbstractReloadingMetadataResolver resolve() {
-        if (idpMetadataProvider == null) {
-            this.idpMetadataProvider = initNewResolver();
-            if (!isEntityIdPresent(url)) {
-                throw new EidasClientException("No valid EntityDescriptor with entityID = '" + url + "' was found!");
+        AbstractReloadingMetadataResolver provider = idpMetadataProvider;
+        if (provider == null) {
+            synchronized (this) {
+                provider = idpMetadataProvider;
+                if (provider == null) {
+                    provider = initNewResolver();
+                    if (!isEntityIdPresent(provider, url)) {
+                        provider.destroy();
+                        throw new EidasClientException("No valid EntityDescriptor with entityID = '" + url + "' was found!");
+                    }
+                    idpMetadataProvider = provider;
+                }
+            }
+        }
+        return provider;
+    }
+
+    /**
+     * @return true, if the first valid IDP metadata snapshot has been loaded
+     */
+    public boolean isReady() {
+        return idpMetadataProvider != null;
+    }
+
+    /**
+     * Loads the IDP metadata from the cluster instead of the remote server and refreshes it whenever a new version
+     * is published to the cluster.
+     */
+    public void setClusterCoordinator(HazelcastIDPMetadataCoordinator clusterCoordinator) {
+        this.clusterCoordinator = clusterCoordinator;
+        clusterCoordinator.addListener(this::refresh);
+    }
+
+    public void refresh() {
+        AbstractReloadingMetadataResolver provider = idpMetadataProvider;
+        try {
+            if (provider == null) {
+                resolve();
+            } else {
+                provider.refresh();
             }
+        } catch (ResolverException | EidasClientException e) {
+            logger.error("Failed to refresh IDP metadata: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        AbstractReloadingMetadataResolver provider = idpMetadataProvider;
+        if (provider != null) {
+            provider.destroy();
         }
-        return idpMetadataProvider;
     }
 
     private AbstractReloadingMetadataResolver initNewResolver() {
@@ -92,8 +149,8 @@ public class IDPMetadataResolver {
         }
     }
 
-    private boolean isEntityIdPresent(String idpMetadataUrl) {
-        Iterable<EntityDescriptor> iterable = () -> idpMetadataProvider.iterator();
+    private boolean isEntityIdPresent(AbstractReloadingMetadataResolver provider, String idpMetadataUrl) {
+        Iterable<EntityDescriptor> iterable = provider::iterator;
         return StreamSupport.stream(iterable.spliterator(), false).anyMatch(x -> Objects.equals(x.getEntityID(), idpMetadataUrl));
     }
 
@@ -102,8 +159,16 @@ public class IDPMetadataResolver {
             if (url.startsWith(ResourceLoader.CLASSPATH_URL_PREFIX)) {
                 ClassPathResource resource = new ClassPathResource(url.substring(ResourceLoader.CLASSPATH_URL_PREFIX.length()));
                 return new ResourceBackedMetadataResolver(ResourceHelper.of(resource));
+            } else if (clusterCoordinator != null) {
+                return new HazelcastMetadataResolver(url, clusterCoordinator, getProperties().getIdpMetadataBackupFile());
             } else {
-                CloseableHttpClient httpclient = HttpClients.createDefault();
+                EidasClientProperties properties = getProperties();
+                CloseableHttpClient httpclient = buildHttpClient(properties);
+                if (StringUtils.isNotBlank(properties.getIdpMetadataBackupFile())) {
+                    FileBackedHTTPMetadataResolver fileBackedResolver = new FileBackedHTTPMetadataResolver(httpclient, url, properties.getIdpMetadataBackupFile());
+                    fileBackedResolver.setInitializeFromBackupFile(true);
+                    return fileBackedResolver;
+                }
                 return new HTTPMetadataResolver(httpclient, url);
             }
         } catch (IOException|ResolverException e) {
@@ -111,6 +176,34 @@ public class IDPMetadataResolver {
         }
     }
 
+    /**
+     * HTTP client used for fetching the IDP metadata. HTTPMetadataResolver keeps track of the ETag and Last-Modified
+     * headers of the last response and skips parsing and signature validation when the server responds with 304.
+     */
+    static CloseableHttpClient buildHttpClient(EidasClientProperties properties) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getIdpMetadataConnectTimeout() * 1000)
+                .setConnectionRequestTimeout(properties.getIdpMetadataConnectTimeout() * 1000)
+                .setSocketTimeout(properties.getIdpMetadataReadTimeout() * 1000)
+                .build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getIdpMetadataMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(properties.getIdpMetadataMaxConnections());
+
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+    }
+
+    private EidasClientProperties getProperties() {
+        if (eidasClientProperties == null) {
+            throw new EidasClientException("eIDAS client properties not set! Please check your configuration.");
+        }
+        return eidasClientProperties;
+    }
+
     public SingleSignOnService getSingeSignOnService() {
         try {
                 AbstractReloadingMetadataResolver metadataResolver = this.resolve();
@@ -132,8 +225,27 @@ public class IDPMetadataResolver {
     }
 
     public List<String> getSupportedCountries() {
+        return getSupportedCountriesSnapshot().getCountries();
+    }
+
+    /**
+     * Returns the supported countries, materialized once per IDP metadata version. The countries listed in the IDP
+     * metadata are used, falling back to the configured available countries when the metadata does not list any.
+     */
+    public SupportedCountries getSupportedCountriesSnapshot() {
+        AbstractReloadingMetadataResolver metadataResolver = this.resolve();
+        DateTime lastUpdate = metadataResolver.getLastUpdate();
+        List<String> availableCountries = getProperties().getAvailableCountries();
+        SupportedCountriesSnapshot snapshot = supportedCountries;
+        if (snapshot == null || !snapshot.isCurrent(metadataResolver, lastUpdate, availableCountries)) {
+            snapshot = new SupportedCountriesSnapshot(metadataResolver, lastUpdate, availableCountries, buildSupportedCountries(metadataResolver, availableCountries));
+            supportedCountries = snapshot;
+        }
+        return snapshot.countries;
+    }
+
+    private SupportedCountries buildSupportedCountries(AbstractReloadingMetadataResolver metadataResolver, List<String> availableCountries) {
         try {
-            AbstractReloadingMetadataResolver metadataResolver = this.resolve();
             CriteriaSet criteriaSet = new CriteriaSet(new EntityIdCriterion(url));
             EntityDescriptor entityDescriptor = metadataResolver.resolveSingle(criteriaSet);
 
@@ -141,9 +253,9 @@ public class IDPMetadataResolver {
 
             if (supportedCountries.isEmpty()) {
                 logger.error("Unable to get supported countries from metadata. Using supported countries from configuration.");
-                return getSupportedCountriesFromConfiguration();
+                return new SupportedCountries(availableCountries);
             }
-            return supportedCountries;
+            return new SupportedCountries(supportedCountries);
         } catch (final ResolverException e) {
             throw new EidasClientException("Error initializing IDP metadata", e);
         }
@@ -175,31 +287,68 @@ public class IDPMetadataResolver {
     }
 
     public ExplicitKeySignatureTrustEngine responseSignatureTrustEngine() {
-        X509Certificate cert = getResponseSigningCertificate(this);
-        X509Credential switchCred = CredentialSupport.getSimpleCredential(cert, null);
-        StaticCredentialResolver switchCredResolver = new StaticCredentialResolver(switchCred);
-        return new ExplicitKeySignatureTrustEngine(switchCredResolver, DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver());
+        StaticCredentialResolver credentialResolver = new StaticCredentialResolver(new ArrayList<>(getResponseSigningCredentials().getCredentials()));
+        return new ExplicitKeySignatureTrustEngine(credentialResolver, DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver());
     }
 
-    private List<String> getSupportedCountriesFromConfiguration() {
-        return eidasClientProperties.getAvailableCountries();
+    /**
+     * Returns the response signing credentials listed in the IDP metadata, parsed once per IDP metadata version.
+     */
+    public IDPSigningCredentials getResponseSigningCredentials() {
+        AbstractReloadingMetadataResolver metadataResolver = this.resolve();
+        DateTime lastUpdate = metadataResolver.getLastUpdate();
+        SigningCredentialsSnapshot snapshot = signingCredentials;
+        if (snapshot == null || !snapshot.isCurrent(metadataResolver, lastUpdate)) {
+            snapshot = new SigningCredentialsSnapshot(metadataResolver, lastUpdate, buildResponseSigningCredentials(metadataResolver));
+            signingCredentials = snapshot;
+        }
+        return snapshot.credentials;
     }
 
-    private X509Certificate getResponseSigningCertificate(IDPMetadataResolver idpMetadataResolver) {
+    private IDPSigningCredentials buildResponseSigningCredentials(AbstractReloadingMetadataResolver metadataResolver) {
         try {
-            List<KeyDescriptor> idpSsoKeyDescriptors = idpMetadataResolver.resolve().iterator().next().getIDPSSODescriptor(SAMLConstants.SAML20P_NS).getKeyDescriptors();
-            Optional<KeyDescriptor> matchingDescriptor = idpSsoKeyDescriptors.stream().
-                    filter(d -> d.getUse() == UsageType.SIGNING).findFirst();
-            KeyDescriptor signingDescriptor = matchingDescriptor.orElse(null);
-            if (signingDescriptor == null) {
-                throw new EidasClientException("Could not find signing descriptor from IDP metadata");
-            }
-            X509CertificateImpl certificate = (X509CertificateImpl) signingDescriptor.getKeyInfo().getX509Datas().get(0).getX509Certificates().get(0);
-            CertificateFactory certFactory = CertificateFactory.getInstance("X.509");
-            ByteArrayInputStream certInputStream = new ByteArrayInputStream(Base64.getDecoder().decode(certificate.getValue().replaceAll("\n", "")));
-            return (X509Certificate) certFactory.generateCertificate(certInputStream);
-        } catch (CertificateException e) {
-            throw new EidasClientException("Error initializing. Cannot get IDP metadata trusted certificate", e);
+            EntityDescriptor entityDescriptor = metadataResolver.resolveSingle(new CriteriaSet(new EntityIdCriterion(url)));
+            return IDPSigningCredentials.fromEntityDescriptor(entityDescriptor);
+        } catch (final ResolverException e) {
+            throw new EidasClientException("Error initializing IDP metadata", e);
+        }
+    }
+
+    private static final class SigningCredentialsSnapshot {
+
+        private final AbstractReloadingMetadataResolver metadataResolver;
+        private final DateTime lastUpdate;
+        private final IDPSigningCredentials credentials;
+
+        private SigningCredentialsSnapshot(AbstractReloadingMetadataResolver metadataResolver, DateTime lastUpdate, IDPSigningCredentials credentials) {
+            this.metadataResolver = metadataResolver;
+            this.lastUpdate = lastUpdate;
+            this.credentials = credentials;
+        }
+
+        private boolean isCurrent(AbstractReloadingMetadataResolver metadataResolver, DateTime lastUpdate) {
+            return this.metadataResolver == metadataResolver && Objects.equals(this.lastUpdate, lastUpdate);
+        }
+    }
+
+    private static final class SupportedCountriesSnapshot {
+
+        private final AbstractReloadingMetadataResolver metadataResolver;
+        private final DateTime lastUpdate;
+        private final List<String> availableCountries;
+        private final SupportedCountries countries;
+
+        private SupportedCountriesSnapshot(AbstractReloadingMetadataResolver metadataResolver, DateTime lastUpdate, List<String> availableCountries, SupportedCountries countries) {
+            this.metadataResolver = metadataResolver;
+            this.lastUpdate = lastUpdate;
+            this.availableCountries = availableCountries;
+            this.countries = countries;
+        }
+
+        private boolean isCurrent(AbstractReloadingMetadataResolver metadataResolver, DateTime lastUpdate, List<String> availableCountries) {
+            return this.metadataResolver == metadataResolver
+                    && Objects.equals(this.lastUpdate, lastUpdate)
+                    && this.availableCountries == availableCountries;
         }
     }
 }
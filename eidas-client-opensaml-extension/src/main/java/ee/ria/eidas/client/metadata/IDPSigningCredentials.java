@@ -0,0 +1,118 @@
+package ee.ria.eidas.client.metadata;
+
+import ee.ria.eidas.client.exception.EidasClientException;
+import ee.ria.eidas.client.util.CryptoPrimitives;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
+import org.opensaml.saml.saml2.metadata.KeyDescriptor;
+import org.opensaml.security.credential.CredentialSupport;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.security.x509.X509Credential;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.opensaml.xmlsec.signature.X509Certificate;
+import org.opensaml.xmlsec.signature.X509Data;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All response signing certificates published in the IDP metadata, indexed by the SHA-256 digest of the encoded
+ * certificate. During a key rollover the metadata lists both the old and the new certificate; the certificate in the
+ * signature KeyInfo selects the matching credential without trying each of them.
+ */
+public final class IDPSigningCredentials {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final List<X509Credential> credentials;
+
+    private final Map<ByteBuffer, X509Credential> credentialsByDigest;
+
+    private IDPSigningCredentials(List<X509Credential> credentials, Map<ByteBuffer, X509Credential> credentialsByDigest) {
+        this.credentials = Collections.unmodifiableList(credentials);
+        this.credentialsByDigest = credentialsByDigest;
+    }
+
+    static IDPSigningCredentials fromEntityDescriptor(EntityDescriptor entityDescriptor) {
+        IDPSSODescriptor idpSsoDescriptor = entityDescriptor != null ? entityDescriptor.getIDPSSODescriptor(SAMLConstants.SAML20P_NS) : null;
+        if (idpSsoDescriptor == null) {
+            throw new EidasClientException("Could not find signing descriptor from IDP metadata");
+        }
+        List<X509Credential> credentials = new ArrayList<>();
+        Map<ByteBuffer, X509Credential> credentialsByDigest = new HashMap<>();
+        try {
+            for (KeyDescriptor keyDescriptor : idpSsoDescriptor.getKeyDescriptors()) {
+                if (keyDescriptor.getUse() != UsageType.SIGNING || keyDescriptor.getKeyInfo() == null) {
+                    continue;
+                }
+                for (java.security.cert.X509Certificate certificate : KeyInfoSupport.getCertificates(keyDescriptor.getKeyInfo())) {
+                    ByteBuffer digest = digest(certificate.getEncoded());
+                    if (!credentialsByDigest.containsKey(digest)) {
+                        X509Credential credential = CredentialSupport.getSimpleCredential(certificate, null);
+                        credentials.add(credential);
+                        credentialsByDigest.put(digest, credential);
+                    }
+                }
+            }
+        } catch (CertificateException e) {
+            throw new EidasClientException("Error initializing. Cannot get IDP metadata trusted certificate", e);
+        }
+        if (credentials.isEmpty()) {
+            throw new EidasClientException("Could not find signing descriptor from IDP metadata");
+        }
+        return new IDPSigningCredentials(credentials, credentialsByDigest);
+    }
+
+    /**
+     * @return the signing credentials in the order they are listed in the metadata
+     */
+    public List<X509Credential> getCredentials() {
+        return credentials;
+    }
+
+    /**
+     * Finds the credential of a certificate included in the given KeyInfo.
+     *
+     * @return the matching credential, or null if the KeyInfo contains no certificate listed in the metadata
+     */
+    public X509Credential findByKeyInfo(KeyInfo keyInfo) {
+        if (keyInfo == null) {
+            return null;
+        }
+        for (X509Data x509Data : keyInfo.getX509Datas()) {
+            for (X509Certificate x509Certificate : x509Data.getX509Certificates()) {
+                if (x509Certificate.getValue() == null) {
+                    continue;
+                }
+                byte[] encodedCertificate;
+                try {
+                    encodedCertificate = Base64.getMimeDecoder().decode(x509Certificate.getValue());
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                X509Credential credential = credentialsByDigest.get(digest(encodedCertificate));
+                if (credential != null) {
+                    return credential;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static ByteBuffer digest(byte[] encodedCertificate) {
+        try {
+            return ByteBuffer.wrap(CryptoPrimitives.messageDigest(DIGEST_ALGORITHM).digest(encodedCertificate));
+        } catch (GeneralSecurityException e) {
+            throw new EidasClientException("Unable to calculate certificate digest", e);
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package ee.ria.eidas.client.metadata;
 
+import ee.ria.eidas.client.authnrequest.SPType;
 import ee.ria.eidas.client.config.EidasClientProperties;
 import ee.ria.eidas.client.exception.EidasClientException;
 import ee.ria.eidas.client.util.OpenSAMLUtils;
 import ee.ria.eidas.client.util.SAMLSigner;
-import org.apache.commons.lang.RandomStringUtils;
 import org.joda.time.DateTime;
 import org.opensaml.core.xml.schema.XSAny;
 import org.opensaml.core.xml.schema.impl.XSAnyBuilder;
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.Objects;
 import java.util.Set;
 
 public class SPMetadataGenerator {
@@ -35,9 +36,12 @@ public class SPMetadataGenerator {
     protected int defaultACSIndex = 0;
 
     private EidasClientProperties eidasClientProperties;
-    private Credential metadataSigningCredential;
-    private Credential authnRequestSignCredential;
-    private Credential responseAssertionDecryptionCredential;
+    private volatile Credential metadataSigningCredential;
+    private volatile Credential authnRequestSignCredential;
+    private volatile Credential responseAssertionDecryptionCredential;
+
+    private volatile SAMLSigner metadataSigner;
+    private volatile CachedMetadata cachedMetadata;
 
     public SPMetadataGenerator(EidasClientProperties eidasClientProperties, Credential metadataSigningCredential, Credential authnRequestSignCredential, Credential responseAssertionDecryptionCredential) {
         this.eidasClientProperties = eidasClientProperties;
@@ -49,7 +53,7 @@ public class SPMetadataGenerator {
     public EntityDescriptor getMetadata() {
         try {
             EntityDescriptor entityDescriptor = buildEntityDescriptor();
-            new SAMLSigner(eidasClientProperties.getMetadataSignatureAlgorithm(), metadataSigningCredential).sign(entityDescriptor);
+            getMetadataSigner().sign(entityDescriptor);
             LOGGER.info("Successfully generated metadata. Metadata ID: {}", entityDescriptor.getID());
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Generated metadata: {}", OpenSAMLUtils.getXmlString(entityDescriptor));
@@ -60,6 +64,57 @@ public class SPMetadataGenerator {
         }
     }
 
+    private SAMLSigner getMetadataSigner() {
+        SAMLSigner signer = metadataSigner;
+        if (signer == null || signer.getCredential() != metadataSigningCredential
+                || !signer.getSignatureAlgorithmUri().equals(eidasClientProperties.getMetadataSignatureAlgorithm())) {
+            signer = new SAMLSigner(eidasClientProperties.getMetadataSignatureAlgorithm(), metadataSigningCredential);
+            metadataSigner = signer;
+        }
+        return signer;
+    }
+
+    /**
+     * Returns the signed and serialized metadata, generating it only when no cached copy exists, the metadata
+     * related configuration or credentials have changed or half of the metadata validity period has passed.
+     */
+    public SignedMetadata getSignedMetadata() {
+        CachedMetadata cached = cachedMetadata;
+        if (cached == null || !cached.isUpToDate()) {
+            synchronized (this) {
+                cached = cachedMetadata;
+                if (cached == null || !cached.isUpToDate()) {
+                    cached = new CachedMetadata();
+                    cachedMetadata = cached;
+                }
+            }
+        }
+        return cached.metadata;
+    }
+
+    /**
+     * Replaces the SP credentials published in and used to sign the metadata, for example after a key rotation. The
+     * cached signed metadata is discarded if any of the credentials has changed.
+     */
+    public synchronized void setCredentials(Credential metadataSigningCredential, Credential authnRequestSignCredential, Credential responseAssertionDecryptionCredential) {
+        if (metadataSigningCredential == this.metadataSigningCredential
+                && authnRequestSignCredential == this.authnRequestSignCredential
+                && responseAssertionDecryptionCredential == this.responseAssertionDecryptionCredential) {
+            return;
+        }
+        this.metadataSigningCredential = metadataSigningCredential;
+        this.authnRequestSignCredential = authnRequestSignCredential;
+        this.responseAssertionDecryptionCredential = responseAssertionDecryptionCredential;
+        invalidate();
+    }
+
+    /**
+     * Discards the cached signed metadata, forcing it to be regenerated on the next request.
+     */
+    public void invalidate() {
+        cachedMetadata = null;
+    }
+
     private EntityDescriptor buildEntityDescriptor() {
         EntityDescriptor descriptor = OpenSAMLUtils.buildSAMLObject(EntityDescriptor.class);
         descriptor.setEntityID(eidasClientProperties.getSpEntityId());
@@ -94,7 +149,7 @@ public class SPMetadataGenerator {
     }
 
     private String generateEntityDescriptorId() {
-        return "_".concat(RandomStringUtils.randomAlphanumeric(39)).toLowerCase();
+        return OpenSAMLUtils.generateSecureRandomId();
     }
 
     private SPSSODescriptor buildSPSSODescriptor() {
@@ -159,5 +214,44 @@ public class SPMetadataGenerator {
         return generatorManager.getDefaultManager().getFactory(credential).newInstance();
     }
 
+    /**
+     * Signed metadata together with the configuration and credentials it was generated from. The values are read
+     * before generating the metadata, so a change made during the generation causes it to be generated again.
+     */
+    private final class CachedMetadata {
+
+        private final String spEntityId = eidasClientProperties.getSpEntityId();
+        private final String callbackUrl = eidasClientProperties.getCallbackUrl();
+        private final SPType spType = eidasClientProperties.getSpType();
+        private final String metadataSignatureAlgorithm = eidasClientProperties.getMetadataSignatureAlgorithm();
+        private final String requestSignatureAlgorithm = eidasClientProperties.getRequestSignatureAlgorithm();
+        private final Integer metadataValidityInDays = eidasClientProperties.getMetadataValidityInDays();
+        private final boolean metadataGzipEnabled = eidasClientProperties.isMetadataGzipEnabled();
+        private final Credential metadataSigningCredential = SPMetadataGenerator.this.metadataSigningCredential;
+        private final Credential authnRequestSignCredential = SPMetadataGenerator.this.authnRequestSignCredential;
+        private final Credential responseAssertionDecryptionCredential = SPMetadataGenerator.this.responseAssertionDecryptionCredential;
+        private final SignedMetadata metadata;
+
+        private CachedMetadata() {
+            EntityDescriptor entityDescriptor = getMetadata();
+            metadata = new SignedMetadata(OpenSAMLUtils.getXmlString(entityDescriptor), DateTime.now(),
+                    entityDescriptor.getValidUntil(), metadataGzipEnabled);
+        }
+
+        private boolean isUpToDate() {
+            return !metadata.isExpiring(System.currentTimeMillis())
+                    && metadataSigningCredential == SPMetadataGenerator.this.metadataSigningCredential
+                    && authnRequestSignCredential == SPMetadataGenerator.this.authnRequestSignCredential
+                    && responseAssertionDecryptionCredential == SPMetadataGenerator.this.responseAssertionDecryptionCredential
+                    && metadataGzipEnabled == eidasClientProperties.isMetadataGzipEnabled()
+                    && spType == eidasClientProperties.getSpType()
+                    && Objects.equals(metadataValidityInDays, eidasClientProperties.getMetadataValidityInDays())
+                    && Objects.equals(spEntityId, eidasClientProperties.getSpEntityId())
+                    && Objects.equals(callbackUrl, eidasClientProperties.getCallbackUrl())
+                    && Objects.equals(metadataSignatureAlgorithm, eidasClientProperties.getMetadataSignatureAlgorithm())
+                    && Objects.equals(requestSignatureAlgorithm, eidasClientProperties.getRequestSignatureAlgorithm());
+        }
+    }
+
 
 }
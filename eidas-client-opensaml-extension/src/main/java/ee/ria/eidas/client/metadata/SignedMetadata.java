@@ -0,0 +1,83 @@
+package ee.ria.eidas.client.metadata;
+
+import ee.ria.eidas.client.exception.EidasClientException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.joda.time.DateTime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized and signed SP metadata, as served by the metadata endpoint. Holds the document bytes together with a
+ * strong entity tag derived from their SHA-256 digest and, if requested, a pre-compressed gzip variant with its own
+ * entity tag.
+ */
+@Getter
+public class SignedMetadata {
+
+    private final byte[] document;
+
+    private final String etag;
+
+    private final byte[] gzippedDocument;
+
+    private final String gzipEtag;
+
+    private final DateTime generatedAt;
+
+    private final DateTime validUntil;
+
+    @Getter(AccessLevel.NONE)
+    private final long refreshAtMillis;
+
+    public SignedMetadata(String document, DateTime generatedAt, DateTime validUntil, boolean gzipEnabled) {
+        this.document = document.getBytes(StandardCharsets.UTF_8);
+        this.generatedAt = generatedAt;
+        this.validUntil = validUntil;
+        this.refreshAtMillis = generatedAt.getMillis() + (validUntil.getMillis() - generatedAt.getMillis()) / 2;
+        String digest = digest(this.document);
+        this.etag = "\"" + digest + "\"";
+        this.gzippedDocument = gzipEnabled ? gzip(this.document) : null;
+        this.gzipEtag = gzipEnabled ? "\"" + digest + "-gzip\"" : null;
+    }
+
+    /**
+     * @return true if half of the metadata validity period has passed and the metadata should be regenerated
+     */
+    public boolean isExpiring(DateTime now) {
+        return isExpiring(now.getMillis());
+    }
+
+    /**
+     * @param nowMillis current time in milliseconds since the epoch
+     * @return true if half of the metadata validity period has passed and the metadata should be regenerated
+     */
+    public boolean isExpiring(long nowMillis) {
+        return nowMillis >= refreshAtMillis;
+    }
+
+    private static String digest(byte[] document) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(document);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new EidasClientException("Unable to calculate metadata digest", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] document) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(document.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(document);
+        } catch (IOException e) {
+            throw new EidasClientException("Unable to compress metadata", e);
+        }
+        return out.toByteArray();
+    }
+}
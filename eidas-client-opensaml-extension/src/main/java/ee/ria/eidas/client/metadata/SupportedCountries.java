@@ -0,0 +1,133 @@
+package ee.ria.eidas.client.metadata;
+
+import ee.ria.eidas.client.exception.EidasClientException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable snapshot of the countries supported by the IDP, built once per IDP metadata version. Provides a constant
+ * time case-insensitive lookup for two letter country codes and the pre-serialized JSON array returned by the
+ * supported countries endpoint.
+ */
+public class SupportedCountries {
+
+    private static final int ALPHABET_SIZE = 26;
+
+    private final List<String> countries;
+
+    private final BitSet countryCodes = new BitSet(ALPHABET_SIZE * ALPHABET_SIZE);
+
+    private final Set<String> otherCountries = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    private final byte[] json;
+
+    private final String etag;
+
+    public SupportedCountries(List<String> countries) {
+        this.countries = Collections.unmodifiableList(new ArrayList<>(countries));
+        for (String country : this.countries) {
+            int index = indexOf(country);
+            if (index >= 0) {
+                countryCodes.set(index);
+            } else if (country != null) {
+                otherCountries.add(country);
+            }
+        }
+        this.json = toJson(this.countries);
+        this.etag = "\"" + digest(json) + "\"";
+    }
+
+    public List<String> getCountries() {
+        return countries;
+    }
+
+    /**
+     * @return true if the given country is supported, ignoring case
+     */
+    public boolean contains(String country) {
+        if (country == null) {
+            return false;
+        }
+        int index = indexOf(country);
+        return index >= 0 ? countryCodes.get(index) : otherCountries.contains(country);
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public String toString() {
+        return countries.toString();
+    }
+
+    private static int indexOf(String country) {
+        if (country == null || country.length() != 2) {
+            return -1;
+        }
+        int first = letterIndex(country.charAt(0));
+        int second = letterIndex(country.charAt(1));
+        return first < 0 || second < 0 ? -1 : first * ALPHABET_SIZE + second;
+    }
+
+    private static int letterIndex(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        } else if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        return -1;
+    }
+
+    private static byte[] toJson(List<String> countries) {
+        StringBuilder json = new StringBuilder(countries.size() * 5 + 2).append('[');
+        for (int i = 0; i < countries.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendJsonString(json, countries.get(i));
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static String digest(byte[] json) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new EidasClientException("Unable to calculate supported countries digest", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ee.ria.eidas.client.response;
+
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.EncryptedAssertion;
+import org.opensaml.saml.saml2.encryption.Decrypter;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.encryption.support.DecryptionException;
+import org.opensaml.xmlsec.encryption.support.EncryptedKeyResolver;
+import org.opensaml.xmlsec.encryption.support.InlineEncryptedKeyResolver;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xmlsec.keyinfo.impl.StaticKeyInfoCredentialResolver;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decrypts response assertions with the SP decryption credential. The key encryption key resolver and the encrypted
+ * key resolver are created once and shared, each thread reuses its own {@link Decrypter}.
+ * <p>
+ * The decrypted assertion is still placed in a new document: the assertion signature is verified after decryption and
+ * its reference can only be resolved by ID when the assertion is the document root.
+ * <p>
+ * During a decryption key rollover several credentials can be given; they are tried in the given order until the
+ * encrypted key can be decrypted.
+ */
+public class AssertionDecrypter {
+
+    private final KeyInfoCredentialResolver kekResolver;
+
+    private final EncryptedKeyResolver encryptedKeyResolver = new InlineEncryptedKeyResolver();
+
+    private final ThreadLocal<Decrypter> decrypters = ThreadLocal.withInitial(this::createDecrypter);
+
+    public AssertionDecrypter(Credential decryptionCredential) {
+        this(Collections.singletonList(decryptionCredential));
+    }
+
+    public AssertionDecrypter(List<Credential> decryptionCredentials) {
+        this.kekResolver = new StaticKeyInfoCredentialResolver(decryptionCredentials);
+    }
+
+    public Assertion decrypt(EncryptedAssertion encryptedAssertion) throws DecryptionException {
+        return decrypters.get().decrypt(encryptedAssertion);
+    }
+
+    private Decrypter createDecrypter() {
+        Decrypter decrypter = new Decrypter(null, kekResolver, encryptedKeyResolver);
+        decrypter.setRootInNewDocument(true);
+        return decrypter;
+    }
+}
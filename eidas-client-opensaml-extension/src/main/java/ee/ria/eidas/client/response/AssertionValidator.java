@@ -2,74 +2,91 @@ package ee.ria.eidas.client.response;
 
 import ee.ria.eidas.client.authnrequest.AssuranceLevel;
 import ee.ria.eidas.client.authnrequest.EidasAttribute;
+import ee.ria.eidas.client.authnrequest.EidasAttributeSet;
 import ee.ria.eidas.client.config.EidasClientProperties;
-import ee.ria.eidas.client.exception.InvalidRequestException;
+import ee.ria.eidas.client.exception.ErrorCode;
+import ee.ria.eidas.client.exception.ValidationFailureException;
 import ee.ria.eidas.client.session.RequestSession;
-import org.apache.commons.collections.CollectionUtils;
 import org.joda.time.DateTime;
 import org.opensaml.saml.saml2.core.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Clock;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Validates the decrypted response assertion. The validator is immutable and thread-safe: the configuration is read
+ * once on creation and every validation compares the assertion timestamps against a single reading of the clock.
+ */
 public class AssertionValidator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AssertionValidator.class);
 
-    private int acceptedClockSkew;
-    private String idpMetadataUrl;
-    private String callbackUrl;
-    private String spEntityID;
-    private int maxAuthenticationLifetime;
+    private static final List<String> VALID_NAME_ID_FORMATS = Collections.unmodifiableList(Arrays.asList(NameIDType.UNSPECIFIED , NameIDType.TRANSIENT, NameIDType.PERSISTENT));
+
+    private final long acceptedClockSkew;
+    private final String idpMetadataUrl;
+    private final String callbackUrl;
+    private final String spEntityID;
+    private final long maxAuthenticationLifetime;
+    private final Clock clock;
 
     public AssertionValidator(EidasClientProperties properties) {
-        this.acceptedClockSkew = properties.getAcceptedClockSkew();
-        this.maxAuthenticationLifetime = properties.getMaximumAuthenticationLifetime();
+        this(properties, Clock.systemUTC());
+    }
+
+    public AssertionValidator(EidasClientProperties properties, Clock clock) {
+        this.acceptedClockSkew = TimeUnit.SECONDS.toMillis(properties.getAcceptedClockSkew());
+        this.maxAuthenticationLifetime = TimeUnit.SECONDS.toMillis(properties.getMaximumAuthenticationLifetime());
         this.idpMetadataUrl = properties.getIdpMetadataUrl();
         this.callbackUrl = properties.getCallbackUrl();
         this.spEntityID = properties.getSpEntityId();
+        this.clock = clock;
     }
 
     public void validate(Assertion assertion, RequestSession requestSession) {
+        long now = clock.millis();
         validateEidasRestrictions(assertion);
-        validateIssueInstant(assertion);
+        validateIssueInstant(assertion, now);
         validateIssuer(assertion.getIssuer());
-        validateSubject(assertion.getSubject());
-        validateExistingRequestSession(assertion, requestSession);
-        validateConditions(assertion.getConditions());
-        validateAuthnStatements(assertion.getAuthnStatements());
+        validateSubject(assertion.getSubject(), now);
+        validateExistingRequestSession(assertion, requestSession, now);
+        validateConditions(assertion.getConditions(), now);
+        validateAuthnStatements(assertion.getAuthnStatements(), now);
     }
 
-    private void validateRequestedMandatoryEidasDatasetsPresent(List<EidasAttribute> requestedAttributes, Assertion assertion) {
-        Set<EidasAttribute> attributesInAssertion = getAttributesPresentInAssertion(assertion);
-        Collection<EidasAttribute> missingAttributes = CollectionUtils.subtract(requestedAttributes, attributesInAssertion);
-        if (!missingAttributes.isEmpty()) {
-            throw new InvalidRequestException("Missing mandatory attributes in the response assertion: " + missingAttributes.stream().map(EidasAttribute::getFriendlyName).collect(Collectors.toList()));
+    private void validateRequestedMandatoryEidasDatasetsPresent(EidasAttributeSet requestedAttributes, Assertion assertion) {
+        EidasAttributeSet attributesInAssertion = getAttributesPresentInAssertion(assertion);
+        if (!attributesInAssertion.containsAll(requestedAttributes)) {
+            EidasAttributeSet missingAttributes = requestedAttributes.minus(attributesInAssertion);
+            throw new ValidationFailureException(ErrorCode.ASSERTION_MANDATORY_ATTRIBUTES_MISSING, "Missing mandatory attributes in the response assertion: " + missingAttributes.toList().stream().map(EidasAttribute::getFriendlyName).collect(Collectors.toList()));
         }
     }
 
-    private Set<EidasAttribute> getAttributesPresentInAssertion(Assertion assertion) {
-        Set<EidasAttribute> attributes = new LinkedHashSet<>();
+    private EidasAttributeSet getAttributesPresentInAssertion(Assertion assertion) {
+        EidasAttributeSet.Builder attributes = EidasAttributeSet.builder();
         for (Attribute attribute : assertion.getAttributeStatements().get(0).getAttributes()) {
-            try {
-                attributes.add(EidasAttribute.fromString(attribute.getFriendlyName()));
-            } catch (IllegalArgumentException e) {
-                LOGGER.warn("Assertion contains unrecognized attribute with FriendlyName: " + attribute.getFriendlyName());
+            String friendlyName = attribute.getFriendlyName();
+            EidasAttribute eidasAttribute = friendlyName != null ? EidasAttribute.fromFriendlyName(friendlyName, 0, friendlyName.length()) : null;
+            if (eidasAttribute != null) {
+                attributes.add(eidasAttribute);
+            } else {
+                LOGGER.warn("Assertion contains unrecognized attribute with FriendlyName: " + friendlyName);
             }
         }
-        return attributes;
+        return attributes.build();
     }
 
-    private void validateExistingRequestSession(Assertion assertion, RequestSession requestSession) {
+    private void validateExistingRequestSession(Assertion assertion, RequestSession requestSession, long now) {
         String requestID = assertion.getSubject().getSubjectConfirmations().get(0).getSubjectConfirmationData().getInResponseTo();
         if (requestSession == null || !requestSession.getRequestId().equals(requestID)) {
-            throw new InvalidRequestException("No corresponding SAML request session found for the given response assertion!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_REQUEST_SESSION_NOT_FOUND);
         } else {
-            DateTime now = new DateTime(requestSession.getIssueInstant().getZone());
-            if (now.isAfter(requestSession.getIssueInstant().plusSeconds(maxAuthenticationLifetime).plusSeconds(acceptedClockSkew))) {
-                throw new InvalidRequestException("Request session with ID " + requestID + " has expired!");
+            if (now > requestSession.getIssueInstant().getMillis() + maxAuthenticationLifetime + acceptedClockSkew) {
+                throw new ValidationFailureException(ErrorCode.REQUEST_SESSION_EXPIRED, "Request session with ID " + requestID + " has expired!");
             }
         }
 
@@ -81,147 +98,142 @@ public class AssertionValidator {
             }
         }
         if (!isReturnedLoaValid) {
-            throw new InvalidRequestException("AuthnContextClassRef is not greater or equal to the request level of assurance!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_LOA_INSUFFICIENT);
         }
 
-        validateRequestedMandatoryEidasDatasetsPresent(requestSession.getRequestedAttributes().stream().filter(EidasAttribute::isRequired).collect(Collectors.toList()), assertion);
+        validateRequestedMandatoryEidasDatasetsPresent(requestSession.getRequestedAttributeSet().required(), assertion);
     }
 
     private void validateEidasRestrictions(Assertion assertion) {
         if (assertion.getAuthnStatements() == null || assertion.getAuthnStatements().size() != 1 ) {
-            throw new InvalidRequestException("Assertion must contain exactly 1 AuthnStatement!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_AUTHN_STATEMENT_COUNT);
         }
         if (assertion.getAttributeStatements() == null || assertion.getAttributeStatements().size() != 1 ) {
-            throw new InvalidRequestException("Assertion must contain exactly 1 AttributeStatement!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_ATTRIBUTE_STATEMENT_COUNT);
         }
         if (assertion.getAuthnStatements().get(0).getAuthnContext() == null) {
-            throw new InvalidRequestException("AuthnStatement must contain AuthnContext!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_AUTHN_CONTEXT_MISSING);
         }
         if (assertion.getAuthnStatements().get(0).getAuthnContext().getAuthnContextClassRef() == null) {
-            throw new InvalidRequestException("AuthnContext must contain AuthnContextClassRef!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_AUTHN_CONTEXT_CLASS_REF_MISSING);
         }
     }
 
-    private void validateIssueInstant(Assertion assertion) {
-        DateTime now = new DateTime(assertion.getIssueInstant().getZone());
-        if (now.isAfter(assertion.getIssueInstant().plusSeconds(acceptedClockSkew).plusSeconds(maxAuthenticationLifetime))) {
-            throw new InvalidRequestException("Assertion issue instant is expired!");
-        } else if (now.isBefore(assertion.getIssueInstant().minusSeconds(acceptedClockSkew).minusSeconds(maxAuthenticationLifetime))) {
-            throw new InvalidRequestException("Assertion issue instant is in the future!");
+    private void validateIssueInstant(Assertion assertion, long now) {
+        long issueInstant = assertion.getIssueInstant().getMillis();
+        if (now > issueInstant + acceptedClockSkew + maxAuthenticationLifetime) {
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_ISSUE_INSTANT_EXPIRED);
+        } else if (now < issueInstant - acceptedClockSkew - maxAuthenticationLifetime) {
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_ISSUE_INSTANT_IN_FUTURE);
         }
     }
 
     private void validateIssuer(Issuer issuer) {
         if (issuer == null) {
-            throw new InvalidRequestException("Assertion is missing issuer!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_ISSUER_MISSING);
         } else if (issuer.getValue() == null || !issuer.getValue().equals(idpMetadataUrl)) {
-            throw new InvalidRequestException("Assertion issuer's value is not equal to the configured IDP metadata url!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_ISSUER_INVALID);
         } else if (issuer.getFormat() == null || !NameIDType.ENTITY.equals(issuer.getFormat())) {
-            throw new InvalidRequestException("Assertion issuer's format must equal to: " + NameIDType.ENTITY + "!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_ISSUER_FORMAT_INVALID);
         }
     }
 
-    private void validateSubject(Subject subject) {
+    private void validateSubject(Subject subject, long now) {
         if (subject == null) {
-            throw new InvalidRequestException("Assertion is missing subject!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_SUBJECT_MISSING);
         }
         validateSubjectNameId(subject.getNameID());
-        validateSubjectConfirmation(subject.getSubjectConfirmations());
+        validateSubjectConfirmation(subject.getSubjectConfirmations(), now);
     }
 
     private void validateSubjectNameId(NameID nameID) {
         if (nameID == null) {
-            throw new InvalidRequestException("Assertion subject is missing nameID!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_NAME_ID_MISSING);
         }
-        List<String> validNameIDFormats = Arrays.asList(NameIDType.UNSPECIFIED , NameIDType.TRANSIENT, NameIDType.PERSISTENT);
-        if (!validNameIDFormats.contains(nameID.getFormat())) {
-            throw new InvalidRequestException("Assertion's subject name ID format is not equal to one of the following: " + validNameIDFormats);
+        if (!VALID_NAME_ID_FORMATS.contains(nameID.getFormat())) {
+            throw new ValidationFailureException(ErrorCode.ASSERTION_NAME_ID_FORMAT_INVALID, "Assertion's subject name ID format is not equal to one of the following: " + VALID_NAME_ID_FORMATS);
         }
     }
 
-    private void validateSubjectConfirmation(List<SubjectConfirmation> subjectConfirmations) {
+    private void validateSubjectConfirmation(List<SubjectConfirmation> subjectConfirmations, long now) {
         if (subjectConfirmations == null || subjectConfirmations.size() != 1) {
-            throw new InvalidRequestException("Assertion subject must contain exactly 1 SubjectConfirmation!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_SUBJECT_CONFIRMATION_COUNT);
         }
         if (!SubjectConfirmation.METHOD_BEARER.equals(subjectConfirmations.get(0).getMethod())) {
-            throw new InvalidRequestException("Assertion SubjectConfirmation must equal to: " + SubjectConfirmation.METHOD_BEARER + "!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_SUBJECT_CONFIRMATION_METHOD_INVALID);
         }
 
         SubjectConfirmationData subjectConfirmationData = subjectConfirmations.get(0).getSubjectConfirmationData();
         if (subjectConfirmationData == null) {
-            throw new InvalidRequestException("Assertion's subject SubjectConfirmation!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_SUBJECT_CONFIRMATION_DATA_MISSING);
         }
-        validateNotOnOrAfter(subjectConfirmationData);
+        validateNotOnOrAfter(subjectConfirmationData, now);
         validateRecipient(subjectConfirmationData);
     }
 
-    private void validateNotOnOrAfter(SubjectConfirmationData subjectConfirmationData) {
-        DateTime now = new DateTime(subjectConfirmationData.getNotOnOrAfter().getZone());
-        if (subjectConfirmationData.getNotOnOrAfter().plusSeconds(acceptedClockSkew).isBefore(now)) {
-            throw new InvalidRequestException("SubjectConfirmationData NotOnOrAfter is not valid!");
+    private void validateNotOnOrAfter(SubjectConfirmationData subjectConfirmationData, long now) {
+        if (subjectConfirmationData.getNotOnOrAfter().getMillis() + acceptedClockSkew < now) {
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_SUBJECT_CONFIRMATION_EXPIRED);
         }
     }
 
     private void validateRecipient(SubjectConfirmationData subjectConfirmationData) {
         if (!callbackUrl.equals(subjectConfirmationData.getRecipient())) {
-            throw new InvalidRequestException("SubjectConfirmationData recipient does not match with configured callback URL!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_RECIPIENT_INVALID);
         }
     }
 
-    private void validateConditions(Conditions conditions) {
+    private void validateConditions(Conditions conditions, long now) {
         if (conditions == null || conditions.getConditions() == null
                 || conditions.getConditions().size() != 1) {
-            throw new InvalidRequestException("Assertion must contain exactly 1 Condition!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_CONDITION_COUNT);
         }
-        validateNotOnOrAfter(conditions);
-        validateNotBefore(conditions);
+        validateNotOnOrAfter(conditions, now);
+        validateNotBefore(conditions, now);
         validateAudienceRestriction(conditions);
     }
 
-    private void validateNotOnOrAfter(Conditions conditions) {
-        DateTime now = new DateTime(conditions.getNotOnOrAfter().getZone());
-        if (conditions.getNotOnOrAfter().plusSeconds(acceptedClockSkew).isBefore(now)) {
-            throw new InvalidRequestException("Assertion condition NotOnOrAfter is not valid!");
+    private void validateNotOnOrAfter(Conditions conditions, long now) {
+        if (conditions.getNotOnOrAfter().getMillis() + acceptedClockSkew < now) {
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_CONDITION_EXPIRED);
         }
     }
 
-    private void validateNotBefore(Conditions conditions) {
-        DateTime now = new DateTime(conditions.getNotBefore().getZone());
-        if (conditions.getNotBefore().minus(acceptedClockSkew).isAfter(now)) {
-            throw new InvalidRequestException("Assertion condition NotBefore is not valid!");
+    private void validateNotBefore(Conditions conditions, long now) {
+        if (conditions.getNotBefore().getMillis() - acceptedClockSkew > now) {
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_CONDITION_NOT_YET_VALID);
         }
     }
 
     private void validateAudienceRestriction(Conditions conditions) {
         if (conditions.getConditions() == null
                 || conditions.getConditions().size() != 1 && conditions.getAudienceRestrictions().size() != 1) {
-            throw new InvalidRequestException("Assertion conditions must contain exactly 1 'AudienceRestriction' condition!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_AUDIENCE_RESTRICTION_COUNT);
         }
         validateAudiences(conditions.getAudienceRestrictions().get(0).getAudiences());
     }
 
     private void validateAudiences(List<Audience> audiences) {
         if (audiences == null || audiences.size() < 1 ) {
-            throw new InvalidRequestException("Assertion condition's AudienceRestriction must contain at least 1 Audience!");
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_AUDIENCE_MISSING);
         }
         for (Audience audience : audiences) {
             if (spEntityID.equals(audience.getAudienceURI())) {
                 return;
             }
         }
-        throw new InvalidRequestException("Audience does not match with configured SP entity ID!");
+        throw ValidationFailureException.of(ErrorCode.ASSERTION_AUDIENCE_INVALID);
     }
 
-    private void validateAuthnStatements(List<AuthnStatement> authnStatements) {
-        validateAuthnInstant(authnStatements.get(0).getAuthnInstant());
+    private void validateAuthnStatements(List<AuthnStatement> authnStatements, long now) {
+        validateAuthnInstant(authnStatements.get(0).getAuthnInstant(), now);
     }
 
-    private void validateAuthnInstant(DateTime authnInstant) {
-        DateTime now = new DateTime(authnInstant.getZone());
-        if (now.isAfter(authnInstant.plusSeconds(maxAuthenticationLifetime).plusSeconds(acceptedClockSkew))) {
-            throw new InvalidRequestException("AuthnInstant is expired!");
-        } else if (now.isBefore(authnInstant.minusSeconds(acceptedClockSkew))) {
-            throw new InvalidRequestException("AuthnInstant is in the future!");
+    private void validateAuthnInstant(DateTime authnInstant, long now) {
+        if (now > authnInstant.getMillis() + maxAuthenticationLifetime + acceptedClockSkew) {
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_AUTHN_INSTANT_EXPIRED);
+        } else if (now < authnInstant.getMillis() - acceptedClockSkew) {
+            throw ValidationFailureException.of(ErrorCode.ASSERTION_AUTHN_INSTANT_IN_FUTURE);
         }
     }
 
@@ -6,73 +6,84 @@ import org.opensaml.core.xml.XMLObject;
 import org.opensaml.core.xml.schema.XSAny;
 import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.Attribute;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.xml.namespace.QName;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @JsonInclude(Include.NON_NULL)
 public class AuthenticationResult {
 
+    private static final String LATIN_SCRIPT = "LatinScript";
+
     private String levelOfAssurance;
 
-    private Map<String, String> attributes = new HashMap<>();
+    private Map<String, String> attributes = new EidasAttributeValueMap();
 
     @JsonInclude(Include.NON_EMPTY)
-    private Map<String, String> attributesTransliterated = new HashMap<>();
+    private Map<String, String> attributesTransliterated = new EidasAttributeValueMap();
 
     public AuthenticationResult(Assertion assertion) {
         levelOfAssurance = assertion.getAuthnStatements().get(0).getAuthnContext().getAuthnContextClassRef().getAuthnContextClassRef();
         for (Attribute attribute : assertion.getAttributeStatements().get(0).getAttributes()) {
-            for (XMLObject attributeValue : attribute.getAttributeValues()) {
-                addToResponse(attribute, (XSAny) attributeValue);
-            }
+            addToResponse(attribute);
         }
     }
 
-    private void addToResponse(Attribute attribute, XSAny attributeValue) {
-        if (isTransliteratedAttribute(attribute)) {
-            addTransliteratedValues(attribute, attributeValue);
-        } else {
-            attributes.put(attribute.getFriendlyName(), attributeValue.getTextContent());
+    /**
+     * An attribute with exactly two values, at least one of which has the LatinScript attribute, is transliterated:
+     * the value in Latin script (LatinScript missing or true) is added to the transliterated attributes and the other
+     * one to the attributes. For all other attributes the values are added to the attributes.
+     */
+    private void addToResponse(Attribute attribute) {
+        String friendlyName = attribute.getFriendlyName();
+        List<XMLObject> attributeValues = attribute.getAttributeValues();
+        if (attributeValues.size() == 2) {
+            XSAny firstValue = (XSAny) attributeValues.get(0);
+            XSAny secondValue = (XSAny) attributeValues.get(1);
+            String firstLatinScript = getLatinScript(firstValue);
+            String secondLatinScript = getLatinScript(secondValue);
+            if (firstLatinScript != null || secondLatinScript != null) {
+                addTransliteratedValue(friendlyName, firstValue, firstLatinScript);
+                addTransliteratedValue(friendlyName, secondValue, secondLatinScript);
+                return;
+            }
+        }
+        for (int i = 0; i < attributeValues.size(); i++) {
+            attributes.put(friendlyName, ((XSAny) attributeValues.get(i)).getTextContent());
         }
     }
 
-    private boolean isTransliteratedAttribute(Attribute attribute) {
-        return attribute.getAttributeValues().size() == 2 && isLatinscriptAttributePresent(attribute);
-    }
-
-    private boolean isLatinscriptAttributePresent(Attribute attribute) {
-        for (XMLObject attributeValue: attribute.getAttributeValues()) {
-            List<QName> latinScriptAttributes = ((XSAny)attributeValue).getUnknownAttributes().keySet().stream().filter(x -> x.getLocalPart().equals("LatinScript")).collect(Collectors.toList());
-            if (!latinScriptAttributes.isEmpty())
-                return true;
+    private void addTransliteratedValue(String friendlyName, XSAny attributeValue, String latinScript) {
+        if (isLatinScript(latinScript)) {
+            attributesTransliterated.put(friendlyName, attributeValue.getTextContent());
+        } else {
+            attributes.put(friendlyName, attributeValue.getTextContent());
         }
-
-        return false;
     }
 
-    private void addTransliteratedValues(Attribute attribute, XSAny attributeValue) {
-        if (isLatinScript(attributeValue)) {
-            attributesTransliterated.put(attribute.getFriendlyName(), attributeValue.getTextContent());
-        } else {
-            attributes.put(attribute.getFriendlyName(), attributeValue.getTextContent());
+    private static String getLatinScript(XSAny attributeValue) {
+        String latinScript = null;
+        boolean found = false;
+        for (Map.Entry<QName, String> unknownAttribute : attributeValue.getUnknownAttributes().entrySet()) {
+            if (LATIN_SCRIPT.equals(unknownAttribute.getKey().getLocalPart())) {
+                if (found) {
+                    throw new IllegalStateException("More than one LatinScript attributes not allowed!");
+                }
+                found = true;
+                latinScript = unknownAttribute.getValue() != null ? unknownAttribute.getValue() : "";
+            }
         }
+        return latinScript;
     }
 
-    private boolean isLatinScript(XSAny a) {
-        List<QName> latinScriptAttributes = a.getUnknownAttributes().keySet().stream().filter(x -> x.getLocalPart().equals("LatinScript")).collect(Collectors.toList());
-        if (latinScriptAttributes.isEmpty()) {
+    // xs:boolean, the value is in Latin script unless explicitly marked otherwise
+    private static boolean isLatinScript(String latinScript) {
+        if (latinScript == null) {
             return true;
-        } else if (latinScriptAttributes.size() == 1) {
-            return latinScriptAttributes.get(0).toString().equals("true");
-        } else {
-            throw new IllegalStateException("More than one LatinScript attributes not allowed!");
         }
+        String value = latinScript.trim();
+        return "true".equals(value) || "1".equals(value);
     }
 
     public String getLevelOfAssurance() {
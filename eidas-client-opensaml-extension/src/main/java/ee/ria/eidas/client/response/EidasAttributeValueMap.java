@@ -0,0 +1,169 @@
+package ee.ria.eidas.client.response;
+
+import ee.ria.eidas.client.authnrequest.EidasAttribute;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map of attribute values keyed by the attribute FriendlyName. Values of the known {@link EidasAttribute}s are stored
+ * in an array indexed by the attribute ordinal, other FriendlyNames in a separate map that is created on first use.
+ * Iteration returns the known attributes in ordinal order, followed by the other attributes in insertion order.
+ */
+class EidasAttributeValueMap extends AbstractMap<String, String> {
+
+    private static final EidasAttribute[] ATTRIBUTES = EidasAttribute.values();
+
+    private final String[] values = new String[ATTRIBUTES.length];
+
+    private long present;
+
+    private Map<String, String> other;
+
+    String put(EidasAttribute eidasAttribute, String value) {
+        int ordinal = eidasAttribute.ordinal();
+        String previous = values[ordinal];
+        values[ordinal] = value;
+        present |= 1L << ordinal;
+        return previous;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        EidasAttribute eidasAttribute = toEidasAttribute(key);
+        if (eidasAttribute != null) {
+            return put(eidasAttribute, value);
+        }
+        if (other == null) {
+            other = new LinkedHashMap<>();
+        }
+        return other.put(key, value);
+    }
+
+    @Override
+    public String get(Object key) {
+        EidasAttribute eidasAttribute = toEidasAttribute(key);
+        if (eidasAttribute != null) {
+            return values[eidasAttribute.ordinal()];
+        }
+        return other != null ? other.get(key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        EidasAttribute eidasAttribute = toEidasAttribute(key);
+        if (eidasAttribute != null) {
+            return (present & (1L << eidasAttribute.ordinal())) != 0;
+        }
+        return other != null && other.containsKey(key);
+    }
+
+    @Override
+    public String remove(Object key) {
+        EidasAttribute eidasAttribute = toEidasAttribute(key);
+        if (eidasAttribute != null) {
+            return removeOrdinal(eidasAttribute.ordinal());
+        }
+        return other != null ? other.remove(key) : null;
+    }
+
+    @Override
+    public int size() {
+        return Long.bitCount(present) + (other != null ? other.size() : 0);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        present = 0;
+        other = null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return EidasAttributeValueMap.this.size();
+            }
+        };
+    }
+
+    private String removeOrdinal(int ordinal) {
+        String previous = values[ordinal];
+        values[ordinal] = null;
+        present &= ~(1L << ordinal);
+        return previous;
+    }
+
+    // Only an exact FriendlyName match uses the array, other spellings are kept as they were received
+    private static EidasAttribute toEidasAttribute(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String friendlyName = (String) key;
+        EidasAttribute eidasAttribute = EidasAttribute.fromFriendlyName(friendlyName, 0, friendlyName.length());
+        return eidasAttribute != null && eidasAttribute.getFriendlyName().equals(friendlyName) ? eidasAttribute : null;
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, String>> {
+
+        private long remaining = present;
+
+        private int lastOrdinal = -1;
+
+        private Iterator<Entry<String, String>> otherIterator;
+
+        @Override
+        public boolean hasNext() {
+            return remaining != 0 || getOtherIterator().hasNext();
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (remaining != 0) {
+                int ordinal = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                lastOrdinal = ordinal;
+                return new SimpleImmutableEntry<>(ATTRIBUTES[ordinal].getFriendlyName(), values[ordinal]);
+            }
+            if (!getOtherIterator().hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastOrdinal = -1;
+            return otherIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (lastOrdinal >= 0) {
+                removeOrdinal(lastOrdinal);
+                lastOrdinal = -1;
+            } else if (otherIterator != null) {
+                otherIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+
+        private Iterator<Entry<String, String>> getOtherIterator() {
+            if (otherIterator == null) {
+                otherIterator = other != null ? other.entrySet().iterator() : Collections.<Entry<String, String>>emptyIterator();
+            }
+            return otherIterator;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
 import ee.ria.eidas.client.config.EidasClientProperties;
 import ee.ria.eidas.client.exception.EidasClientException;
+import ee.ria.eidas.client.util.CryptoPrimitives;
 import ee.ria.eidas.client.util.SerializationUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.binary.Hex;
@@ -15,16 +16,20 @@ import org.apache.shiro.crypto.AesCipherService;
 import org.apache.shiro.crypto.CipherService;
 import org.apache.shiro.util.Assert;
 import org.jose4j.jws.AlgorithmIdentifiers;
-import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.keys.AesKey;
 
 import javax.annotation.PreDestroy;
-import javax.crypto.spec.SecretKeySpec;
+import javax.crypto.Mac;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -121,9 +126,7 @@ public class HazelcastRequestSessionServiceImpl implements RequestSessionService
 
     public static byte[] rawDigest(final String alg, final byte[] data) {
         try {
-            final MessageDigest digest = MessageDigest.getInstance(alg);
-            digest.reset();
-            return digest.digest(data);
+            return CryptoPrimitives.messageDigest(alg).digest(data);
         } catch (final Exception cause) {
             throw new SecurityException(cause);
         }
@@ -142,8 +145,24 @@ public class HazelcastRequestSessionServiceImpl implements RequestSessionService
 
     public static class DefaultCipherExecutor implements CipherExecutor<byte[], byte[]>{
 
-        private String encryptionAlgorithm = "AES";
-        private String encryptionKey;
+        private static final Base64.Encoder BASE64URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+        private static final Base64.Decoder BASE64URL_DECODER = Base64.getUrlDecoder();
+        private static final Map<String, String> MAC_ALGORITHMS = new HashMap<>();
+        private static final Map<String, String> JWS_ALGORITHMS_BY_HEADER = new HashMap<>();
+
+        static {
+            MAC_ALGORITHMS.put(AlgorithmIdentifiers.HMAC_SHA256, "HmacSHA256");
+            MAC_ALGORITHMS.put(AlgorithmIdentifiers.HMAC_SHA384, "HmacSHA384");
+            MAC_ALGORITHMS.put(AlgorithmIdentifiers.HMAC_SHA512, "HmacSHA512");
+            for (String algorithm : MAC_ALGORITHMS.keySet()) {
+                JWS_ALGORITHMS_BY_HEADER.put(encodedHeader(algorithm), algorithm);
+            }
+        }
+
+        private static final String ENCRYPTION_ALGORITHM = "AES";
+
+        private final CipherService cipherService = new AesCipherService();
+        private byte[] encryptionKey;
         private AesKey signingKey;
         private String signingAlgorithm = AlgorithmIdentifiers.HMAC_SHA512;
 
@@ -155,10 +174,10 @@ public class HazelcastRequestSessionServiceImpl implements RequestSessionService
 
             org.springframework.util.Assert.notNull(encryptionSecretKey, "No encryption key is defined.");
             org.springframework.util.Assert.notNull(signingSecretKey, "Secret key for signing is not defined.");
+            org.springframework.util.Assert.isTrue(ENCRYPTION_ALGORITHM.equalsIgnoreCase(secretKeyAlg), "Unsupported encryption algorithm: " + secretKeyAlg + ". Only " + ENCRYPTION_ALGORITHM + " is supported.");
 
             this.signingKey = new AesKey(signingSecretKey.getBytes(StandardCharsets.UTF_8));
-            this.encryptionKey = encryptionSecretKey;
-            this.encryptionAlgorithm = secretKeyAlg;
+            this.encryptionKey = encryptionSecretKey.getBytes(StandardCharsets.UTF_8);
             this.signingAlgorithm = signingAlgorithm;
         }
 
@@ -172,10 +191,7 @@ public class HazelcastRequestSessionServiceImpl implements RequestSessionService
 
         public byte[] encode(final byte[] value) {
             try {
-                final Key key = new SecretKeySpec(this.encryptionKey.getBytes(StandardCharsets.UTF_8),
-                        this.encryptionAlgorithm);
-                final CipherService cipher = new AesCipherService();
-                final byte[] result = cipher.encrypt(value, key.getEncoded()).getBytes();
+                final byte[] result = this.cipherService.encrypt(value, this.encryptionKey).getBytes();
                 return sign(result);
             } catch (final Exception e) {
                 log.error(e.getMessage(), e);
@@ -188,23 +204,22 @@ public class HazelcastRequestSessionServiceImpl implements RequestSessionService
                 final byte[] verifiedValue = verifySignature(value);
                 if (verifiedValue == null)
                     throw new IllegalStateException("Invalid signature detected!");
-                final Key key = new SecretKeySpec(this.encryptionKey.getBytes(StandardCharsets.UTF_8),
-                        this.encryptionAlgorithm);
-                final CipherService cipher = new AesCipherService();
-                return cipher.decrypt(verifiedValue, key.getEncoded()).getBytes();
+                return this.cipherService.decrypt(verifiedValue, this.encryptionKey).getBytes();
             } catch (final Exception e) {
                 throw Throwables.propagate(e);
             }
         }
 
+        /**
+         * Creates a JWS compact serialization with the base64 encoded value as the payload, identical to the one
+         * created by jose4j for the HS256, HS384 and HS512 algorithms.
+         */
         public static byte[] signJws(final Key key, final byte[] value, String algorithm) {
             try {
-                final String base64 = Base64.getEncoder().encodeToString(value);
-                final JsonWebSignature jws = new JsonWebSignature();
-                jws.setPayload(base64);
-                jws.setAlgorithmHeaderValue(algorithm);
-                jws.setKey(key);
-                return jws.getCompactSerialization().getBytes(StandardCharsets.UTF_8);
+                final String encodedPayload = BASE64URL_ENCODER.encodeToString(Base64.getEncoder().encode(value));
+                final String signingInput = encodedHeader(algorithm) + '.' + encodedPayload;
+                final byte[] signature = hmac(key, algorithm, signingInput);
+                return (signingInput + '.' + BASE64URL_ENCODER.encodeToString(signature)).getBytes(StandardCharsets.US_ASCII);
             } catch (final Exception e) {
                 throw Throwables.propagate(e);
             }
@@ -213,13 +228,18 @@ public class HazelcastRequestSessionServiceImpl implements RequestSessionService
         public static byte[] verifyJwsSignature(final Key signingKey, final byte[] value) {
             try {
                 final String asString = new String(value, StandardCharsets.UTF_8);
-                final JsonWebSignature jws = new JsonWebSignature();
-                jws.setCompactSerialization(asString);
-                jws.setKey(signingKey);
+                final int headerEnd = asString.indexOf('.');
+                final int payloadEnd = asString.indexOf('.', headerEnd + 1);
+                if (headerEnd < 0 || payloadEnd < 0 || asString.indexOf('.', payloadEnd + 1) >= 0)
+                    throw new IllegalArgumentException("Invalid JWS compact serialization");
 
-                final boolean verified = jws.verifySignature();
-                if (verified) {
-                    final String payload = jws.getPayload();
+                final String algorithm = JWS_ALGORITHMS_BY_HEADER.get(asString.substring(0, headerEnd));
+                if (algorithm == null)
+                    return null;
+                final byte[] expectedSignature = hmac(signingKey, algorithm, asString.substring(0, payloadEnd));
+                final byte[] signature = BASE64URL_DECODER.decode(asString.substring(payloadEnd + 1));
+                if (MessageDigest.isEqual(expectedSignature, signature)) {
+                    final String payload = new String(BASE64URL_DECODER.decode(asString.substring(headerEnd + 1, payloadEnd)), StandardCharsets.UTF_8);
                     log.trace("Successfully decoded value. Result in Base64-encoding is [{}]", payload);
                     return Base64.getDecoder().decode(payload);
                 }
@@ -228,5 +248,24 @@ public class HazelcastRequestSessionServiceImpl implements RequestSessionService
                 throw Throwables.propagate(e);
             }
         }
+
+        private static byte[] hmac(final Key key, final String algorithm, final String signingInput) throws GeneralSecurityException {
+            final String macAlgorithm = MAC_ALGORITHMS.get(algorithm);
+            if (macAlgorithm == null)
+                throw new NoSuchAlgorithmException("Unsupported JWS algorithm: " + algorithm);
+            final int minimumKeyLength = Integer.parseInt(algorithm.substring(2));
+            final int keyLength = key.getEncoded().length * 8;
+            if (keyLength < minimumKeyLength)
+                throw new InvalidKeyException("A key of the same size as the hash output (i.e. " + minimumKeyLength + " bits for " + algorithm
+                        + ") or larger MUST be used with the HMAC SHA algorithms but this key is only " + keyLength + " bits");
+
+            final Mac mac = CryptoPrimitives.mac(macAlgorithm);
+            mac.init(key);
+            return mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        private static String encodedHeader(final String algorithm) {
+            return BASE64URL_ENCODER.encodeToString(("{\"alg\":\"" + algorithm + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
     }
 }
@@ -2,6 +2,7 @@ package ee.ria.eidas.client.session;
 
 import ee.ria.eidas.client.authnrequest.AssuranceLevel;
 import ee.ria.eidas.client.authnrequest.EidasAttribute;
+import ee.ria.eidas.client.authnrequest.EidasAttributeSet;
 import org.joda.time.DateTime;
 
 import java.io.Serializable;
@@ -15,4 +16,8 @@ public interface RequestSession extends Serializable, Comparable<RequestSession>
     AssuranceLevel getLoa();
 
     List<EidasAttribute> getRequestedAttributes();
+
+    default EidasAttributeSet getRequestedAttributeSet() {
+        return EidasAttributeSet.copyOf(getRequestedAttributes());
+    }
 }
@@ -2,22 +2,47 @@ package ee.ria.eidas.client.session;
 
 import ee.ria.eidas.client.authnrequest.AssuranceLevel;
 import ee.ria.eidas.client.authnrequest.EidasAttribute;
+import ee.ria.eidas.client.authnrequest.EidasAttributeSet;
 import lombok.Data;
 import org.joda.time.DateTime;
 
 import java.util.List;
 
+/**
+ * Request session as stored in the session map. Sessions are shared by the cluster members in serialized form, so the
+ * serialized form is kept identical to the one of the earlier versions storing only the list of requested attributes:
+ * the serialVersionUID is the one computed for that form and the attribute set is rebuilt after deserialization.
+ */
 @Data
 public class UnencodedRequestSession implements RequestSession {
+    private static final long serialVersionUID = 1413025333624849969L;
+
     private final String requestId;
     private final DateTime issueInstant;
     private final AssuranceLevel loa;
     private final List<EidasAttribute> requestedAttributes;
+    private final transient EidasAttributeSet requestedAttributeSet;
+
+    public UnencodedRequestSession(String requestId, DateTime issueInstant, AssuranceLevel loa, EidasAttributeSet requestedAttributeSet) {
+        this.requestId = requestId;
+        this.issueInstant = issueInstant;
+        this.loa = loa;
+        this.requestedAttributes = requestedAttributeSet.toList();
+        this.requestedAttributeSet = requestedAttributeSet;
+    }
+
+    public UnencodedRequestSession(String requestId, DateTime issueInstant, AssuranceLevel loa, List<EidasAttribute> requestedAttributes) {
+        this(requestId, issueInstant, loa, EidasAttributeSet.copyOf(requestedAttributes));
+    }
 
     @Override
     public int compareTo(final RequestSession o) {
         return getRequestId().compareTo(o.getRequestId());
     }
+
+    private Object readResolve() {
+        return new UnencodedRequestSession(requestId, issueInstant, loa, requestedAttributes);
+    }
 }
 
 @Data
@@ -0,0 +1,79 @@
+package ee.ria.eidas.client.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out JCA primitives that are created once per thread, algorithm and provider instead of on every operation.
+ * <p>
+ * The returned instance is confined to the calling thread and is returned again on the next call with the same
+ * arguments, so it must be used to completion before the same primitive is requested again. Message digests are
+ * reset before they are returned; {@link Mac}, {@link Signature} and {@link Cipher} instances must be initialized by
+ * the caller, which also resets them. A {@code null} provider uses the JCA provider preference order.
+ */
+public final class CryptoPrimitives {
+
+    private static final ThreadLocal<Map<String, MessageDigest>> MESSAGE_DIGESTS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Mac>> MACS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+
+    private CryptoPrimitives() {
+    }
+
+    public static MessageDigest messageDigest(String algorithm) throws GeneralSecurityException {
+        return messageDigest(algorithm, null);
+    }
+
+    public static MessageDigest messageDigest(String algorithm, String provider) throws GeneralSecurityException {
+        MessageDigest messageDigest = get(MESSAGE_DIGESTS, algorithm, provider,
+                (a, p) -> p == null ? MessageDigest.getInstance(a) : MessageDigest.getInstance(a, p));
+        messageDigest.reset();
+        return messageDigest;
+    }
+
+    public static Mac mac(String algorithm) throws GeneralSecurityException {
+        return mac(algorithm, null);
+    }
+
+    public static Mac mac(String algorithm, String provider) throws GeneralSecurityException {
+        return get(MACS, algorithm, provider, (a, p) -> p == null ? Mac.getInstance(a) : Mac.getInstance(a, p));
+    }
+
+    public static Signature signature(String algorithm) throws GeneralSecurityException {
+        return signature(algorithm, null);
+    }
+
+    public static Signature signature(String algorithm, String provider) throws GeneralSecurityException {
+        return get(SIGNATURES, algorithm, provider, (a, p) -> p == null ? Signature.getInstance(a) : Signature.getInstance(a, p));
+    }
+
+    public static Cipher cipher(String transformation) throws GeneralSecurityException {
+        return cipher(transformation, null);
+    }
+
+    public static Cipher cipher(String transformation, String provider) throws GeneralSecurityException {
+        return get(CIPHERS, transformation, provider, (a, p) -> p == null ? Cipher.getInstance(a) : Cipher.getInstance(a, p));
+    }
+
+    private static <T> T get(ThreadLocal<Map<String, T>> cache, String algorithm, String provider, Factory<T> factory) throws GeneralSecurityException {
+        Map<String, T> instances = cache.get();
+        String key = provider == null ? algorithm : algorithm + '@' + provider;
+        T instance = instances.get(key);
+        if (instance == null) {
+            instance = factory.getInstance(algorithm, provider);
+            instances.put(key, instance);
+        }
+        return instance;
+    }
+
+    @FunctionalInterface
+    private interface Factory<T> {
+        T getInstance(String algorithm, String provider) throws GeneralSecurityException;
+    }
+}
@@ -1,11 +1,9 @@
 package ee.ria.eidas.client.util;
 
 import ee.ria.eidas.client.exception.EidasClientException;
-import net.shibboleth.utilities.java.support.security.RandomIdentifierGenerationStrategy;
+import net.shibboleth.utilities.java.support.security.IdentifierGenerationStrategy;
 import net.shibboleth.utilities.java.support.xml.SerializeSupport;
 import org.opensaml.core.xml.XMLObject;
-import org.opensaml.core.xml.XMLObjectBuilderFactory;
-import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
 import org.opensaml.core.xml.io.MarshallingException;
 import org.opensaml.xmlsec.algorithm.AlgorithmDescriptor;
 import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
@@ -16,32 +14,30 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import org.w3c.dom.Element;
 
-import javax.xml.namespace.QName;
 
 public class OpenSAMLUtils {
 
-    private static RandomIdentifierGenerationStrategy secureRandomIdGenerator = new RandomIdentifierGenerationStrategy();
+    private static volatile IdentifierGenerationStrategy secureRandomIdGenerator = new ThreadLocalRandomIdentifierGenerationStrategy();
 
-    public static <T> T buildSAMLObject(final Class<T> clazz) {
-        T object;
-        try {
-            XMLObjectBuilderFactory builderFactory = XMLObjectProviderRegistrySupport.getBuilderFactory();
-            QName defaultElementName = (QName) clazz.getDeclaredField("DEFAULT_ELEMENT_NAME").get(null);
-            object = (T) builderFactory.getBuilder(defaultElementName).buildObject(defaultElementName);
-        } catch (IllegalAccessException | NoSuchFieldException e) {
-            throw new EidasClientException("Could not create SAML object");
-        }
-
-        return object;
+    public static <T extends XMLObject> T buildSAMLObject(final Class<T> clazz) {
+        return SAMLObjectFactory.build(clazz);
     }
 
     public static String generateSecureRandomId() {
         return secureRandomIdGenerator.generateIdentifier();
     }
 
+    /**
+     * Replaces the strategy used for generating the IDs of AuthnRequests and SP metadata.
+     */
+    public static void setIdentifierGenerationStrategy(IdentifierGenerationStrategy identifierGenerationStrategy) {
+        Assert.notNull(identifierGenerationStrategy, "Identifier generation strategy must be provided!");
+        secureRandomIdGenerator = identifierGenerationStrategy;
+    }
+
     public static String getXmlString(final XMLObject object) {
         try {
-            Element entityDescriptorElement = XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(object).marshall(object);
+            Element entityDescriptorElement = SAMLObjectFactory.marshall(object);
             return SerializeSupport.nodeToString(entityDescriptorElement);
         } catch (MarshallingException e) {
             throw new EidasClientException("Error generating xml from: " + object);
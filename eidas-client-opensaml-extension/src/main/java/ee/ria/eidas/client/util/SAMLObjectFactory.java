@@ -0,0 +1,129 @@
+package ee.ria.eidas.client.util;
+
+import ee.ria.eidas.client.exception.EidasClientException;
+import net.shibboleth.utilities.java.support.xml.XMLConstants;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.XMLObjectBuilder;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.Marshaller;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.Unmarshaller;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.w3c.dom.Element;
+
+import javax.xml.namespace.QName;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Builds, marshalls and unmarshalls SAML objects with the providers registered in the OpenSAML configuration, resolving
+ * them once instead of on every call.
+ * <p>
+ * The default element name and builder are resolved once per SAML object interface and the marshaller once per
+ * implementation class. Unmarshallers are cached by element name. Objects and elements with an {@code xsi:type} are
+ * always resolved through the OpenSAML factories. The providers must be registered (OpenSAML initialized) before
+ * first use; failed lookups are not cached.
+ */
+public final class SAMLObjectFactory {
+
+    private static final ClassValue<ObjectBuilder> BUILDERS = new ClassValue<ObjectBuilder>() {
+        @Override
+        protected ObjectBuilder computeValue(Class<?> type) {
+            QName elementName = getDefaultElementName(type);
+            XMLObjectBuilder<?> builder = XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(elementName);
+            if (builder == null) {
+                throw new EidasClientException("No SAML object builder registered for " + elementName);
+            }
+            return new ObjectBuilder(elementName, builder);
+        }
+    };
+
+    // resolved lazily, as the marshaller lookup needs the SAML object
+    private static final ClassValue<AtomicReference<Marshaller>> MARSHALLERS = new ClassValue<AtomicReference<Marshaller>>() {
+        @Override
+        protected AtomicReference<Marshaller> computeValue(Class<?> type) {
+            return new AtomicReference<>();
+        }
+    };
+
+    private static final Map<QName, Unmarshaller> UNMARSHALLERS = new ConcurrentHashMap<>();
+
+    private SAMLObjectFactory() {
+    }
+
+    /**
+     * Builds a new SAML object with the default element name of the given SAML object interface.
+     */
+    public static <T extends XMLObject> T build(Class<T> type) {
+        ObjectBuilder objectBuilder = BUILDERS.get(type);
+        return type.cast(objectBuilder.builder.buildObject(objectBuilder.elementName));
+    }
+
+    public static Element marshall(XMLObject xmlObject) throws MarshallingException {
+        return getMarshaller(xmlObject).marshall(xmlObject);
+    }
+
+    public static <T extends XMLObject> T unmarshall(Element element, Class<T> type) throws UnmarshallingException {
+        XMLObject xmlObject = getUnmarshaller(element).unmarshall(element);
+        if (!type.isInstance(xmlObject)) {
+            throw new UnmarshallingException("Unexpected element " + xmlObject.getElementQName() + ", expected " + type.getSimpleName());
+        }
+        return type.cast(xmlObject);
+    }
+
+    public static Marshaller getMarshaller(XMLObject xmlObject) throws MarshallingException {
+        AtomicReference<Marshaller> resolvedMarshaller = MARSHALLERS.get(xmlObject.getClass());
+        Marshaller marshaller = resolvedMarshaller.get();
+        if (marshaller == null || xmlObject.getSchemaType() != null) {
+            marshaller = XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(xmlObject);
+            if (marshaller == null) {
+                throw new MarshallingException("No marshaller registered for " + xmlObject.getElementQName());
+            }
+            if (xmlObject.getSchemaType() == null) {
+                resolvedMarshaller.compareAndSet(null, marshaller);
+            }
+        }
+        return marshaller;
+    }
+
+    public static Unmarshaller getUnmarshaller(Element element) throws UnmarshallingException {
+        if (element.hasAttributeNS(XMLConstants.XSI_NS, "type")) {
+            return requireUnmarshaller(XMLObjectProviderRegistrySupport.getUnmarshallerFactory().getUnmarshaller(element), element);
+        }
+        QName elementName = new QName(element.getNamespaceURI(), element.getLocalName());
+        Unmarshaller unmarshaller = UNMARSHALLERS.get(elementName);
+        if (unmarshaller == null) {
+            unmarshaller = requireUnmarshaller(XMLObjectProviderRegistrySupport.getUnmarshallerFactory().getUnmarshaller(element), element);
+            UNMARSHALLERS.putIfAbsent(elementName, unmarshaller);
+        }
+        return unmarshaller;
+    }
+
+    private static Unmarshaller requireUnmarshaller(Unmarshaller unmarshaller, Element element) throws UnmarshallingException {
+        if (unmarshaller == null) {
+            throw new UnmarshallingException("No unmarshaller registered for {" + element.getNamespaceURI() + "}" + element.getLocalName());
+        }
+        return unmarshaller;
+    }
+
+    private static QName getDefaultElementName(Class<?> type) {
+        try {
+            return (QName) type.getField("DEFAULT_ELEMENT_NAME").get(null);
+        } catch (IllegalAccessException | NoSuchFieldException | ClassCastException e) {
+            throw new EidasClientException("Could not create SAML object", e);
+        }
+    }
+
+    private static final class ObjectBuilder {
+
+        private final QName elementName;
+
+        private final XMLObjectBuilder<?> builder;
+
+        private ObjectBuilder(QName elementName, XMLObjectBuilder<?> builder) {
+            this.elementName = elementName;
+            this.builder = builder;
+        }
+    }
+}
@@ -1,28 +1,38 @@
 package ee.ria.eidas.client.util;
 
-import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import ee.ria.eidas.client.config.OpenSAMLConfiguration;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
 import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
 import org.opensaml.saml.common.SAMLObjectContentReference;
 import org.opensaml.saml.common.SignableSAMLObject;
 import org.opensaml.security.SecurityException;
 import org.opensaml.security.credential.Credential;
-import org.opensaml.xmlsec.SignatureSigningParameters;
-import org.opensaml.xmlsec.algorithm.DigestAlgorithm;
-import org.opensaml.xmlsec.algorithm.SignatureAlgorithm;
-import org.opensaml.xmlsec.keyinfo.KeyInfoGenerator;
 import org.opensaml.xmlsec.keyinfo.impl.X509KeyInfoGeneratorFactory;
+import org.opensaml.xmlsec.signature.KeyInfo;
 import org.opensaml.xmlsec.signature.Signature;
 import org.opensaml.xmlsec.signature.support.SignatureConstants;
 import org.opensaml.xmlsec.signature.support.SignatureException;
-import org.opensaml.xmlsec.signature.support.SignatureSupport;
 import org.opensaml.xmlsec.signature.support.Signer;
 import org.springframework.util.Assert;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
+/**
+ * Signs SAML objects with the given credential and signature algorithm. The signer is meant to be long-lived: the
+ * signature and digest algorithms are resolved and the KeyInfo of the credential is generated and marshalled only once,
+ * on the first use. For every signature the cached KeyInfo DOM is cloned instead of being generated again.
+ * <p>
+ * Initialization is deferred to the first signature, since the algorithm registry is populated during the OpenSAML
+ * bootstrap. Instances are thread-safe.
+ */
 public class SAMLSigner {
 
     private final String signatureAlgorithmUri;
     private final Credential credential;
 
+    private volatile SigningParameters signingParameters;
+
     public SAMLSigner(String signatureAlgorithmUri, Credential credential) {
         Assert.notNull(signatureAlgorithmUri, "Signature algorithm must be provided!");
         Assert.notNull(credential, "Signing credentials must be provided!");
@@ -30,35 +40,85 @@ public class SAMLSigner {
         this.credential = credential;
     }
 
+    public String getSignatureAlgorithmUri() {
+        return signatureAlgorithmUri;
+    }
+
+    public Credential getCredential() {
+        return credential;
+    }
+
+    /**
+     * Resolves the algorithms and generates the KeyInfo ahead of the first signature.
+     */
+    public void prepare() throws SecurityException, MarshallingException {
+        getSigningParameters();
+    }
+
     public void sign(SignableSAMLObject samlObject) throws SecurityException, MarshallingException, SignatureException {
+        SigningParameters params = getSigningParameters();
         Signature signature = buildSignature();
-        SignatureAlgorithm signatureAlgorithm = OpenSAMLUtils.getSignatureAlgorithm(signatureAlgorithmUri);
-        DigestAlgorithm digestAlgorithm = OpenSAMLUtils.getRelatedDigestAlgorithm(signatureAlgorithmUri);
-        SignatureSigningParameters params = getSignatureSigningParameters(credential, signatureAlgorithm, digestAlgorithm);
-        SignatureSupport.prepareSignatureParams(signature, params);
+        signature.setSigningCredential(credential);
+        signature.setSignatureAlgorithm(params.signatureAlgorithm);
+        signature.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        signature.setKeyInfo(params.newKeyInfo());
         samlObject.setSignature(signature);
-        ((SAMLObjectContentReference) signature.getContentReferences().get(0)).setDigestAlgorithm(params.getSignatureReferenceDigestMethod());
-        XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(samlObject).marshall(samlObject);
+        ((SAMLObjectContentReference) signature.getContentReferences().get(0)).setDigestAlgorithm(params.digestAlgorithm);
+        SAMLObjectFactory.marshall(samlObject);
         Signer.signObject(signature);
     }
 
-    private org.opensaml.xmlsec.signature.Signature buildSignature() {
-        return (org.opensaml.xmlsec.signature.Signature) XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(org.opensaml.xmlsec.signature.Signature.DEFAULT_ELEMENT_NAME).buildObject(org.opensaml.xmlsec.signature.Signature.DEFAULT_ELEMENT_NAME);
-    }
-
-    private SignatureSigningParameters getSignatureSigningParameters(Credential credential, SignatureAlgorithm signatureAlgorithm, DigestAlgorithm digestAlgorithm) {
-        SignatureSigningParameters params = new SignatureSigningParameters();
-        params.setSigningCredential(credential);
-        params.setSignatureAlgorithm(signatureAlgorithm.getURI());
-        params.setSignatureCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
-        params.setSignatureReferenceDigestMethod(digestAlgorithm.getURI());
-        params.setKeyInfoGenerator(getX509KeyInfoGenerator());
+    private SigningParameters getSigningParameters() throws SecurityException, MarshallingException {
+        SigningParameters params = signingParameters;
+        if (params == null) {
+            synchronized (this) {
+                params = signingParameters;
+                if (params == null) {
+                    params = new SigningParameters(
+                            OpenSAMLUtils.getSignatureAlgorithm(signatureAlgorithmUri).getURI(),
+                            OpenSAMLUtils.getRelatedDigestAlgorithm(signatureAlgorithmUri).getURI(),
+                            SAMLObjectFactory.marshall(getX509KeyInfo()));
+                    signingParameters = params;
+                }
+            }
+        }
         return params;
     }
 
-    private KeyInfoGenerator getX509KeyInfoGenerator() {
+    private KeyInfo getX509KeyInfo() throws SecurityException {
         X509KeyInfoGeneratorFactory x509KeyInfoGenerator = new X509KeyInfoGeneratorFactory();
         x509KeyInfoGenerator.setEmitEntityCertificate(true);
-        return x509KeyInfoGenerator.newInstance();
+        return x509KeyInfoGenerator.newInstance().generate(credential);
+    }
+
+    private Signature buildSignature() {
+        return SAMLObjectFactory.build(Signature.class);
+    }
+
+    private static final class SigningParameters {
+
+        private final String signatureAlgorithm;
+        private final String digestAlgorithm;
+        private final Element keyInfo;
+
+        private SigningParameters(String signatureAlgorithm, String digestAlgorithm, Element keyInfo) {
+            this.signatureAlgorithm = signatureAlgorithm;
+            this.digestAlgorithm = digestAlgorithm;
+            this.keyInfo = keyInfo;
+        }
+
+        private KeyInfo newKeyInfo() throws SecurityException {
+            try {
+                Document document = OpenSAMLConfiguration.getParserPool().newDocument();
+                Element clone;
+                synchronized (keyInfo) {
+                    clone = (Element) document.importNode(keyInfo, true);
+                }
+                document.appendChild(clone);
+                return SAMLObjectFactory.unmarshall(clone, KeyInfo.class);
+            } catch (XMLParserException | UnmarshallingException e) {
+                throw new SecurityException("Unable to clone KeyInfo", e);
+            }
+        }
     }
 }
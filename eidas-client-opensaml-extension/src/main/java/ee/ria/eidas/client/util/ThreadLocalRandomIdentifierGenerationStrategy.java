@@ -0,0 +1,105 @@
+package ee.ria.eidas.client.util;
+
+import ee.ria.eidas.client.exception.EidasClientException;
+import net.shibboleth.utilities.java.support.security.IdentifierGenerationStrategy;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Generates random identifiers in the same format as {@link net.shibboleth.utilities.java.support.security.RandomIdentifierGenerationStrategy}
+ * (hex encoded random bytes, prefixed with an underscore when XML safe), without sharing a single {@link SecureRandom}
+ * between threads.
+ * <p>
+ * Every thread has its own SHA1PRNG instance, seeded once from the non-blocking OS source, and reads the random bytes
+ * from a per-thread buffer that is refilled in batches. Seeding from the non-blocking source avoids stalls on entropy
+ * starved hosts, while the per-thread generators remove the lock contention on the shared instance.
+ */
+public class ThreadLocalRandomIdentifierGenerationStrategy implements IdentifierGenerationStrategy {
+
+    private static final int DEFAULT_IDENTIFIER_SIZE = 16;
+
+    private static final int SEED_SIZE = 32;
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final SecureRandom SEED_SOURCE = createSeedSource();
+
+    private final int identifierSize;
+
+    private final ThreadLocal<RandomBuffer> buffers = ThreadLocal.withInitial(RandomBuffer::new);
+
+    public ThreadLocalRandomIdentifierGenerationStrategy() {
+        this(DEFAULT_IDENTIFIER_SIZE);
+    }
+
+    /**
+     * @param identifierSize number of random bytes in the identifier
+     */
+    public ThreadLocalRandomIdentifierGenerationStrategy(int identifierSize) {
+        if (identifierSize < 16 || identifierSize > BUFFER_SIZE) {
+            throw new IllegalArgumentException("Identifier size must be between 16 and " + BUFFER_SIZE + " bytes");
+        }
+        this.identifierSize = identifierSize;
+    }
+
+    @Override
+    public String generateIdentifier() {
+        return generateIdentifier(true);
+    }
+
+    @Override
+    public String generateIdentifier(boolean xmlSafe) {
+        int offset = xmlSafe ? 1 : 0;
+        char[] identifier = new char[offset + identifierSize * 2];
+        if (xmlSafe) {
+            identifier[0] = '_';
+        }
+        buffers.get().encodeHex(identifierSize, identifier, offset);
+        return new String(identifier);
+    }
+
+    private static SecureRandom createSeedSource() {
+        try {
+            return SecureRandom.getInstance("NativePRNGNonBlocking");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    private static SecureRandom createGenerator() {
+        try {
+            SecureRandom generator = SecureRandom.getInstance("SHA1PRNG");
+            byte[] seed = new byte[SEED_SIZE];
+            SEED_SOURCE.nextBytes(seed);
+            generator.setSeed(seed);
+            return generator;
+        } catch (NoSuchAlgorithmException e) {
+            throw new EidasClientException("Unable to initialize secure random generator", e);
+        }
+    }
+
+    private static final class RandomBuffer {
+
+        private final SecureRandom generator = createGenerator();
+
+        private final byte[] bytes = new byte[BUFFER_SIZE];
+
+        private int position = BUFFER_SIZE;
+
+        private void encodeHex(int length, char[] target, int offset) {
+            if (BUFFER_SIZE - position < length) {
+                generator.nextBytes(bytes);
+                position = 0;
+            }
+            for (int i = 0; i < length; i++) {
+                int b = bytes[position] & 0xff;
+                bytes[position++] = 0;
+                target[offset++] = HEX[b >>> 4];
+                target[offset++] = HEX[b & 0x0f];
+            }
+        }
+    }
+}
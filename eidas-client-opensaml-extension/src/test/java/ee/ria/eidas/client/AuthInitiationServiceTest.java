@@ -50,6 +50,7 @@ import java.util.stream.Collectors;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.verify;
 
@@ -141,6 +142,39 @@ public class AuthInitiationServiceTest {
         authenticationService.authenticate(httpResponse, "EE", AssuranceLevel.LOW, "ä", null);
     }
 
+    @Test
+    public void relayStateWithMaximumLength_isAccepted() {
+        MockHttpServletResponse httpResponse = new MockHttpServletResponse();
+        authenticationService.authenticate(httpResponse, "EE", AssuranceLevel.LOW, repeat('a', 78) + "-_", null);
+        assertEquals(HttpStatus.OK.value(), httpResponse.getStatus());
+    }
+
+    @Test(expected = EidasClientException.class)
+    public void tooLongRelayState_throwsException() {
+        MockHttpServletResponse httpResponse = new MockHttpServletResponse();
+        authenticationService.authenticate(httpResponse, "EE", AssuranceLevel.LOW, repeat('a', 81), null);
+    }
+
+    @Test
+    public void trailingSpacesInAttributes_areIgnored() throws Exception {
+        MockHttpServletResponse httpResponse = new MockHttpServletResponse();
+        authenticationService.authenticate(httpResponse, "EE", AssuranceLevel.LOW, "test", "legalpersonidentifier LegalName  ");
+
+        assertEquals(HttpStatus.OK.value(), httpResponse.getStatus());
+        assertRequestedAttributesInSamlRequest(httpResponse.getContentAsString(), Arrays.asList(EidasAttribute.LEGAL_PERSON_IDENTIFIER, EidasAttribute.LEGAL_NAME));
+    }
+
+    @Test
+    public void emptyAttributeValue_throwsException() {
+        MockHttpServletResponse httpResponse = new MockHttpServletResponse();
+        try {
+            authenticationService.authenticate(httpResponse, "EE", AssuranceLevel.LOW, "test", "LegalPersonIdentifier  LegalName");
+            fail("Expected exception was not thrown");
+        } catch (EidasClientException e) {
+            assertTrue(e.getMessage().startsWith("Found one or more invalid Attributes value(s). Valid values are: [PersonIdentifier, FamilyName, "));
+        }
+    }
+
     @Test(expected = EidasClientException.class)
     public void invalidCountry_throwsException() {
         MockHttpServletResponse httpResponse = new MockHttpServletResponse();
@@ -164,6 +198,12 @@ public class AuthInitiationServiceTest {
         }
     }
 
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
     private String parseSamlRequest(String responseContent) {
         int samlRequestStartIndex = responseContent.indexOf("SAMLRequest\" value=\"") + 20;
         int samlRequestEndIndex = responseContent.indexOf("\"", samlRequestStartIndex);
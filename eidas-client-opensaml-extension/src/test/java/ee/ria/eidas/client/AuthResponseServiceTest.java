@@ -48,6 +48,8 @@ import org.springframework.web.bind.MissingServletRequestParameterException;
 
 import javax.xml.validation.Schema;
 import java.security.KeyStore;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
@@ -255,6 +257,17 @@ public class AuthResponseServiceTest {
         fail("Should not reach this!");
     }
 
+    @Test
+    public void whenClockIsPastAuthenticationLifetime_thenRequestSessionHasExpired() throws Exception {
+        expectedEx.expect(InvalidRequestException.class);
+        expectedEx.expectMessage("Invalid SAMLResponse. Request session with ID " + ResponseBuilder.DEFAULT_IN_RESPONSE_TO + " has expired!");
+
+        Duration offset = Duration.ofSeconds(properties.getMaximumAuthenticationLifetime() + properties.getAcceptedClockSkew() + 1);
+        authResponseService = new AuthResponseService(requestSessionService, properties, idpMetadataResolver, responseAssertionDecryptionCredential, samlSchema, Clock.offset(Clock.systemUTC(), offset));
+        httpRequest = buildMockHttpServletRequest("SAMLResponse", mockResponseBuilder.buildResponse("classpath:idp-metadata.xml"));
+        authResponseService.getAuthenticationResult(httpRequest);
+    }
+
     @Test
     public void whenResponseIssueInstantIsInTheFuture_thenExceptionIsThrown() throws Exception {
         expectedEx.expect(InvalidRequestException.class);
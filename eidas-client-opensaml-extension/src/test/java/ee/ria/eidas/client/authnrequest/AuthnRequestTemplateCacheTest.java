@@ -0,0 +1,128 @@
+package ee.ria.eidas.client.authnrequest;
+
+import ee.ria.eidas.client.config.EidasClientConfiguration;
+import ee.ria.eidas.client.config.EidasClientProperties;
+import ee.ria.eidas.client.metadata.IDPMetadataResolver;
+import ee.ria.eidas.client.util.OpenSAMLUtils;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.signature.support.SignatureValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = EidasClientConfiguration.class)
+@TestPropertySource(locations = "classpath:application-test.properties")
+public class AuthnRequestTemplateCacheTest {
+
+    private static final String REQUEST_ID = "_a5ea7e4d1d9a4f6ea3a7ec1c6ea00000";
+    private static final DateTime ISSUE_INSTANT = new DateTime(1577880000000L);
+    private static final String DESTINATION = "https://localhost/EidasNode/ServiceProvider";
+
+    @Autowired
+    private EidasClientProperties properties;
+
+    @Autowired
+    private Credential authnReqSigningCredential;
+
+    @Autowired
+    private IDPMetadataResolver idpMetadataResolver;
+
+    private AuthnRequestTemplateCache templateCache;
+
+    private AuthnRequestBuilder requestBuilder;
+
+    @Before
+    public void setUp() {
+        templateCache = new AuthnRequestTemplateCache(properties);
+        requestBuilder = new AuthnRequestBuilder(authnReqSigningCredential, properties, idpMetadataResolver.getSingeSignOnService(), templateCache);
+    }
+
+    @Test
+    public void templateMatchesBuilderOutput() {
+        assertTemplateMatchesBuilderOutput(AssuranceLevel.SUBSTANTIAL, Arrays.asList(EidasAttribute.CURRENT_GIVEN_NAME, EidasAttribute.CURRENT_FAMILY_NAME, EidasAttribute.GENDER));
+        assertTemplateMatchesBuilderOutput(AssuranceLevel.HIGH, Arrays.asList(EidasAttribute.values()));
+        assertTemplateMatchesBuilderOutput(AssuranceLevel.LOW, Collections.emptyList());
+        assertTemplateMatchesBuilderOutput(null, Collections.singletonList(EidasAttribute.PERSON_IDENTIFIER));
+    }
+
+    @Test
+    public void templateMatchesBuilderOutputForEveryAttributeOrder() {
+        assertTemplateMatchesBuilderOutput(AssuranceLevel.SUBSTANTIAL, Arrays.asList(EidasAttribute.CURRENT_FAMILY_NAME, EidasAttribute.CURRENT_GIVEN_NAME));
+        assertTemplateMatchesBuilderOutput(AssuranceLevel.SUBSTANTIAL, Arrays.asList(EidasAttribute.CURRENT_GIVEN_NAME, EidasAttribute.CURRENT_FAMILY_NAME));
+        assertEquals(2, templateCache.size());
+    }
+
+    @Test
+    public void templateIsReusedPerLoaAndAttributes() {
+        List<EidasAttribute> attributes = Arrays.asList(EidasAttribute.CURRENT_GIVEN_NAME, EidasAttribute.CURRENT_FAMILY_NAME);
+        templateCache.newAuthnRequest(AssuranceLevel.SUBSTANTIAL, attributes, requestBuilder::buildUnsignedAuthnRequest);
+        templateCache.newAuthnRequest(AssuranceLevel.SUBSTANTIAL, attributes, (loa, eidasAttributes) -> {
+            throw new AssertionError("Template should be reused");
+        });
+        assertEquals(1, templateCache.size());
+
+        templateCache.newAuthnRequest(AssuranceLevel.HIGH, attributes, requestBuilder::buildUnsignedAuthnRequest);
+        templateCache.newAuthnRequest(AssuranceLevel.SUBSTANTIAL, Collections.singletonList(EidasAttribute.CURRENT_GIVEN_NAME), requestBuilder::buildUnsignedAuthnRequest);
+        assertEquals(3, templateCache.size());
+
+        templateCache.invalidate();
+        assertEquals(0, templateCache.size());
+    }
+
+    @Test
+    public void templatesAreClearedWhenPropertiesChange() {
+        String providerName = properties.getProviderName();
+        try {
+            templateCache.newAuthnRequest(AssuranceLevel.SUBSTANTIAL, Collections.emptyList(), requestBuilder::buildUnsignedAuthnRequest);
+            properties.setProviderName(providerName + "-changed");
+            AuthnRequest authnRequest = templateCache.newAuthnRequest(AssuranceLevel.SUBSTANTIAL, Collections.emptyList(), requestBuilder::buildUnsignedAuthnRequest);
+            assertEquals(providerName + "-changed", authnRequest.getProviderName());
+            assertEquals(1, templateCache.size());
+        } finally {
+            properties.setProviderName(providerName);
+        }
+    }
+
+    @Test
+    public void signedRequestFromTemplateIsValid() throws Exception {
+        List<EidasAttribute> attributes = Arrays.asList(EidasAttribute.CURRENT_GIVEN_NAME, EidasAttribute.CURRENT_FAMILY_NAME);
+        AuthnRequest first = requestBuilder.buildAuthnRequest(AssuranceLevel.SUBSTANTIAL, attributes);
+        AuthnRequest second = requestBuilder.buildAuthnRequest(AssuranceLevel.SUBSTANTIAL, attributes);
+
+        assertNotEquals(first.getID(), second.getID());
+        assertEquals(idpMetadataResolver.getSingeSignOnService().getLocation(), second.getDestination());
+        SignatureValidator.validate(first.getSignature(), authnReqSigningCredential);
+        SignatureValidator.validate(second.getSignature(), authnReqSigningCredential);
+    }
+
+    private void assertTemplateMatchesBuilderOutput(AssuranceLevel loa, List<EidasAttribute> attributes) {
+        AuthnRequest expected = requestBuilder.buildUnsignedAuthnRequest(loa, attributes);
+        setRequestSpecificValues(expected);
+
+        templateCache.newAuthnRequest(loa, attributes, requestBuilder::buildUnsignedAuthnRequest);
+        AuthnRequest actual = templateCache.newAuthnRequest(loa, attributes, requestBuilder::buildUnsignedAuthnRequest);
+        setRequestSpecificValues(actual);
+
+        assertEquals(OpenSAMLUtils.getXmlString(expected), OpenSAMLUtils.getXmlString(actual));
+    }
+
+    private void setRequestSpecificValues(AuthnRequest authnRequest) {
+        authnRequest.setID(REQUEST_ID);
+        authnRequest.setIssueInstant(ISSUE_INSTANT);
+        authnRequest.setDestination(DESTINATION);
+    }
+}
@@ -0,0 +1,89 @@
+package ee.ria.eidas.client.authnrequest;
+
+import ee.ria.eidas.client.util.SerializationUtils;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EidasAttributeSetTest {
+
+    @Test
+    public void iteratesInInsertionOrderWithoutDuplicates() {
+        EidasAttributeSet set = EidasAttributeSet.of(EidasAttribute.LEI, EidasAttribute.CURRENT_GIVEN_NAME, EidasAttribute.LEI, EidasAttribute.PERSON_IDENTIFIER);
+
+        assertEquals(Arrays.asList(EidasAttribute.LEI, EidasAttribute.CURRENT_GIVEN_NAME, EidasAttribute.PERSON_IDENTIFIER), set.toList());
+        assertEquals(3, set.size());
+        assertEquals("[LEI, CURRENT_GIVEN_NAME, PERSON_IDENTIFIER]", set.toString());
+    }
+
+    @Test
+    public void iteratesInOrdinalOrderWhenAddedInOrdinalOrder() {
+        EidasAttributeSet set = EidasAttributeSet.copyOf(Arrays.asList(EidasAttribute.values()));
+
+        assertEquals(Arrays.asList(EidasAttribute.values()), set.toList());
+    }
+
+    @Test
+    public void equalsInOrderComparesIterationOrder() {
+        EidasAttributeSet set = EidasAttributeSet.of(EidasAttribute.LEGAL_NAME, EidasAttribute.GENDER);
+
+        assertTrue(set.equalsInOrder(EidasAttributeSet.of(EidasAttribute.LEGAL_NAME, EidasAttribute.GENDER)));
+        assertFalse(set.equalsInOrder(EidasAttributeSet.of(EidasAttribute.GENDER, EidasAttribute.LEGAL_NAME)));
+        assertFalse(set.equalsInOrder(EidasAttributeSet.of(EidasAttribute.GENDER)));
+    }
+
+    @Test
+    public void equalityIgnoresOrder() {
+        EidasAttributeSet set = EidasAttributeSet.of(EidasAttribute.LEGAL_NAME, EidasAttribute.GENDER);
+        EidasAttributeSet reversed = EidasAttributeSet.of(EidasAttribute.GENDER, EidasAttribute.LEGAL_NAME);
+
+        assertEquals(set, reversed);
+        assertEquals(set.hashCode(), reversed.hashCode());
+        assertNotEquals(set, EidasAttributeSet.of(EidasAttribute.GENDER));
+    }
+
+    @Test
+    public void containsAndContainsAll() {
+        EidasAttributeSet set = EidasAttributeSet.of(EidasAttribute.LEGAL_NAME, EidasAttribute.GENDER);
+
+        assertTrue(set.contains(EidasAttribute.GENDER));
+        assertFalse(set.contains(EidasAttribute.SIC));
+        assertFalse(set.contains(null));
+        assertTrue(set.containsAll(EidasAttributeSet.of(EidasAttribute.GENDER)));
+        assertTrue(set.containsAll(EidasAttributeSet.EMPTY));
+        assertFalse(set.containsAll(EidasAttributeSet.of(EidasAttribute.GENDER, EidasAttribute.SIC)));
+    }
+
+    @Test
+    public void requiredAndMinusKeepIterationOrder() {
+        EidasAttributeSet set = EidasAttributeSet.of(EidasAttribute.LEGAL_NAME, EidasAttribute.GENDER, EidasAttribute.CURRENT_FAMILY_NAME, EidasAttribute.PERSON_IDENTIFIER);
+
+        assertEquals(Arrays.asList(EidasAttribute.LEGAL_NAME, EidasAttribute.CURRENT_FAMILY_NAME, EidasAttribute.PERSON_IDENTIFIER), set.required().toList());
+        assertEquals(Arrays.asList(EidasAttribute.LEGAL_NAME, EidasAttribute.PERSON_IDENTIFIER), set.required().minus(EidasAttributeSet.of(EidasAttribute.CURRENT_FAMILY_NAME)).toList());
+        assertSame(set, set.minus(EidasAttributeSet.EMPTY));
+        assertTrue(set.minus(set).isEmpty());
+    }
+
+    @Test
+    public void copyOfNullOrEmptyCollectionIsEmpty() {
+        assertSame(EidasAttributeSet.EMPTY, EidasAttributeSet.copyOf(null));
+        assertSame(EidasAttributeSet.EMPTY, EidasAttributeSet.copyOf(Collections.emptyList()));
+    }
+
+    @Test
+    public void survivesSerialization() {
+        EidasAttributeSet set = EidasAttributeSet.of(EidasAttribute.LEI, EidasAttribute.CURRENT_GIVEN_NAME);
+
+        EidasAttributeSet deserialized = SerializationUtils.deserialize(SerializationUtils.serialize(set));
+
+        assertEquals(set, deserialized);
+        assertEquals(set.toList(), deserialized.toList());
+    }
+}
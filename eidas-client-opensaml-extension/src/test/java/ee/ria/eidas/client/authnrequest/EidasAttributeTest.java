@@ -0,0 +1,48 @@
+package ee.ria.eidas.client.authnrequest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class EidasAttributeTest {
+
+    @Test
+    public void fromStringFindsEveryAttributeIgnoringCase() {
+        for (EidasAttribute attribute : EidasAttribute.values()) {
+            assertSame(attribute, EidasAttribute.fromString(attribute.getFriendlyName()));
+            assertSame(attribute, EidasAttribute.fromString(attribute.getFriendlyName().toUpperCase()));
+            assertSame(attribute, EidasAttribute.fromString(attribute.getFriendlyName().toLowerCase()));
+        }
+    }
+
+    @Test
+    public void fromFriendlyNameMatchesRegionOfString() {
+        String attributes = "FirstName legalname D-2012-17-EUIdentifier";
+        assertSame(EidasAttribute.CURRENT_GIVEN_NAME, EidasAttribute.fromFriendlyName(attributes, 0, 9));
+        assertSame(EidasAttribute.LEGAL_NAME, EidasAttribute.fromFriendlyName(attributes, 10, 19));
+        assertSame(EidasAttribute.D_2012_17_EUIdentifier, EidasAttribute.fromFriendlyName(attributes, 20, attributes.length()));
+    }
+
+    @Test
+    public void fromFriendlyNameReturnsNullForUnknownName() {
+        assertNull(EidasAttribute.fromFriendlyName("FirstNam", 0, 8));
+        assertNull(EidasAttribute.fromFriendlyName("FirstNames", 0, 10));
+        assertNull(EidasAttribute.fromFriendlyName("", 0, 0));
+    }
+
+    @Test
+    public void fromFriendlyNameMatchesNonAsciiCaseVariants() {
+        assertSame(EidasAttribute.PERSON_IDENTIFIER, EidasAttribute.fromFriendlyName("PersonIdentıfier", 0, 16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromStringThrowsExceptionForUnknownName() {
+        EidasAttribute.fromString("Unknown");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromStringThrowsExceptionForNull() {
+        EidasAttribute.fromString(null);
+    }
+}
@@ -0,0 +1,173 @@
+package ee.ria.eidas.client.authnrequest;
+
+import ee.ria.eidas.client.config.EidasClientProperties;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PresignedAuthnRequestPoolTest {
+
+    private static final String DESTINATION = "https://localhost/EidasNode/ServiceProvider";
+
+    private static final List<EidasAttribute> ATTRIBUTES = Arrays.asList(EidasAttribute.CURRENT_GIVEN_NAME, EidasAttribute.CURRENT_FAMILY_NAME);
+
+    private EidasClientProperties properties;
+
+    private AtomicInteger producedRequests;
+
+    private AtomicReference<DateTime> issueInstant;
+
+    private PresignedAuthnRequestPool pool;
+
+    @Before
+    public void setUp() {
+        properties = new EidasClientProperties();
+        properties.setAuthnRequestPoolSize(3);
+        properties.setAuthnRequestPoolMaxAge(5);
+        properties.setAcceptedClockSkew(10);
+        producedRequests = new AtomicInteger();
+        issueInstant = new AtomicReference<>(DateTime.now());
+        pool = new PresignedAuthnRequestPool(properties, (loa, attributes) -> {
+            producedRequests.incrementAndGet();
+            return mockAuthnRequest(issueInstant.get(), DESTINATION);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void takeReturnsNullAndRegistersDemandWhenPoolIsEmpty() {
+        assertNull(pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION));
+        assertNull(pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION));
+
+        pool.refill();
+        assertEquals(2, pool.size(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES));
+        assertEquals(2, producedRequests.get());
+    }
+
+    @Test
+    public void poolSizeIsCappedByConfiguredSize() {
+        for (int i = 0; i < 5; i++) {
+            pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION);
+        }
+
+        pool.refill();
+        assertEquals(3, pool.size(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES));
+        assertEquals(3, producedRequests.get());
+    }
+
+    @Test
+    public void takeReturnsPooledRequest() {
+        pool.take(null, ATTRIBUTES, DESTINATION);
+        pool.take(null, ATTRIBUTES, DESTINATION);
+        pool.refill();
+
+        assertNotNull(pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION));
+        assertEquals(1, pool.size(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES));
+        assertNull(pool.take(AssuranceLevel.HIGH, ATTRIBUTES, DESTINATION));
+    }
+
+    @Test
+    public void idleKeysStopBeingResigned() {
+        issueInstant.set(DateTime.now().minusSeconds(6));
+        for (int i = 0; i < 3; i++) {
+            pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION);
+        }
+        for (int i = 0; i < 5; i++) {
+            pool.refill();
+        }
+        int produced = producedRequests.get();
+
+        for (int i = 0; i < 20; i++) {
+            pool.refill();
+        }
+        assertEquals(produced, producedRequests.get());
+        assertEquals(0, pool.size(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES));
+    }
+
+    @Test
+    public void poolIsDisabledWhenUsableLifetimeIsTooShort() {
+        properties.setAcceptedClockSkew(1);
+        assertFalse(pool.isUsable());
+
+        assertNull(pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION));
+        pool.refill();
+        assertEquals(0, producedRequests.get());
+
+        properties.setAcceptedClockSkew(0);
+        assertFalse(pool.isUsable());
+    }
+
+    @Test
+    public void takeDiscardsStaleRequests() {
+        issueInstant.set(DateTime.now().minusSeconds(6));
+        pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION);
+        pool.refill();
+
+        assertNull(pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION));
+        assertEquals(0, pool.size(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES));
+    }
+
+    @Test
+    public void takeDiscardsRequestsWithDifferentDestination() {
+        pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION);
+        pool.refill();
+
+        assertNull(pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, "https://localhost/other"));
+        assertEquals(0, pool.size(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES));
+    }
+
+    @Test
+    public void maxAgeIsCappedByAcceptedClockSkew() {
+        assertEquals(5000, pool.getMaxAgeMillis());
+        properties.setAcceptedClockSkew(2);
+        assertEquals(2000, pool.getMaxAgeMillis());
+    }
+
+    @Test
+    public void flushDiscardsPooledRequests() {
+        pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION);
+        pool.refill();
+        pool.flush();
+
+        assertEquals(0, pool.size(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES));
+    }
+
+    @Test
+    public void flushAppliesChangeAndDiscardsRequestsProducedBeforeIt() {
+        pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION);
+        pool.refill();
+        DateTime changedIssueInstant = DateTime.now().plusMillis(1);
+
+        pool.flush(() -> issueInstant.set(changedIssueInstant));
+        assertEquals(0, pool.size(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES));
+
+        pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION);
+        pool.refill();
+        assertEquals(changedIssueInstant, pool.take(AssuranceLevel.SUBSTANTIAL, ATTRIBUTES, DESTINATION).getIssueInstant());
+    }
+
+    private static AuthnRequest mockAuthnRequest(DateTime issueInstant, String destination) {
+        AuthnRequest authnRequest = mock(AuthnRequest.class);
+        when(authnRequest.getIssueInstant()).thenReturn(issueInstant);
+        when(authnRequest.getDestination()).thenReturn(destination);
+        return authnRequest;
+    }
+}
@@ -0,0 +1,86 @@
+package ee.ria.eidas.client.config;
+
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import javax.xml.parsers.DocumentBuilder;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class InstrumentedParserPoolTest {
+
+    @AfterClass
+    public static void restoreParserPool() {
+        OpenSAMLConfiguration.configureParserPool(OpenSAMLConfiguration.DEFAULT_PARSER_POOL_MAX_SIZE, 0);
+    }
+
+    @Test
+    public void prewarmedBuildersAreReusedWithoutMisses() throws Exception {
+        InstrumentedParserPool parserPool = OpenSAMLConfiguration.configureParserPool(5, 3);
+
+        parse(parserPool, "<a/>");
+        parse(parserPool, "<b/>");
+
+        Map<String, Object> statistics = parserPool.getStatistics();
+        assertEquals(5, statistics.get("maxPoolSize"));
+        assertEquals(3, statistics.get("prewarmed"));
+        assertEquals(2L, statistics.get("borrowed"));
+        assertEquals(0L, statistics.get("misses"));
+        assertEquals(3L, statistics.get("created"));
+        assertEquals(0, statistics.get("inUse"));
+    }
+
+    @Test
+    public void prewarmIsLimitedByMaxPoolSize() {
+        InstrumentedParserPool parserPool = OpenSAMLConfiguration.configureParserPool(2, 10);
+
+        assertEquals(2, parserPool.getStatistics().get("prewarmed"));
+        assertEquals(parserPool, OpenSAMLConfiguration.getParserPool());
+    }
+
+    @Test
+    public void builderIsDiscarded_whenParsingFails() throws Exception {
+        InstrumentedParserPool parserPool = OpenSAMLConfiguration.configureParserPool(1, 1);
+
+        try {
+            parse(parserPool, "<a>");
+            fail("Expected XMLParserException");
+        } catch (XMLParserException e) {
+            // expected
+        }
+        parse(parserPool, "<a/>");
+
+        Map<String, Object> statistics = parserPool.getStatistics();
+        assertEquals(1L, statistics.get("discardedAfterError"));
+        assertEquals(1L, statistics.get("misses"));
+        assertEquals(0, statistics.get("inUse"));
+    }
+
+    @Test
+    public void inUseIsNotDecremented_whenBuilderIsReturnedTwiceOrToAnotherPool() throws Exception {
+        InstrumentedParserPool otherPool = OpenSAMLConfiguration.configureParserPool(2, 0);
+        InstrumentedParserPool parserPool = OpenSAMLConfiguration.configureParserPool(2, 0);
+        DocumentBuilder builder = parserPool.getBuilder();
+        DocumentBuilder otherBuilder = parserPool.getBuilder();
+
+        otherPool.returnBuilder(builder);
+        assertEquals(0, otherPool.getStatistics().get("inUse"));
+        assertEquals(2, parserPool.getStatistics().get("inUse"));
+
+        parserPool.returnBuilder(builder);
+        parserPool.returnBuilder(builder);
+        assertEquals(1, parserPool.getStatistics().get("inUse"));
+
+        parserPool.returnBuilder(otherBuilder);
+        assertEquals(0, parserPool.getStatistics().get("inUse"));
+    }
+
+    private static void parse(InstrumentedParserPool parserPool, String xml) throws XMLParserException {
+        parserPool.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
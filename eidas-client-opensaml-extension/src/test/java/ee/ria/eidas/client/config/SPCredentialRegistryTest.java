@@ -0,0 +1,204 @@
+package ee.ria.eidas.client.config;
+
+import ee.ria.eidas.client.exception.EidasClientException;
+import ee.ria.eidas.client.fixtures.ResponseBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.opensaml.saml.saml2.core.EncryptedAssertion;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.encryption.support.DecryptionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = EidasClientConfiguration.class)
+@TestPropertySource(locations = "classpath:application-test.properties")
+public class SPCredentialRegistryTest {
+
+    private static final String PASSWORD = "changeit";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Autowired
+    private EidasClientProperties eidasClientProperties;
+
+    @Autowired
+    private KeyStore samlKeystore;
+
+    @Autowired
+    @Qualifier("metadataSigningCredential")
+    private Credential signingCredential;
+
+    private EidasClientProperties properties;
+
+    private File keystoreFile;
+
+    private MutableClock clock;
+
+    private SPCredentialRegistry registry;
+
+    private List<SPCredentials> published;
+
+    @Before
+    public void setUp() throws Exception {
+        keystoreFile = temporaryFolder.newFile("samlKeystore.jks");
+        store(samlKeystore);
+
+        properties = new EidasClientProperties();
+        properties.setKeystore("file:" + keystoreFile.getAbsolutePath());
+        properties.setKeystorePass(PASSWORD);
+        properties.setMetadataSigningKeyId(eidasClientProperties.getMetadataSigningKeyId());
+        properties.setMetadataSigningKeyPass(eidasClientProperties.getMetadataSigningKeyPass());
+        properties.setRequestSigningKeyId(eidasClientProperties.getRequestSigningKeyId());
+        properties.setRequestSigningKeyPass(eidasClientProperties.getRequestSigningKeyPass());
+        properties.setRequestSignatureAlgorithm(eidasClientProperties.getRequestSignatureAlgorithm());
+        properties.setResponseDecryptionKeyId(eidasClientProperties.getResponseDecryptionKeyId());
+        properties.setResponseDecryptionKeyPass(eidasClientProperties.getResponseDecryptionKeyPass());
+
+        clock = new MutableClock(Instant.parse("2021-03-01T09:30:00Z"));
+        registry = new SPCredentialRegistry(properties, new DefaultResourceLoader(), samlKeystore, clock);
+        published = new ArrayList<>();
+        registry.addListener(published::add);
+    }
+
+    @Test
+    public void reloadWithUnchangedKeystore_keepsCurrentCredentials() {
+        SPCredentials credentials = registry.getCurrent();
+
+        assertFalse(registry.reload());
+
+        assertSame(credentials, registry.getCurrent());
+        assertTrue(published.isEmpty());
+    }
+
+    @Test
+    public void rotatedDecryptionKey_isPublishedAndPreviousKeyIsAcceptedDuringOverlap() throws Exception {
+        SPCredentials initial = registry.getCurrent();
+        rotateResponseDecryptionKey();
+
+        assertTrue(registry.reload());
+
+        SPCredentials rotated = registry.getCurrent();
+        assertEquals(1, published.size());
+        assertSame(rotated, published.get(0));
+        assertSame(initial.getMetadataSigningCredential(), rotated.getMetadataSigningCredential());
+        assertSame(initial.getAuthnRequestSigner(), rotated.getAuthnRequestSigner());
+        assertFalse(initial.getResponseDecryptionCredential().getPublicKey().equals(rotated.getResponseDecryptionCredential().getPublicKey()));
+        assertSame(initial.getResponseDecryptionCredential(), rotated.getPreviousResponseDecryptionCredential());
+        assertEquals(clock.instant().plusSeconds(900), rotated.getPreviousResponseDecryptionCredentialExpiry());
+
+        rotated.getAssertionDecrypter().decrypt(encryptFor(rotated.getResponseDecryptionCredential()));
+        rotated.getAssertionDecrypter().decrypt(encryptFor(initial.getResponseDecryptionCredential()));
+    }
+
+    @Test
+    public void previousDecryptionKey_isRejectedAfterOverlap() throws Exception {
+        SPCredentials initial = registry.getCurrent();
+        rotateResponseDecryptionKey();
+        registry.reload();
+
+        registry.expirePreviousDecryptionCredential();
+        assertEquals(1, published.size());
+
+        clock.instant = clock.instant.plusSeconds(900);
+        registry.expirePreviousDecryptionCredential();
+
+        SPCredentials expired = registry.getCurrent();
+        assertEquals(2, published.size());
+        assertNull(expired.getPreviousResponseDecryptionCredential());
+        assertNull(expired.getPreviousResponseDecryptionCredentialExpiry());
+        try {
+            expired.getAssertionDecrypter().decrypt(encryptFor(initial.getResponseDecryptionCredential()));
+            fail("Expected DecryptionException");
+        } catch (DecryptionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void invalidKeystore_keepsCurrentCredentials() throws Exception {
+        SPCredentials credentials = registry.getCurrent();
+        Files.write(keystoreFile.toPath(), new byte[]{1, 2, 3});
+
+        try {
+            registry.reload();
+            fail("Expected EidasClientException");
+        } catch (EidasClientException e) {
+            assertEquals("Something went wrong reading the keystore", e.getMessage());
+        }
+
+        assertSame(credentials, registry.getCurrent());
+        assertTrue(published.isEmpty());
+    }
+
+    private void rotateResponseDecryptionKey() throws Exception {
+        KeyStore keystore = SPCredentialRegistry.loadKeystore(new DefaultResourceLoader(), properties);
+        Key key = keystore.getKey("stork", PASSWORD.toCharArray());
+        Certificate[] chain = keystore.getCertificateChain("stork");
+        keystore.setKeyEntry(properties.getResponseDecryptionKeyId(), key, properties.getResponseDecryptionKeyPass().toCharArray(), chain);
+        store(keystore);
+    }
+
+    private void store(KeyStore keystore) throws Exception {
+        try (OutputStream outputStream = new FileOutputStream(keystoreFile)) {
+            keystore.store(outputStream, PASSWORD.toCharArray());
+        }
+    }
+
+    private EncryptedAssertion encryptFor(Credential encryptionCredential) {
+        return new ResponseBuilder(signingCredential, encryptionCredential).buildResponse("issuer").getEncryptedAssertions().get(0);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
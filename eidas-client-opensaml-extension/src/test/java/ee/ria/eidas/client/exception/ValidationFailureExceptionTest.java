@@ -0,0 +1,36 @@
+package ee.ria.eidas.client.exception;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ValidationFailureExceptionTest {
+
+    @Test
+    public void failuresWithFixedMessageArePreallocated() {
+        ValidationFailureException exception = ValidationFailureException.of(ErrorCode.RESPONSE_NOT_SIGNED);
+
+        assertSame(exception, ValidationFailureException.of(ErrorCode.RESPONSE_NOT_SIGNED));
+        assertEquals(ErrorCode.RESPONSE_NOT_SIGNED, exception.getErrorCode());
+        assertEquals("Invalid SAMLResponse. Response not signed.", exception.getMessage());
+    }
+
+    @Test
+    public void failuresHaveNoStackTraceOrCause() {
+        ValidationFailureException exception = new ValidationFailureException(ErrorCode.REQUEST_SESSION_EXPIRED, "Request session with ID _1 has expired!");
+
+        assertEquals(0, exception.getStackTrace().length);
+        assertNull(exception.getCause());
+        assertEquals("Invalid SAMLResponse. Request session with ID _1 has expired!", exception.getMessage());
+
+        exception.addSuppressed(new IllegalStateException());
+        assertEquals(0, exception.getSuppressed().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failuresWithoutFixedMessageAreNotPreallocated() {
+        ValidationFailureException.of(ErrorCode.ASSERTION_MANDATORY_ATTRIBUTES_MISSING);
+    }
+}
@@ -144,9 +144,13 @@ public class ResponseBuilder {
         return status;
     }
 
-    private EncryptedAssertion buildAssertion(DateTime issueInstant, String issuer, Map<InputType, Optional<Object>> inputMap) throws Exception {
+    public Assertion buildAssertion(String issuer, Map<InputType, Optional<Object>> inputMap) {
+        DateTime issueInstant = getInput(inputMap, InputType.ISSUE_INSTANT, () -> new DateTime());
+        return buildUnsignedAssertion(issueInstant, issuer, inputMap);
+    }
+
+    private Assertion buildUnsignedAssertion(DateTime issueInstant, String issuer, Map<InputType, Optional<Object>> inputMap) {
         AttributeStatement attributeStatement = getInput(inputMap, InputType.ATTRIBUTE_STATEMENT, () -> buildAttributeStatement());
-        Signature signature = createSignature();
 
         Assertion assertion = new AssertionBuilder().buildObject();
         assertion.setIssueInstant(issueInstant);
@@ -157,6 +161,13 @@ public class ResponseBuilder {
         assertion.setConditions(buildConditions(issueInstant, inputMap));
         assertion.getAuthnStatements().add(buildAuthnStatement(issueInstant, inputMap));
         if (attributeStatement != null) assertion.getAttributeStatements().add(attributeStatement);
+        return assertion;
+    }
+
+    private EncryptedAssertion buildAssertion(DateTime issueInstant, String issuer, Map<InputType, Optional<Object>> inputMap) throws Exception {
+        Signature signature = createSignature();
+
+        Assertion assertion = buildUnsignedAssertion(issueInstant, issuer, inputMap);
         assertion.setSignature(signature);
 
         XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(assertion).marshall(assertion);
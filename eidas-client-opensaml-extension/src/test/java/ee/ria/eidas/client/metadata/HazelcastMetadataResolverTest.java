@@ -0,0 +1,104 @@
+package ee.ria.eidas.client.metadata;
+
+import ee.ria.eidas.client.config.EidasClientConfiguration;
+import ee.ria.eidas.client.config.OpenSAMLConfiguration;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.opensaml.saml.metadata.resolver.filter.impl.SignatureValidationFilter;
+import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.StreamUtils;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+@TestPropertySource(locations = "classpath:application-test.properties")
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = EidasClientConfiguration.class)
+public class HazelcastMetadataResolverTest {
+
+    private static final String URL = "http://localhost:7771/EidasNode/ConnectorResponderMetadata";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Autowired
+    private ExplicitKeySignatureTrustEngine idpMetadataSignatureTrustEngine;
+
+    private final HazelcastIDPMetadataCoordinator coordinator = Mockito.mock(HazelcastIDPMetadataCoordinator.class);
+
+    private HazelcastMetadataResolver resolver;
+
+    @After
+    public void tearDown() {
+        if (resolver != null) {
+            resolver.destroy();
+        }
+    }
+
+    @Test
+    public void versionFailingValidationIsNotMarkedAsLoaded() throws Exception {
+        Mockito.when(coordinator.getDocument()).thenReturn(new IDPMetadataDocument(1, read("idp-metadata-invalid_signature.xml"), null, null));
+        resolver = initialize(null);
+        Assert.assertEquals(0, resolver.getCurrentVersion());
+
+        refresh();
+        Assert.assertEquals(0, resolver.getCurrentVersion());
+
+        Mockito.when(coordinator.getDocument()).thenReturn(new IDPMetadataDocument(2, read("idp-metadata.xml"), null, null));
+        refresh();
+        Assert.assertEquals(2, resolver.getCurrentVersion());
+    }
+
+    @Test
+    public void backupFileIsUsedUntilFirstVersionIsPublished() throws Exception {
+        File backupFile = temporaryFolder.newFile("idp-metadata-backup.xml");
+        Files.write(backupFile.toPath(), read("idp-metadata-backup.xml"));
+        resolver = initialize(backupFile.getAbsolutePath());
+
+        Assert.assertEquals(-1, resolver.getCurrentVersion());
+        Assert.assertNotNull(resolver.getLastUpdate());
+
+        byte[] published = read("idp-metadata.xml");
+        Mockito.when(coordinator.getDocument()).thenReturn(new IDPMetadataDocument(1, published, null, null));
+        refresh();
+
+        Assert.assertEquals(1, resolver.getCurrentVersion());
+        Assert.assertArrayEquals(published, Files.readAllBytes(backupFile.toPath()));
+    }
+
+    private HazelcastMetadataResolver initialize(String backupFile) throws Exception {
+        HazelcastMetadataResolver metadataResolver = new HazelcastMetadataResolver(URL, coordinator, backupFile);
+        metadataResolver.setId("hazelcastMetadataResolver");
+        metadataResolver.setParserPool(OpenSAMLConfiguration.getParserPool());
+        metadataResolver.setMetadataFilter(new SignatureValidationFilter(idpMetadataSignatureTrustEngine));
+        metadataResolver.setFailFastInitialization(false);
+        metadataResolver.initialize();
+        return metadataResolver;
+    }
+
+    private void refresh() {
+        try {
+            resolver.refresh();
+        } catch (ResolverException e) {
+            // the failure is expected to be retried on the next refresh
+        }
+    }
+
+    private static byte[] read(String resource) throws Exception {
+        try (InputStream inputStream = new ClassPathResource(resource).getInputStream()) {
+            return StreamUtils.copyToByteArray(inputStream);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -18,10 +19,15 @@ import org.opensaml.core.criterion.EntityIdCriterion;
 import org.opensaml.saml.metadata.resolver.MetadataResolver;
 import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,6 +42,9 @@ public class IDPMetadataResolverTest {
     @Rule
     public ExpectedException expectedEx = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Autowired
     private ExplicitKeySignatureTrustEngine idpMetadataSignatureTrustEngine;
 
@@ -61,6 +70,42 @@ public class IDPMetadataResolverTest {
         assertEquals("classpath:idp-metadata.xml", metadataResolver.resolveSingle(new CriteriaSet(new EntityIdCriterion("classpath:idp-metadata.xml"))).getEntityID());
     }
 
+    @Test
+    public void resolveSuccessfullyFromBackupFileWhenUrlNotReachable() throws Exception {
+        String url = "http://localhost:7771/EidasNode/ConnectorResponderMetadata";
+        File backupFile = temporaryFolder.newFile("idp-metadata-backup.xml");
+        try (InputStream metadata = new ClassPathResource("idp-metadata-backup.xml").getInputStream()) {
+            Files.copy(metadata, backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        EidasClientProperties properties = new EidasClientProperties();
+        properties.setIdpMetadataBackupFile(backupFile.getAbsolutePath());
+        properties.setIdpMetadataConnectTimeout(1);
+
+        IDPMetadataResolver idpMetadataResolver = new IDPMetadataResolver(url, idpMetadataSignatureTrustEngine, properties);
+        MetadataResolver metadataResolver = idpMetadataResolver.resolve();
+        assertEquals(url, metadataResolver.resolveSingle(new CriteriaSet(new EntityIdCriterion(url))).getEntityID());
+    }
+
+    @Test
+    public void isReadyOnlyAfterMetadataIsResolved() {
+        IDPMetadataResolver idpMetadataResolver = new IDPMetadataResolver("classpath:idp-metadata.xml", idpMetadataSignatureTrustEngine);
+        Assert.assertFalse(idpMetadataResolver.isReady());
+        idpMetadataResolver.resolve();
+        Assert.assertTrue(idpMetadataResolver.isReady());
+    }
+
+    @Test
+    public void isNotReadyWhenResolveFails() {
+        IDPMetadataResolver idpMetadataResolver = new IDPMetadataResolver("classpath:idp-metadata-expired.xml", idpMetadataSignatureTrustEngine);
+        try {
+            idpMetadataResolver.resolve();
+            Assert.fail("Test should not reach this!");
+        } catch (EidasClientException e) {
+            Assert.assertFalse(idpMetadataResolver.isReady());
+        }
+    }
+
     @Test
     public void resolveFailsWhenUrlNotSet() throws Exception {
         expectedEx.expect(EidasClientException.class);
@@ -82,7 +127,8 @@ public class IDPMetadataResolverTest {
         expectedEx.expect(EidasClientException.class);
         expectedEx.expectMessage("Error initializing IDP Metadata provider.");
 
-        assertResolveFails("http://0.0.0.0/metadata");
+        IDPMetadataResolver idpMetadataResolver = new IDPMetadataResolver("http://0.0.0.0/metadata", idpMetadataSignatureTrustEngine, new EidasClientProperties());
+        idpMetadataResolver.resolve();
     }
 
     @Test
@@ -120,6 +166,28 @@ public class IDPMetadataResolverTest {
         assertEquals(new ArrayList<>(Arrays.asList("EE", "CA")), idpMetadataResolver.getSupportedCountries());
     }
 
+    @Test
+    public void getSupportedCountriesSnapshotIsReusedUntilConfigurationChanges() {
+        Mockito.when(eidasClientProperties.getAvailableCountries()).thenReturn(new ArrayList<>(Arrays.asList("EE", "CA")));
+        SupportedCountries supportedCountries = idpMetadataResolver.getSupportedCountriesSnapshot();
+        Assert.assertSame(supportedCountries, idpMetadataResolver.getSupportedCountriesSnapshot());
+        Assert.assertTrue(supportedCountries.contains("ee"));
+        Assert.assertFalse(supportedCountries.contains("LV"));
+
+        Mockito.when(eidasClientProperties.getAvailableCountries()).thenReturn(new ArrayList<>(Arrays.asList("LV")));
+        SupportedCountries changedCountries = idpMetadataResolver.getSupportedCountriesSnapshot();
+        Assert.assertNotSame(supportedCountries, changedCountries);
+        Assert.assertTrue(changedCountries.contains("lv"));
+    }
+
+    @Test
+    public void resolveFailsFromUrlWhenPropertiesNotSet() {
+        expectedEx.expect(EidasClientException.class);
+        expectedEx.expectMessage("eIDAS client properties not set! Please check your configuration.");
+
+        assertResolveFails("http://localhost:7771/EidasNode/ConnectorResponderMetadata");
+    }
+
     private void assertResolveFails(String url) {
         IDPMetadataResolver idpMetadataResolver = new IDPMetadataResolver(url, idpMetadataSignatureTrustEngine);
         MetadataResolver metadataResolver = idpMetadataResolver.resolve();
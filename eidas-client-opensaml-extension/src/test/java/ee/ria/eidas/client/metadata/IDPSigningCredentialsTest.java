@@ -0,0 +1,114 @@
+package ee.ria.eidas.client.metadata;
+
+import ee.ria.eidas.client.config.EidasClientConfiguration;
+import ee.ria.eidas.client.exception.EidasClientException;
+import ee.ria.eidas.client.util.OpenSAMLUtils;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
+import org.opensaml.saml.saml2.metadata.KeyDescriptor;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.security.credential.impl.KeyStoreCredentialResolver;
+import org.opensaml.security.x509.X509Credential;
+import org.opensaml.xmlsec.keyinfo.impl.X509KeyInfoGeneratorFactory;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.security.KeyStore;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = EidasClientConfiguration.class)
+@TestPropertySource(locations = "classpath:application-test.properties")
+public class IDPSigningCredentialsTest {
+
+    @Autowired
+    @Qualifier("metadataSigningCredential")
+    private Credential currentCredential;
+
+    @Autowired
+    @Qualifier("responseAssertionDecryptionCredential")
+    private Credential encryptionCredential;
+
+    @Autowired
+    private KeyStore samlKeystore;
+
+    private Credential nextCredential;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyStoreCredentialResolver resolver = new KeyStoreCredentialResolver(samlKeystore, Collections.singletonMap("stork", "changeit"));
+        nextCredential = resolver.resolveSingle(new CriteriaSet(new EntityIdCriterion("stork")));
+    }
+
+    @Test
+    public void allSigningCertificatesAreIndexed() throws Exception {
+        IDPSigningCredentials signingCredentials = IDPSigningCredentials.fromEntityDescriptor(buildEntityDescriptor(
+                buildKeyDescriptor(UsageType.SIGNING, currentCredential),
+                buildKeyDescriptor(UsageType.ENCRYPTION, encryptionCredential),
+                buildKeyDescriptor(UsageType.SIGNING, nextCredential),
+                buildKeyDescriptor(UsageType.SIGNING, currentCredential)));
+
+        assertEquals(2, signingCredentials.getCredentials().size());
+        assertEquals(certificate(currentCredential), signingCredentials.getCredentials().get(0).getEntityCertificate());
+        assertEquals(certificate(nextCredential), signingCredentials.getCredentials().get(1).getEntityCertificate());
+    }
+
+    @Test
+    public void credentialIsFoundByKeyInfoCertificate() throws Exception {
+        IDPSigningCredentials signingCredentials = IDPSigningCredentials.fromEntityDescriptor(buildEntityDescriptor(
+                buildKeyDescriptor(UsageType.SIGNING, currentCredential),
+                buildKeyDescriptor(UsageType.SIGNING, nextCredential)));
+
+        assertEquals(certificate(nextCredential), signingCredentials.findByKeyInfo(buildKeyInfo(nextCredential)).getEntityCertificate());
+        assertEquals(certificate(currentCredential), signingCredentials.findByKeyInfo(buildKeyInfo(currentCredential)).getEntityCertificate());
+        assertNull(signingCredentials.findByKeyInfo(buildKeyInfo(encryptionCredential)));
+        assertNull(signingCredentials.findByKeyInfo(null));
+    }
+
+    @Test(expected = EidasClientException.class)
+    public void failsWhenNoSigningCertificateIsListed() throws Exception {
+        IDPSigningCredentials.fromEntityDescriptor(buildEntityDescriptor(buildKeyDescriptor(UsageType.ENCRYPTION, encryptionCredential)));
+    }
+
+    private static EntityDescriptor buildEntityDescriptor(KeyDescriptor... keyDescriptors) {
+        IDPSSODescriptor idpSsoDescriptor = OpenSAMLUtils.buildSAMLObject(IDPSSODescriptor.class);
+        idpSsoDescriptor.addSupportedProtocol(SAMLConstants.SAML20P_NS);
+        for (KeyDescriptor keyDescriptor : keyDescriptors) {
+            idpSsoDescriptor.getKeyDescriptors().add(keyDescriptor);
+        }
+        EntityDescriptor entityDescriptor = OpenSAMLUtils.buildSAMLObject(EntityDescriptor.class);
+        entityDescriptor.getRoleDescriptors().add(idpSsoDescriptor);
+        return entityDescriptor;
+    }
+
+    private static KeyDescriptor buildKeyDescriptor(UsageType use, Credential credential) throws Exception {
+        KeyDescriptor keyDescriptor = OpenSAMLUtils.buildSAMLObject(KeyDescriptor.class);
+        keyDescriptor.setUse(use);
+        keyDescriptor.setKeyInfo(buildKeyInfo(credential));
+        return keyDescriptor;
+    }
+
+    private static KeyInfo buildKeyInfo(Credential credential) throws Exception {
+        X509KeyInfoGeneratorFactory keyInfoGeneratorFactory = new X509KeyInfoGeneratorFactory();
+        keyInfoGeneratorFactory.setEmitEntityCertificate(true);
+        return keyInfoGeneratorFactory.newInstance().generate(credential);
+    }
+
+    private static java.security.cert.X509Certificate certificate(Credential credential) {
+        return ((X509Credential) credential).getEntityCertificate();
+    }
+}
@@ -29,11 +29,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.StreamUtils;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.verify;
@@ -81,6 +91,65 @@ public class SPMetadataGeneratorTest {
         verifyLogs("Generated metadata: " + OpenSAMLUtils.getXmlString(entityDescriptor), Level.DEBUG);
     }
 
+    @Test
+    public void signedMetadataIsCachedUntilInvalidated() {
+        SignedMetadata signedMetadata = metadataGenerator.getSignedMetadata();
+        assertSame(signedMetadata, metadataGenerator.getSignedMetadata());
+        assertTrue(signedMetadata.getEtag().startsWith("\"") && signedMetadata.getEtag().endsWith("\""));
+        assertNull(signedMetadata.getGzippedDocument());
+
+        metadataGenerator.invalidate();
+        SignedMetadata regenerated = metadataGenerator.getSignedMetadata();
+        assertNotSame(signedMetadata, regenerated);
+        assertNotEquals(signedMetadata.getEtag(), regenerated.getEtag());
+    }
+
+    @Test
+    public void signedMetadataIsRegeneratedWhenPropertiesChange() {
+        SignedMetadata signedMetadata = metadataGenerator.getSignedMetadata();
+        String callbackUrl = properties.getCallbackUrl();
+        try {
+            properties.setCallbackUrl(callbackUrl + "/changed");
+            SignedMetadata regenerated = metadataGenerator.getSignedMetadata();
+            assertNotSame(signedMetadata, regenerated);
+            assertTrue(new String(regenerated.getDocument(), StandardCharsets.UTF_8).contains(callbackUrl + "/changed"));
+        } finally {
+            properties.setCallbackUrl(callbackUrl);
+        }
+    }
+
+    @Test
+    public void signedMetadataContainsGzipVariantWhenEnabled() throws Exception {
+        properties.setMetadataGzipEnabled(true);
+        try {
+            SignedMetadata signedMetadata = metadataGenerator.getSignedMetadata();
+            assertNotNull(signedMetadata.getGzippedDocument());
+            assertNotEquals(signedMetadata.getEtag(), signedMetadata.getGzipEtag());
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(signedMetadata.getGzippedDocument()))) {
+                assertArrayEquals(signedMetadata.getDocument(), StreamUtils.copyToByteArray(in));
+            }
+        } finally {
+            properties.setMetadataGzipEnabled(false);
+        }
+    }
+
+    @Test
+    public void signedMetadataExpiresAfterHalfOfValidityPeriod() {
+        DateTime generatedAt = DateTime.now();
+        SignedMetadata signedMetadata = new SignedMetadata("<xml/>", generatedAt, generatedAt.plusDays(1), false);
+        assertFalse(signedMetadata.isExpiring(generatedAt.plusHours(11)));
+        assertTrue(signedMetadata.isExpiring(generatedAt.plusHours(12)));
+        assertFalse(signedMetadata.isExpiring(generatedAt.plusHours(12).getMillis() - 1));
+        assertTrue(signedMetadata.isExpiring(generatedAt.plusHours(12).getMillis()));
+    }
+
+    @Test
+    public void signedMetadataIsRegeneratedWhenCredentialsChange() {
+        SignedMetadata signedMetadata = metadataGenerator.getSignedMetadata();
+        metadataGenerator.setCredentials(metadataSigningCredential, responseAssertionDecryptionCredential, authnReqSigningCredential);
+        assertNotSame(signedMetadata, metadataGenerator.getSignedMetadata());
+    }
+
     private void assertEntityDescriptor(EntityDescriptor entityDescriptor) {
         assertEquals(properties.getSpEntityId(), entityDescriptor.getEntityID());
         assertTrue(entityDescriptor.getValidUntil().isBefore(DateTime.now().plusDays(properties.getMetadataValidityInDays())));
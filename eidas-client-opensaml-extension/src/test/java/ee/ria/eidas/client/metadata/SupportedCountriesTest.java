@@ -0,0 +1,53 @@
+package ee.ria.eidas.client.metadata;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SupportedCountriesTest {
+
+    @Test
+    public void containsIgnoresCase() {
+        SupportedCountries supportedCountries = new SupportedCountries(Arrays.asList("EE", "ca", "XX-Test"));
+        assertTrue(supportedCountries.contains("EE"));
+        assertTrue(supportedCountries.contains("ee"));
+        assertTrue(supportedCountries.contains("Ca"));
+        assertTrue(supportedCountries.contains("xx-test"));
+        assertFalse(supportedCountries.contains("LV"));
+        assertFalse(supportedCountries.contains("E"));
+        assertFalse(supportedCountries.contains(""));
+        assertFalse(supportedCountries.contains(null));
+    }
+
+    @Test
+    public void countriesKeepOriginalOrderAndCase() {
+        SupportedCountries supportedCountries = new SupportedCountries(Arrays.asList("EE", "ca"));
+        assertEquals(Arrays.asList("EE", "ca"), supportedCountries.getCountries());
+        assertEquals("[EE, ca]", supportedCountries.toString());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void countriesAreUnmodifiable() {
+        new SupportedCountries(Arrays.asList("EE")).getCountries().add("CA");
+    }
+
+    @Test
+    public void jsonIsPreSerialized() {
+        assertEquals("[\"EE\",\"CA\"]", new String(new SupportedCountries(Arrays.asList("EE", "CA")).getJson(), StandardCharsets.UTF_8));
+        assertEquals("[]", new String(new SupportedCountries(Collections.emptyList()).getJson(), StandardCharsets.UTF_8));
+        assertEquals("[\"a\\\"b\\\\c\\u0001\"]", new String(new SupportedCountries(Collections.singletonList("a\"b\\c\u0001")).getJson(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void etagDependsOnCountries() {
+        assertEquals(new SupportedCountries(Arrays.asList("EE", "CA")).getEtag(), new SupportedCountries(Arrays.asList("EE", "CA")).getEtag());
+        assertNotEquals(new SupportedCountries(Arrays.asList("EE", "CA")).getEtag(), new SupportedCountries(Arrays.asList("EE")).getEtag());
+    }
+}
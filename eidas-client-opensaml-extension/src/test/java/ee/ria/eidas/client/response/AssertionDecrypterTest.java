@@ -0,0 +1,77 @@
+package ee.ria.eidas.client.response;
+
+import ee.ria.eidas.client.config.EidasClientConfiguration;
+import ee.ria.eidas.client.fixtures.ResponseBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.EncryptedAssertion;
+import org.opensaml.security.credential.Credential;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = EidasClientConfiguration.class)
+@TestPropertySource(locations = "classpath:application-test.properties")
+public class AssertionDecrypterTest {
+
+    @Autowired
+    @Qualifier("metadataSigningCredential")
+    private Credential signingCredential;
+
+    @Autowired
+    @Qualifier("responseAssertionDecryptionCredential")
+    private Credential responseAssertionDecryptionCredential;
+
+    private ResponseBuilder responseBuilder;
+
+    private AssertionDecrypter assertionDecrypter;
+
+    @Before
+    public void setUp() {
+        responseBuilder = new ResponseBuilder(signingCredential, responseAssertionDecryptionCredential);
+        assertionDecrypter = new AssertionDecrypter(responseAssertionDecryptionCredential);
+    }
+
+    @Test
+    public void decryptedAssertionIsRootOfNewDocument() throws Exception {
+        Assertion assertion = assertionDecrypter.decrypt(buildEncryptedAssertion("issuer"));
+
+        assertEquals("issuer", assertion.getIssuer().getValue());
+        assertSame(assertion.getDOM(), assertion.getDOM().getOwnerDocument().getDocumentElement());
+    }
+
+    @Test
+    public void decryptsConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> issuers = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                EncryptedAssertion encryptedAssertion = buildEncryptedAssertion("issuer-" + i);
+                issuers.add(executor.submit(() -> assertionDecrypter.decrypt(encryptedAssertion).getIssuer().getValue()));
+            }
+            for (int i = 0; i < issuers.size(); i++) {
+                assertEquals("issuer-" + i, issuers.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private EncryptedAssertion buildEncryptedAssertion(String issuer) {
+        return responseBuilder.buildResponse(issuer).getEncryptedAssertions().get(0);
+    }
+}
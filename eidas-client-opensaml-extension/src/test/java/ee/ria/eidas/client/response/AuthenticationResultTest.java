@@ -0,0 +1,137 @@
+package ee.ria.eidas.client.response;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ee.ria.eidas.client.authnrequest.AssuranceLevel;
+import ee.ria.eidas.client.authnrequest.EidasAttribute;
+import ee.ria.eidas.client.fixtures.ResponseBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opensaml.core.config.InitializationService;
+import org.opensaml.core.xml.schema.XSAny;
+import org.opensaml.core.xml.schema.impl.XSAnyBuilder;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import org.opensaml.saml.saml2.core.AttributeValue;
+import org.opensaml.saml.saml2.core.impl.AttributeBuilder;
+import org.opensaml.saml.saml2.core.impl.AttributeStatementBuilder;
+
+import javax.xml.namespace.QName;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AuthenticationResultTest {
+
+    private static final QName LATIN_SCRIPT = new QName("http://eidas.europa.eu/attributes/naturalperson", "LatinScript", "eidas-natural");
+
+    private final ResponseBuilder responseBuilder = new ResponseBuilder(null, null);
+
+    @BeforeClass
+    public static void initialize() throws Exception {
+        InitializationService.initialize();
+    }
+
+    @Test
+    public void transliteratedAttributesAreSeparated() {
+        AuthenticationResult result = new AuthenticationResult(responseBuilder.buildAssertion("issuer", null));
+
+        assertEquals(AssuranceLevel.LOW.getUri(), result.getLevelOfAssurance());
+        Map<String, String> expectedAttributes = new HashMap<>();
+        expectedAttributes.put("FirstName", "Αλέξανδρος");
+        expectedAttributes.put("FamilyName", "Ωνάσης");
+        expectedAttributes.put("PersonIdentifier", "CA/CA/12345");
+        expectedAttributes.put("DateOfBirth", "1965-01-01");
+        assertEquals(expectedAttributes, result.getAttributes());
+
+        Map<String, String> expectedTransliterated = new HashMap<>();
+        expectedTransliterated.put("FirstName", "Alexander");
+        expectedTransliterated.put("FamilyName", "Onassis");
+        assertEquals(expectedTransliterated, result.getAttributesTransliterated());
+    }
+
+    @Test
+    public void allNaturalAndLegalPersonAttributesAreExtracted() throws Exception {
+        AttributeStatement attributeStatement = new AttributeStatementBuilder().buildObject();
+        Map<String, String> expectedAttributes = new HashMap<>();
+        for (EidasAttribute eidasAttribute : EidasAttribute.values()) {
+            String value = eidasAttribute.name().toLowerCase();
+            attributeStatement.getAttributes().add(responseBuilder.buildAttribute(eidasAttribute.getFriendlyName(), eidasAttribute.getName(), Attribute.URI_REFERENCE, "xs:string", value));
+            expectedAttributes.put(eidasAttribute.getFriendlyName(), value);
+        }
+
+        AuthenticationResult result = new AuthenticationResult(buildAssertion(attributeStatement));
+
+        assertEquals(expectedAttributes, result.getAttributes());
+        assertTrue(result.getAttributesTransliterated().isEmpty());
+
+        JsonNode json = new ObjectMapper().valueToTree(result);
+        assertFalse(json.has("attributesTransliterated"));
+        assertEquals(expectedAttributes.size(), json.get("attributes").size());
+        assertEquals("person_identifier", json.get("attributes").get("PersonIdentifier").asText());
+        assertEquals("lei", json.get("attributes").get("LEI").asText());
+    }
+
+    @Test
+    public void valueMarkedAsLatinScriptIsTransliterated() {
+        AttributeStatement attributeStatement = new AttributeStatementBuilder().buildObject();
+        Attribute attribute = new AttributeBuilder().buildObject();
+        attribute.setFriendlyName("FamilyName");
+        attribute.getAttributeValues().add(buildAttributeValue("Ωνάσης", "false"));
+        attribute.getAttributeValues().add(buildAttributeValue("Onassis", "true"));
+        attributeStatement.getAttributes().add(attribute);
+
+        AuthenticationResult result = new AuthenticationResult(buildAssertion(attributeStatement));
+
+        assertEquals(Collections.singletonMap("FamilyName", "Ωνάσης"), result.getAttributes());
+        assertEquals(Collections.singletonMap("FamilyName", "Onassis"), result.getAttributesTransliterated());
+    }
+
+    @Test
+    public void unknownAttributesAreKeptWithReceivedFriendlyName() {
+        AttributeStatement attributeStatement = new AttributeStatementBuilder().buildObject();
+        attributeStatement.getAttributes().add(responseBuilder.buildAttribute("Nickname", "http://example.com/Nickname", Attribute.URI_REFERENCE, "xs:string", "Alex"));
+        attributeStatement.getAttributes().add(responseBuilder.buildAttribute("familyname", "http://example.com/familyname", Attribute.URI_REFERENCE, "xs:string", "Onassis"));
+
+        AuthenticationResult result = new AuthenticationResult(buildAssertion(attributeStatement));
+
+        Map<String, String> expectedAttributes = new HashMap<>();
+        expectedAttributes.put("Nickname", "Alex");
+        expectedAttributes.put("familyname", "Onassis");
+        assertEquals(expectedAttributes, result.getAttributes());
+        assertFalse(result.getAttributes().containsKey("FamilyName"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void moreThanOneLatinScriptAttributeIsNotAllowed() {
+        AttributeStatement attributeStatement = new AttributeStatementBuilder().buildObject();
+        Attribute attribute = new AttributeBuilder().buildObject();
+        attribute.setFriendlyName("FamilyName");
+        XSAny nonLatinValue = buildAttributeValue("Ωνάσης", "false");
+        nonLatinValue.getUnknownAttributes().put(new QName("http://example.com", "LatinScript", "ex"), "false");
+        attribute.getAttributeValues().add(nonLatinValue);
+        attribute.getAttributeValues().add(buildAttributeValue("Onassis", null));
+        attributeStatement.getAttributes().add(attribute);
+
+        new AuthenticationResult(buildAssertion(attributeStatement));
+    }
+
+    private Assertion buildAssertion(AttributeStatement attributeStatement) {
+        return responseBuilder.buildAssertion("issuer", Collections.singletonMap(ResponseBuilder.InputType.ATTRIBUTE_STATEMENT, Optional.of(attributeStatement)));
+    }
+
+    private static XSAny buildAttributeValue(String value, String latinScript) {
+        XSAny attributeValue = new XSAnyBuilder().buildObject(AttributeValue.DEFAULT_ELEMENT_NAME);
+        if (latinScript != null) {
+            attributeValue.getUnknownAttributes().put(LATIN_SCRIPT, latinScript);
+        }
+        attributeValue.setTextContent(value);
+        return attributeValue;
+    }
+}
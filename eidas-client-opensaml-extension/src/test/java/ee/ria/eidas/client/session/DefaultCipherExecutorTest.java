@@ -0,0 +1,80 @@
+package ee.ria.eidas.client.session;
+
+import ee.ria.eidas.client.session.HazelcastRequestSessionServiceImpl.DefaultCipherExecutor;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.keys.AesKey;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultCipherExecutorTest {
+
+    private static final String SIGNING_KEY_STRING = "TWXUmJHr8O9yxZmX1VS4xpZSg2U3bZQ7mCWVoZCKQAipbv1MbFF_xDkhQrfsG5Abh5o2xqTFTLSvYeUx9BfU5A";
+
+    private static final AesKey SIGNING_KEY = new AesKey(SIGNING_KEY_STRING.getBytes(StandardCharsets.UTF_8));
+
+    private static final byte[] VALUE = "session".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void signedValueIsIdenticalToJose4j() throws Exception {
+        for (String algorithm : new String[]{AlgorithmIdentifiers.HMAC_SHA256, AlgorithmIdentifiers.HMAC_SHA384, AlgorithmIdentifiers.HMAC_SHA512}) {
+            JsonWebSignature jws = new JsonWebSignature();
+            jws.setPayload(Base64.getEncoder().encodeToString(VALUE));
+            jws.setAlgorithmHeaderValue(algorithm);
+            jws.setKey(SIGNING_KEY);
+
+            assertEquals(jws.getCompactSerialization(), new String(DefaultCipherExecutor.signJws(SIGNING_KEY, VALUE, algorithm), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void valueSignedWithJose4jIsVerified() throws Exception {
+        JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(Base64.getEncoder().encodeToString(VALUE));
+        jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.HMAC_SHA384);
+        jws.setKey(SIGNING_KEY);
+
+        assertArrayEquals(VALUE, DefaultCipherExecutor.verifyJwsSignature(SIGNING_KEY, jws.getCompactSerialization().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void signedValueIsVerifiedWithJose4j() throws Exception {
+        JsonWebSignature jws = new JsonWebSignature();
+        jws.setCompactSerialization(new String(DefaultCipherExecutor.signJws(SIGNING_KEY, VALUE, AlgorithmIdentifiers.HMAC_SHA512), StandardCharsets.UTF_8));
+        jws.setKey(SIGNING_KEY);
+
+        assertTrue(jws.verifySignature());
+    }
+
+    @Test
+    public void tamperedSignatureIsNotVerified() {
+        byte[] signedValue = DefaultCipherExecutor.signJws(SIGNING_KEY, VALUE, AlgorithmIdentifiers.HMAC_SHA512);
+        signedValue[signedValue.length - 2] = (byte) (signedValue[signedValue.length - 2] == 'A' ? 'B' : 'A');
+
+        assertNull(DefaultCipherExecutor.verifyJwsSignature(SIGNING_KEY, signedValue));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void signingFails_whenKeyIsShorterThanHashOutput() {
+        DefaultCipherExecutor.signJws(new AesKey(new byte[32]), VALUE, AlgorithmIdentifiers.HMAC_SHA512);
+    }
+
+    @Test
+    public void encodedValueIsDecoded() {
+        DefaultCipherExecutor cipherExecutor = new DefaultCipherExecutor("C5N8eS_6iCo0ib9L", SIGNING_KEY_STRING, "AES", AlgorithmIdentifiers.HMAC_SHA512);
+
+        assertArrayEquals(VALUE, cipherExecutor.decode(cipherExecutor.encode(VALUE)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creationFails_whenEncryptionAlgorithmIsNotAes() {
+        new DefaultCipherExecutor("C5N8eS_6iCo0ib9L", SIGNING_KEY_STRING, "DES", AlgorithmIdentifiers.HMAC_SHA512);
+    }
+}
@@ -0,0 +1,60 @@
+package ee.ria.eidas.client.session;
+
+import ee.ria.eidas.client.authnrequest.AssuranceLevel;
+import ee.ria.eidas.client.authnrequest.EidasAttribute;
+import ee.ria.eidas.client.authnrequest.EidasAttributeSet;
+import ee.ria.eidas.client.util.SerializationUtils;
+import org.junit.Test;
+
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class UnencodedRequestSessionTest {
+
+    private static final String REQUEST_ID = "_4ededd23fb88e6964df71b8bdb1c706f";
+
+    private static final List<EidasAttribute> REQUESTED_ATTRIBUTES = Arrays.asList(EidasAttribute.CURRENT_FAMILY_NAME, EidasAttribute.CURRENT_GIVEN_NAME);
+
+    // session serialized by the earlier version storing only the list of requested attributes, without issue instant
+    private static final String PREVIOUS_VERSION_SESSION = "rO0ABXNyADNlZS5yaWEuZWlkYXMuY2xpZW50LnNlc3Npb24uVW5lbmNvZGVkUmVxdWVzdFNlc3Npb24TnBMN7VZGMQIABEwADGlzc3VlSW5zdGFudHQAGExvcmcvam9kYS90aW1lL0RhdGVUaW1lO0wAA2xvYXQAMUxlZS9yaWEvZWlkYXMvY2xpZW50L2F1dGhucmVxdWVzdC9Bc3N1cmFuY2VMZXZlbDtMAAlyZXF1ZXN0SWR0ABJMamF2YS9sYW5nL1N0cmluZztMABNyZXF1ZXN0ZWRBdHRyaWJ1dGVzdAAQTGphdmEvdXRpbC9MaXN0O3hwcH5yAC9lZS5yaWEuZWlkYXMuY2xpZW50LmF1dGhucmVxdWVzdC5Bc3N1cmFuY2VMZXZlbAAAAAAAAAAAEgAAeHIADmphdmEubGFuZy5FbnVtAAAAAAAAAAASAAB4cHQAC1NVQlNUQU5USUFMdAAhXzRlZGVkZDIzZmI4OGU2OTY0ZGY3MWI4YmRiMWM3MDZmc3IAE2phdmEudXRpbC5BcnJheUxpc3R4gdIdmcdhnQMAAUkABHNpemV4cAAAAAJ3BAAAAAJ+cgAvZWUucmlhLmVpZGFzLmNsaWVudC5hdXRobnJlcXVlc3QuRWlkYXNBdHRyaWJ1dGUAAAAAAAAAABIAAHhxAH4AB3QAE0NVUlJFTlRfRkFNSUxZX05BTUV+cQB+AA10ABJDVVJSRU5UX0dJVkVOX05BTUV4";
+
+    @Test
+    public void sessionOfPreviousVersionCanBeDeserialized() {
+        UnencodedRequestSession session = SerializationUtils.deserialize(Base64.getDecoder().decode(PREVIOUS_VERSION_SESSION));
+
+        assertEquals(REQUEST_ID, session.getRequestId());
+        assertNull(session.getIssueInstant());
+        assertEquals(AssuranceLevel.SUBSTANTIAL, session.getLoa());
+        assertEquals(REQUESTED_ATTRIBUTES, session.getRequestedAttributes());
+        assertEquals(EidasAttributeSet.copyOf(REQUESTED_ATTRIBUTES), session.getRequestedAttributeSet());
+    }
+
+    @Test
+    public void serializedFormMatchesPreviousVersion() {
+        ObjectStreamClass serializedForm = ObjectStreamClass.lookup(UnencodedRequestSession.class);
+
+        assertEquals(1413025333624849969L, serializedForm.getSerialVersionUID());
+        assertEquals(4, serializedForm.getFields().length);
+        assertNotNull(serializedForm.getField("issueInstant"));
+        assertNotNull(serializedForm.getField("loa"));
+        assertNotNull(serializedForm.getField("requestId"));
+        assertEquals(List.class, serializedForm.getField("requestedAttributes").getType());
+    }
+
+    @Test
+    public void attributeSetIsRestoredAfterSerialization() {
+        UnencodedRequestSession session = new UnencodedRequestSession(REQUEST_ID, null, AssuranceLevel.HIGH, EidasAttributeSet.copyOf(REQUESTED_ATTRIBUTES));
+
+        UnencodedRequestSession deserialized = SerializationUtils.deserialize(SerializationUtils.serialize(session));
+
+        assertEquals(session, deserialized);
+        assertEquals(REQUESTED_ATTRIBUTES, deserialized.getRequestedAttributes());
+        assertEquals(EidasAttributeSet.copyOf(REQUESTED_ATTRIBUTES), deserialized.getRequestedAttributeSet());
+    }
+}
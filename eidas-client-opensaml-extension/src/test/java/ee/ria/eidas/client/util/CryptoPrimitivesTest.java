@@ -0,0 +1,55 @@
+package ee.ria.eidas.client.util;
+
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class CryptoPrimitivesTest {
+
+    @Test
+    public void sameInstanceIsReturnedWithinThread() throws Exception {
+        assertSame(CryptoPrimitives.messageDigest("SHA-512"), CryptoPrimitives.messageDigest("SHA-512"));
+        assertSame(CryptoPrimitives.mac("HmacSHA256"), CryptoPrimitives.mac("HmacSHA256"));
+        assertSame(CryptoPrimitives.signature("SHA256withECDSA"), CryptoPrimitives.signature("SHA256withECDSA"));
+        assertSame(CryptoPrimitives.cipher("AES/GCM/NoPadding"), CryptoPrimitives.cipher("AES/GCM/NoPadding"));
+    }
+
+    @Test
+    public void instancesAreThreadConfined() throws Exception {
+        MessageDigest messageDigest = CryptoPrimitives.messageDigest("SHA-512");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertNotSame(messageDigest, executor.submit(() -> CryptoPrimitives.messageDigest("SHA-512")).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void instancesAreSeparatedByProvider() throws Exception {
+        Mac defaultMac = CryptoPrimitives.mac("HmacSHA512");
+        Mac sunJceMac = CryptoPrimitives.mac("HmacSHA512", "SunJCE");
+
+        assertNotSame(defaultMac, sunJceMac);
+        assertEquals("SunJCE", sunJceMac.getProvider().getName());
+        assertSame(sunJceMac, CryptoPrimitives.mac("HmacSHA512", "SunJCE"));
+        assertSame(defaultMac, CryptoPrimitives.mac("HmacSHA512", null));
+    }
+
+    @Test
+    public void messageDigestIsReset() throws Exception {
+        byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+        CryptoPrimitives.messageDigest("SHA-256").update("unfinished".getBytes(StandardCharsets.UTF_8));
+
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), CryptoPrimitives.messageDigest("SHA-256").digest(data));
+    }
+}
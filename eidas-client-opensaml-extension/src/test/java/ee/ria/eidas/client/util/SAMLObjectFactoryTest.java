@@ -0,0 +1,77 @@
+package ee.ria.eidas.client.util;
+
+import ee.ria.eidas.client.config.OpenSAMLConfiguration;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.NameIDType;
+import org.opensaml.saml.saml2.core.Response;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SAMLObjectFactoryTest {
+
+    @BeforeClass
+    public static void initialize() {
+        OpenSAMLConfiguration.getParserPool();
+    }
+
+    @Test
+    public void buildReturnsNewObjectWithDefaultElementName() {
+        AuthnRequest first = SAMLObjectFactory.build(AuthnRequest.class);
+        AuthnRequest second = SAMLObjectFactory.build(AuthnRequest.class);
+
+        assertNotSame(first, second);
+        assertEquals(AuthnRequest.DEFAULT_ELEMENT_NAME, first.getElementQName());
+        assertEquals(AuthnRequest.DEFAULT_ELEMENT_NAME, second.getElementQName());
+    }
+
+    @Test
+    public void marshallersAndUnmarshallersAreResolvedOnce() throws Exception {
+        Element first = SAMLObjectFactory.marshall(buildAuthnRequest("first"));
+        Element second = SAMLObjectFactory.marshall(buildAuthnRequest("second"));
+
+        assertSame(SAMLObjectFactory.getMarshaller(buildAuthnRequest("third")), SAMLObjectFactory.getMarshaller(buildAuthnRequest("fourth")));
+        assertSame(SAMLObjectFactory.getUnmarshaller(first), SAMLObjectFactory.getUnmarshaller(second));
+    }
+
+    @Test
+    public void unmarshallReturnsEquivalentObject() throws Exception {
+        Element element = SAMLObjectFactory.marshall(buildAuthnRequest("issuer"));
+
+        AuthnRequest authnRequest = SAMLObjectFactory.unmarshall(reparse(element), AuthnRequest.class);
+
+        assertEquals("_id", authnRequest.getID());
+        assertEquals("issuer", authnRequest.getIssuer().getValue());
+        assertEquals(NameIDType.ENTITY, authnRequest.getIssuer().getFormat());
+    }
+
+    @Test(expected = UnmarshallingException.class)
+    public void unmarshallFails_whenElementIsOfUnexpectedType() throws Exception {
+        Element element = SAMLObjectFactory.marshall(buildAuthnRequest("issuer"));
+
+        SAMLObjectFactory.unmarshall(reparse(element), Response.class);
+    }
+
+    private static AuthnRequest buildAuthnRequest(String issuerValue) {
+        AuthnRequest authnRequest = SAMLObjectFactory.build(AuthnRequest.class);
+        authnRequest.setID("_id");
+        Issuer issuer = SAMLObjectFactory.build(Issuer.class);
+        issuer.setValue(issuerValue);
+        issuer.setFormat(NameIDType.ENTITY);
+        authnRequest.setIssuer(issuer);
+        return authnRequest;
+    }
+
+    private static Element reparse(Element element) throws Exception {
+        Document document = OpenSAMLConfiguration.getParserPool().newDocument();
+        document.appendChild(document.importNode(element, true));
+        return document.getDocumentElement();
+    }
+}
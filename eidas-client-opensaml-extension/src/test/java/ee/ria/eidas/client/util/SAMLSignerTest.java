@@ -0,0 +1,109 @@
+package ee.ria.eidas.client.util;
+
+import ee.ria.eidas.client.config.EidasClientConfiguration;
+import ee.ria.eidas.client.config.OpenSAMLConfiguration;
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opensaml.saml.common.SAMLObjectContentReference;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.x509.X509Credential;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.opensaml.xmlsec.signature.support.SignatureValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = EidasClientConfiguration.class)
+@TestPropertySource(locations = "classpath:application-test.properties")
+public class SAMLSignerTest {
+
+    private static final String RSA_SHA256_MGF1 = new OpenSAMLConfiguration.SignatureRSASHA256MGF1().getURI();
+
+    @Autowired
+    @Qualifier("metadataSigningCredential")
+    private Credential eccCredential;
+
+    @Autowired
+    @Qualifier("responseAssertionDecryptionCredential")
+    private Credential rsaCredential;
+
+    @Test
+    public void signWithEcdsaSha512() throws Exception {
+        assertSignatures(new SAMLSigner(SignatureConstants.ALGO_ID_SIGNATURE_ECDSA_SHA512, eccCredential), SignatureConstants.ALGO_ID_DIGEST_SHA512);
+    }
+
+    @Test
+    public void signWithRsaSha256() throws Exception {
+        assertSignatures(new SAMLSigner(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256, rsaCredential), SignatureConstants.ALGO_ID_DIGEST_SHA256);
+    }
+
+    @Test
+    public void signWithRsaSha256Mgf1() throws Exception {
+        assertSignatures(new SAMLSigner(RSA_SHA256_MGF1, rsaCredential), SignatureConstants.ALGO_ID_DIGEST_SHA256);
+    }
+
+    @Test
+    public void signConcurrentlyWithSharedSigner() throws Exception {
+        SAMLSigner signer = new SAMLSigner(SignatureConstants.ALGO_ID_SIGNATURE_ECDSA_SHA512, eccCredential);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<AuthnRequest>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                results.add(executor.submit((Callable<AuthnRequest>) () -> {
+                    AuthnRequest authnRequest = buildRequest();
+                    signer.sign(authnRequest);
+                    return authnRequest;
+                }));
+            }
+            for (Future<AuthnRequest> result : results) {
+                SignatureValidator.validate(result.get().getSignature(), eccCredential);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertSignatures(SAMLSigner signer, String expectedDigestAlgorithm) throws Exception {
+        AuthnRequest first = buildRequest();
+        AuthnRequest second = buildRequest();
+        signer.sign(first);
+        signer.sign(second);
+
+        assertSignature(first.getSignature(), signer, expectedDigestAlgorithm);
+        assertSignature(second.getSignature(), signer, expectedDigestAlgorithm);
+        assertNotSame(first.getSignature().getKeyInfo(), second.getSignature().getKeyInfo());
+    }
+
+    private void assertSignature(Signature signature, SAMLSigner signer, String expectedDigestAlgorithm) throws Exception {
+        assertEquals(signer.getSignatureAlgorithmUri(), signature.getSignatureAlgorithm());
+        assertEquals(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS, signature.getCanonicalizationAlgorithm());
+        assertEquals(expectedDigestAlgorithm, ((SAMLObjectContentReference) signature.getContentReferences().get(0)).getDigestAlgorithm());
+        String certificate = signature.getKeyInfo().getX509Datas().get(0).getX509Certificates().get(0).getValue().replaceAll("\\s", "");
+        assertEquals(Base64.getEncoder().encodeToString(((X509Credential) signer.getCredential()).getEntityCertificate().getEncoded()), certificate);
+        SignatureValidator.validate(signature, signer.getCredential());
+    }
+
+    private AuthnRequest buildRequest() {
+        AuthnRequest authnRequest = OpenSAMLUtils.buildSAMLObject(AuthnRequest.class);
+        authnRequest.setID(OpenSAMLUtils.generateSecureRandomId());
+        authnRequest.setIssueInstant(new DateTime());
+        return authnRequest;
+    }
+}
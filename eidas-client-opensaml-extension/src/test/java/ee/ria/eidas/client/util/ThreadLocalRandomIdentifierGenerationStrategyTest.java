@@ -0,0 +1,78 @@
+package ee.ria.eidas.client.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadLocalRandomIdentifierGenerationStrategyTest {
+
+    private final ThreadLocalRandomIdentifierGenerationStrategy strategy = new ThreadLocalRandomIdentifierGenerationStrategy();
+
+    @Test
+    public void generatesXmlSafeIdentifierInRandomIdentifierGenerationStrategyFormat() {
+        for (int i = 0; i < 1000; i++) {
+            String identifier = strategy.generateIdentifier();
+            assertTrue(identifier, identifier.matches("^_[0-9a-f]{32}$"));
+        }
+    }
+
+    @Test
+    public void generatesIdentifierWithoutPrefixWhenNotXmlSafe() {
+        assertTrue(strategy.generateIdentifier(false).matches("^[0-9a-f]{32}$"));
+    }
+
+    @Test
+    public void generatesIdentifierOfGivenSize() {
+        assertTrue(new ThreadLocalRandomIdentifierGenerationStrategy(20).generateIdentifier().matches("^_[0-9a-f]{40}$"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooShortIdentifiers() {
+        new ThreadLocalRandomIdentifierGenerationStrategy(8);
+    }
+
+    @Test
+    public void generatesUniqueIdentifiersConcurrently() throws Exception {
+        int threads = 8;
+        int identifiersPerThread = 10000;
+        Set<String> identifiers = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit((Callable<Void>) () -> {
+                    for (int j = 0; j < identifiersPerThread; j++) {
+                        identifiers.add(strategy.generateIdentifier());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * identifiersPerThread, identifiers.size());
+    }
+
+    @Test
+    public void openSAMLUtilsUsesConfiguredStrategy() {
+        try {
+            OpenSAMLUtils.setIdentifierGenerationStrategy(new ThreadLocalRandomIdentifierGenerationStrategy(20));
+            assertEquals(41, OpenSAMLUtils.generateSecureRandomId().length());
+        } finally {
+            OpenSAMLUtils.setIdentifierGenerationStrategy(new ThreadLocalRandomIdentifierGenerationStrategy());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package ee.ria.eidas.client.webapp.controller;
+
+import ee.ria.eidas.client.response.AuthenticationResult;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes {@link AuthenticationResult} as JSON directly to the response body, without reflective bean serialization.
+ * <p>
+ * The output is identical to the default Jackson serialization of the class: properties in declaration order, the
+ * class level {@code NON_NULL} inclusion, {@code NON_EMPTY} inclusion of the transliterated attributes, map entries in
+ * iteration order and Jackson's string escaping (control characters, quote and backslash only).
+ */
+@Component
+public class AuthenticationResultHttpMessageConverter extends AbstractHttpMessageConverter<AuthenticationResult> {
+
+    private static final byte[] LEVEL_OF_ASSURANCE = ascii("\"levelOfAssurance\":");
+    private static final byte[] ATTRIBUTES = ascii("\"attributes\":");
+    private static final byte[] ATTRIBUTES_TRANSLITERATED = ascii("\"attributesTransliterated\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    public AuthenticationResultHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return AuthenticationResult.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected AuthenticationResult readInternal(Class<? extends AuthenticationResult> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading " + clazz.getName() + " is not supported", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(AuthenticationResult authenticationResult, HttpOutputMessage outputMessage) throws IOException {
+        toJson(authenticationResult).writeTo(outputMessage.getBody());
+    }
+
+    static ByteArrayOutputStream toJson(AuthenticationResult authenticationResult) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        boolean first = true;
+        out.write('{');
+        if (authenticationResult.getLevelOfAssurance() != null) {
+            out.write(LEVEL_OF_ASSURANCE, 0, LEVEL_OF_ASSURANCE.length);
+            writeString(out, authenticationResult.getLevelOfAssurance());
+            first = false;
+        }
+        if (authenticationResult.getAttributes() != null) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write(ATTRIBUTES, 0, ATTRIBUTES.length);
+            writeMap(out, authenticationResult.getAttributes());
+            first = false;
+        }
+        Map<String, String> attributesTransliterated = authenticationResult.getAttributesTransliterated();
+        if (attributesTransliterated != null && !attributesTransliterated.isEmpty()) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write(ATTRIBUTES_TRANSLITERATED, 0, ATTRIBUTES_TRANSLITERATED.length);
+            writeMap(out, attributesTransliterated);
+        }
+        out.write('}');
+        return out;
+    }
+
+    private static void writeMap(ByteArrayOutputStream out, Map<String, String> map) {
+        out.write('{');
+        boolean first = true;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (!first) {
+                out.write(',');
+            }
+            if (entry.getKey() == null) {
+                throw new HttpMessageNotWritableException("Null key in AuthenticationResult attributes");
+            }
+            writeString(out, entry.getKey());
+            out.write(':');
+            if (entry.getValue() != null) {
+                writeString(out, entry.getValue());
+            } else {
+                out.write(NULL, 0, NULL.length);
+            }
+            first = false;
+        }
+        out.write('}');
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        out.write('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out.write(c);
+                } else {
+                    writeEscaped(out, c);
+                }
+            } else if (c < 0x800) {
+                out.write(0xc0 | (c >> 6));
+                out.write(0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (!Character.isHighSurrogate(c) || i + 1 >= length || !Character.isLowSurrogate(value.charAt(i + 1))) {
+                    throw new HttpMessageNotWritableException("Invalid surrogate character in AuthenticationResult");
+                }
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.write(0xf0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3f));
+                out.write(0x80 | ((codePoint >> 6) & 0x3f));
+                out.write(0x80 | (codePoint & 0x3f));
+            } else {
+                out.write(0xe0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3f));
+                out.write(0x80 | (c & 0x3f));
+            }
+        }
+        out.write('"');
+    }
+
+    private static void writeEscaped(ByteArrayOutputStream out, char c) {
+        out.write('\\');
+        switch (c) {
+            case '"':
+            case '\\':
+                out.write(c);
+                break;
+            case '\b':
+                out.write('b');
+                break;
+            case '\t':
+                out.write('t');
+                break;
+            case '\n':
+                out.write('n');
+                break;
+            case '\f':
+                out.write('f');
+                break;
+            case '\r':
+                out.write('r');
+                break;
+            default:
+                out.write('u');
+                out.write('0');
+                out.write('0');
+                out.write(HEX[c >> 4]);
+                out.write(HEX[c & 0xf]);
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
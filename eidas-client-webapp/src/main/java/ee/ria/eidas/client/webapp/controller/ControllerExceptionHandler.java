@@ -2,8 +2,12 @@ package ee.ria.eidas.client.webapp.controller;
 
 import ee.ria.eidas.client.exception.AuthenticationFailedException;
 import ee.ria.eidas.client.exception.InvalidRequestException;
+import ee.ria.eidas.client.exception.ValidationFailureException;
+import ee.ria.eidas.client.webapp.logging.ErrorLogAggregator;
+import ee.ria.eidas.client.webapp.logging.ErrorLogAggregator.Category;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
@@ -13,6 +17,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Collections;
 import java.util.Map;
@@ -24,11 +29,14 @@ public class ControllerExceptionHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ControllerExceptionHandler.class);
 
+    @Autowired
+    private ErrorLogAggregator errorLogAggregator;
+
     @ExceptionHandler ({InvalidRequestException.class, MissingServletRequestParameterException.class, MethodArgumentTypeMismatchException.class })
     @ResponseBody
     @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public Map handleBadRequest(Exception exception) {
-        LOGGER.error("Bad request!", exception);
+    public Map handleBadRequest(Exception exception, HttpServletRequest request) {
+        errorLogAggregator.log(Category.BAD_REQUEST, exception.getClass().getSimpleName(), request, exception.getMessage(), exception);
 
         if (exception instanceof MethodArgumentTypeMismatchException) {
             String name = ((MethodArgumentTypeMismatchException) exception).getName();
@@ -38,19 +46,27 @@ public class ControllerExceptionHandler {
         }
     }
 
+    @ExceptionHandler
+    @ResponseBody
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map handleValidationFailure(ValidationFailureException exception, HttpServletRequest request) {
+        errorLogAggregator.log(Category.BAD_REQUEST, exception.getErrorCode().name(), request, exception.getMessage(), null);
+        return getMap(HttpStatus.BAD_REQUEST, exception.getMessage());
+    }
+
     @ExceptionHandler
     @ResponseBody
     @ResponseStatus(HttpStatus.UNAUTHORIZED)
-    public Map handleAuthenticationFailure(AuthenticationFailedException exception) {
-        LOGGER.error("Authentication failed!", exception);
+    public Map handleAuthenticationFailure(AuthenticationFailedException exception, HttpServletRequest request) {
+        errorLogAggregator.log(Category.AUTHENTICATION_FAILED, exception.getClass().getSimpleName(), request, exception.getMessage(), null);
         return getMap(HttpStatus.UNAUTHORIZED, exception.getMessage());
     }
 
     @ExceptionHandler
     @ResponseBody
     @ResponseStatus(HttpStatus.METHOD_NOT_ALLOWED)
-    public Map handleAuthenticationFailure(HttpRequestMethodNotSupportedException exception) {
-        LOGGER.error("Method not allowed!", exception);
+    public Map handleAuthenticationFailure(HttpRequestMethodNotSupportedException exception, HttpServletRequest request) {
+        errorLogAggregator.log(Category.METHOD_NOT_ALLOWED, exception.getMethod(), request, exception.getMessage(), null);
         return getMap(HttpStatus.METHOD_NOT_ALLOWED, exception.getMessage());
     }
 
@@ -4,15 +4,18 @@ import ee.ria.eidas.client.AuthInitiationService;
 import ee.ria.eidas.client.config.EidasClientProperties;
 import ee.ria.eidas.client.metadata.IDPMetadataResolver;
 import ee.ria.eidas.client.metadata.SPMetadataGenerator;
-import ee.ria.eidas.client.util.OpenSAMLUtils;
-import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import ee.ria.eidas.client.metadata.SignedMetadata;
+import ee.ria.eidas.client.metadata.SupportedCountries;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.eidas.client.webapp.EidasClientApi.ENDPOINT_METADATA_METADATA;
 import static ee.ria.eidas.client.webapp.EidasClientApi.ENDPOINT_METADATA_SUPPORTED_COUNTRIES;
@@ -33,13 +36,44 @@ public class MetadataController {
     private IDPMetadataResolver idpMetadataResolver;
 
     @GetMapping(value = ENDPOINT_METADATA_METADATA, produces = { "application/xml", "text/xml" }, consumes = MediaType.ALL_VALUE)
-    public @ResponseBody String metadata() {
-        EntityDescriptor entityDescriptor = metadataGenerator.getMetadata();
-        return OpenSAMLUtils.getXmlString(entityDescriptor);
+    public ResponseEntity<byte[]> metadata(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        SignedMetadata signedMetadata = metadataGenerator.getSignedMetadata();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(eidasClientProperties.getMetadataCacheMaxAge(), TimeUnit.SECONDS));
+
+        if (signedMetadata.getGzippedDocument() == null) {
+            return response.eTag(signedMetadata.getEtag()).body(signedMetadata.getDocument());
+        }
+
+        response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(acceptEncoding)) {
+            return response.eTag(signedMetadata.getGzipEtag())
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(signedMetadata.getGzippedDocument());
+        } else {
+            return response.eTag(signedMetadata.getEtag()).body(signedMetadata.getDocument());
+        }
     }
 
     @GetMapping(value = ENDPOINT_METADATA_SUPPORTED_COUNTRIES, produces = { "application/json" }, consumes = MediaType.ALL_VALUE)
-    public @ResponseBody List<String> countries() {
-        return idpMetadataResolver.getSupportedCountries();
+    public ResponseEntity<byte[]> countries() {
+        SupportedCountries supportedCountries = idpMetadataResolver.getSupportedCountriesSnapshot();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(supportedCountries.getEtag())
+                .body(supportedCountries.getJson());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0{0,3})?");
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,195 @@
+package ee.ria.eidas.client.webapp.logging;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.constraints.Min;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Logs client errors aggregated by category, error code, endpoint and country.
+ * <p>
+ * Within a time window only the first occurrences of each combination are logged as exemplars, with the exception if
+ * one is given. Further identical errors are only counted and reported with a single summary line at the end of the
+ * window, so a misbehaving client cannot flood the log with identical entries. The number of tracked combinations is
+ * limited, the errors of the combinations exceeding the limit are counted together.
+ */
+@Component
+@Validated
+@ConfigurationProperties(prefix = "eidas.client.error-logging")
+public class ErrorLogAggregator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ErrorLogAggregator.class);
+
+    private static final Pattern COUNTRY_PATTERN = Pattern.compile("^[A-Za-z]{2}$");
+
+    private static final String COUNTRY_PARAMETER = "Country";
+
+    private static final String OTHER = "*";
+
+    public enum Category {
+        BAD_REQUEST("Bad request!"),
+        AUTHENTICATION_FAILED("Authentication failed!"),
+        METHOD_NOT_ALLOWED("Method not allowed!"),
+        TOO_MANY_REQUESTS("Too many requests!");
+
+        private final String description;
+
+        Category(String description) {
+            this.description = description;
+        }
+    }
+
+    @Getter
+    @Setter
+    private boolean enabled = true;
+
+    @Getter
+    @Setter
+    @Min(1)
+    private int window = 60;
+
+    @Getter
+    @Setter
+    @Min(0)
+    private int maxExemplars = 3;
+
+    @Getter
+    @Setter
+    private Map<Category, Integer> maxExemplarsPerCategory = new HashMap<>();
+
+    @Getter
+    @Setter
+    @Min(1)
+    private int maxKeys = 1000;
+
+    private final ConcurrentMap<Key, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "error-log-aggregator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            executor.scheduleWithFixedDelay(this::flush, window, window, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Logs the error if it is one of the exemplars of its combination in the current window, otherwise only counts it.
+     */
+    public void log(Category category, String errorCode, HttpServletRequest request, String message, Throwable exception) {
+        if (!enabled) {
+            LOGGER.error("{} {}: {}", category.description, errorCode, message, exception);
+            return;
+        }
+        long count = increment(new Key(category, errorCode, request.getRequestURI(), getCountry(request)));
+        if (count <= getMaxExemplars(category)) {
+            LOGGER.error("{} {}: {}", category.description, errorCode, message, exception);
+        }
+    }
+
+    /**
+     * Reports the errors counted in the window that ended and starts a new window. The counters are drained in place,
+     * so errors counted concurrently are reported in the next window. Counters that stayed at zero for a whole window
+     * are removed.
+     */
+    void flush() {
+        counters.forEach((key, counter) -> {
+            long count = counter.getAndSet(0);
+            if (count == 0) {
+                counters.remove(key, counter);
+                return;
+            }
+            long suppressed = count - getMaxExemplars(key.category);
+            if (suppressed > 0) {
+                LOGGER.error("{} {} identical errors not logged in the last {} seconds, {} in total: errorCode={}, endpoint={}, country={}",
+                        key.category.description, suppressed, window, count, key.errorCode, key.endpoint, key.country);
+            }
+        });
+    }
+
+    private long increment(Key key) {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            if (counters.size() >= maxKeys) {
+                key = new Key(key.category, OTHER, OTHER, OTHER);
+            }
+            counter = counters.computeIfAbsent(key, k -> new AtomicLong());
+        }
+        return counter.incrementAndGet();
+    }
+
+    private int getMaxExemplars(Category category) {
+        return maxExemplarsPerCategory.getOrDefault(category, maxExemplars);
+    }
+
+    private static String getCountry(HttpServletRequest request) {
+        String country = request.getParameter(COUNTRY_PARAMETER);
+        if (country == null) {
+            return null;
+        }
+        return COUNTRY_PATTERN.matcher(country).matches() ? country.toUpperCase() : OTHER;
+    }
+
+    private static final class Key {
+
+        private final Category category;
+        private final String errorCode;
+        private final String endpoint;
+        private final String country;
+
+        private Key(Category category, String errorCode, String endpoint, String country) {
+            this.category = category;
+            this.errorCode = errorCode;
+            this.endpoint = endpoint;
+            this.country = country;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return category == key.category
+                    && Objects.equals(errorCode, key.errorCode)
+                    && Objects.equals(endpoint, key.endpoint)
+                    && Objects.equals(country, key.country);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(category, errorCode, endpoint, country);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
+import org.springframework.core.task.TaskDecorator;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,4 +25,9 @@ public class LoggingConfiguration {
         return bean;
     }
 
+    @Bean
+    public TaskDecorator mdcTaskDecorator() {
+        return new MDCTaskDecorator();
+    }
+
 }
@@ -1,17 +1,27 @@
 package ee.ria.eidas.client.webapp.logging;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.MDC;
 
 import javax.servlet.*;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.security.SecureRandom;
 import java.util.Base64;
-
+import java.util.regex.Pattern;
+
+/**
+ * Puts the request and correlation identifiers into the logging MDC.
+ * <p>
+ * The correlation ID is taken from the {@code X-Correlation-ID} header or, when it is missing, from a correlation
+ * cookie. The cookie is issued with a random value when a client starting an authentication at {@code /login} does not
+ * have one yet, so the correlation ID stays the same for the following {@code /returnUrl} request. No servlet session
+ * is created for deriving the correlation ID.
+ */
 @Slf4j
 public class LoggingMDCServletFilter implements Filter {
 
@@ -21,9 +31,16 @@ public class LoggingMDCServletFilter implements Filter {
 
     private static final String REQUEST_ID_HEADER = "X-Request-ID";
     private static final String CORRELATION_ID_HEADER = "X-Correlation-ID";
+    static final String CORRELATION_ID_COOKIE = "EIDAS_CORRELATION_ID";
+
+    private static final String CORRELATION_ID_ISSUING_PATH = "/login";
+    private static final int CORRELATION_ID_LENGTH = 32;
+    private static final Pattern CORRELATION_ID_PATTERN = Pattern.compile("^[A-Za-z0-9_-]{43}$");
 
     private static final char[] REQUEST_ID_CHARACTER_SET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
 
+    private final SecureRandom secureRandom = new SecureRandom();
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
     }
@@ -35,7 +52,7 @@ public class LoggingMDCServletFilter implements Filter {
 
             addContextAttribute(MDC_ATTRIBUTE_REQUEST, getRequestMethodAndUrl(request));
             addContextAttribute(MDC_ATTRIBUTE_REQUEST_ID, getRequestRequestId(request));
-            addContextAttribute(MDC_ATTRIBUTE_SESSION_ID, getRequestSessionId(request));
+            addContextAttribute(MDC_ATTRIBUTE_SESSION_ID, getRequestSessionId(request, (HttpServletResponse) servletResponse));
 
             filterChain.doFilter(servletRequest, servletResponse);
         } finally {
@@ -66,18 +83,48 @@ public class LoggingMDCServletFilter implements Filter {
         return requestId;
     }
 
-    private static String getRequestSessionId(HttpServletRequest request) {
+    private String getRequestSessionId(HttpServletRequest request, HttpServletResponse response) {
         String sessionId = request.getHeader(CORRELATION_ID_HEADER);
         if (sessionId != null) return sessionId;
 
-        sessionId = getSessionIdHash(request.getSession(true));
+        sessionId = getCorrelationIdCookie(request);
+        if (sessionId != null) return sessionId;
+
+        sessionId = generateCorrelationId();
+        if (CORRELATION_ID_ISSUING_PATH.equals(request.getServletPath())) {
+            addCorrelationIdCookie(request, response, sessionId);
+        }
         log.debug("No " + CORRELATION_ID_HEADER + " header provided in request, generated: " + sessionId);
         return sessionId;
     }
 
-    private static String getSessionIdHash(HttpSession session) {
-        final byte[] sessionIdHashBytes = DigestUtils.sha256(session.getId());
-        return Base64.getUrlEncoder().encodeToString(sessionIdHashBytes);
+    private static String getCorrelationIdCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return null;
+
+        for (Cookie cookie : cookies) {
+            if (CORRELATION_ID_COOKIE.equals(cookie.getName()) && cookie.getValue() != null
+                    && CORRELATION_ID_PATTERN.matcher(cookie.getValue()).matches()) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private String generateCorrelationId() {
+        byte[] bytes = new byte[CORRELATION_ID_LENGTH];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 
+    private static void addCorrelationIdCookie(HttpServletRequest request, HttpServletResponse response, String correlationId) {
+        StringBuilder cookie = new StringBuilder(CORRELATION_ID_COOKIE).append('=').append(correlationId)
+                .append("; Path=").append(StringUtils.defaultIfEmpty(request.getContextPath(), "/"))
+                .append("; HttpOnly");
+        if (request.isSecure()) {
+            // The SAML response may be posted back cross-site, which requires SameSite=None and a secure cookie
+            cookie.append("; Secure; SameSite=None");
+        }
+        response.addHeader("Set-Cookie", cookie.toString());
+    }
 }
@@ -0,0 +1,35 @@
+package ee.ria.eidas.client.webapp.logging;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Map;
+
+/**
+ * Copies the MDC of the submitting thread to the thread running the task, so log events of asynchronously executed
+ * tasks keep the request and correlation identifiers set by {@link LoggingMDCServletFilter}.
+ */
+public class MDCTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        final Map<String, String> contextMap = MDC.getCopyOfContextMap();
+        return () -> {
+            final Map<String, String> previousContextMap = MDC.getCopyOfContextMap();
+            if (contextMap != null) {
+                MDC.setContextMap(contextMap);
+            } else {
+                MDC.clear();
+            }
+            try {
+                runnable.run();
+            } finally {
+                if (previousContextMap != null) {
+                    MDC.setContextMap(previousContextMap);
+                } else {
+                    MDC.clear();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package ee.ria.eidas.client.webapp.security;
+
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.map.AbstractEntryProcessor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the request counts admitted by the local {@link RateLimiter}s between the Hazelcast cluster members.
+ * <p>
+ * Every member periodically adds its admitted counts per key to a cluster wide running total. The growth of a total
+ * since the previous synchronization of the member, less the member's own requests, was admitted by the other members
+ * and is charged to the local bucket. Only keys with local traffic in consecutive intervals are charged, so the
+ * cluster wide limits are approximate and the local limits always apply.
+ */
+@Slf4j
+public class HazelcastRateLimitSynchronizer {
+
+    public static final String RATE_LIMIT_MAP = "rateLimitMap";
+
+    private static final int MIN_TIME_TO_LIVE = 60;
+
+    private final HazelcastInstance hazelcastInstance;
+
+    private final List<RateLimiter> rateLimiters;
+
+    private final int interval;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rate-limit-synchronizer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Map<String, Long> previousTotals = new HashMap<>();
+
+    private IMap<String, Long> totalsMap;
+
+    public HazelcastRateLimitSynchronizer(HazelcastInstance hazelcastInstance, int interval, RateLimiter... rateLimiters) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.interval = interval;
+        this.rateLimiters = Arrays.asList(rateLimiters);
+        this.rateLimiters.forEach(RateLimiter::trackAdmittedCounts);
+    }
+
+    @PostConstruct
+    public void start() {
+        hazelcastInstance.getConfig().addMapConfig(new MapConfig(RATE_LIMIT_MAP)
+                .setBackupCount(0)
+                .setTimeToLiveSeconds(Math.max(MIN_TIME_TO_LIVE, interval * 10)));
+        totalsMap = hazelcastInstance.getMap(RATE_LIMIT_MAP);
+        executor.scheduleWithFixedDelay(this::synchronize, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void synchronize() {
+        Map<String, Long> totals = new HashMap<>();
+        for (RateLimiter rateLimiter : rateLimiters) {
+            try {
+                synchronize(rateLimiter, totals);
+            } catch (Exception e) {
+                log.warn("Failed to synchronize rate limiter [{}] with the cluster: {}", rateLimiter.getName(), e.getMessage());
+            }
+        }
+        previousTotals = totals;
+    }
+
+    private void synchronize(RateLimiter rateLimiter, Map<String, Long> totals) {
+        Map<String, Long> admittedCounts = new HashMap<>();
+        rateLimiter.drainAdmittedCounts().forEach((key, count) -> admittedCounts.put(rateLimiter.getName() + ':' + key, count));
+        if (admittedCounts.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> updatedTotals = totalsMap.executeOnKeys(admittedCounts.keySet(), new AddCountEntryProcessor(admittedCounts));
+        int prefixLength = rateLimiter.getName().length() + 1;
+        updatedTotals.forEach((clusterKey, total) -> {
+            Long previousTotal = previousTotals.get(clusterKey);
+            if (previousTotal != null) {
+                rateLimiter.charge(clusterKey.substring(prefixLength), (Long) total - previousTotal - admittedCounts.get(clusterKey));
+            }
+            totals.put(clusterKey, (Long) total);
+        });
+    }
+
+    static class AddCountEntryProcessor extends AbstractEntryProcessor<String, Long> {
+
+        private final HashMap<String, Long> counts;
+
+        AddCountEntryProcessor(Map<String, Long> counts) {
+            this.counts = new HashMap<>(counts);
+        }
+
+        @Override
+        public Object process(Map.Entry<String, Long> entry) {
+            Long total = entry.getValue();
+            Long count = counts.get(entry.getKey());
+            long updatedTotal = (total != null ? total : 0) + (count != null ? count : 0);
+            entry.setValue(updatedTotal);
+            return updatedTotal;
+        }
+    }
+}
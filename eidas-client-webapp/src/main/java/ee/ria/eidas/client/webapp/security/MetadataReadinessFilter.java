@@ -0,0 +1,78 @@
+package ee.ria.eidas.client.webapp.security;
+
+import ee.ria.eidas.client.metadata.IDPMetadataResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This filter rejects requests to the authentication and supported countries endpoints until the IDP metadata has been loaded.
+ * When the first valid IDP metadata snapshot is available, the processing of the incoming request is continued as if this filter didn't exist.
+ * Until then the further processing of the incoming request is stopped and a 503 response, with a simple JSON object describing the error, is sent.
+ * Only the first rejected request is logged as a warning, the following ones are logged on debug level until the metadata becomes available.
+ */
+public class MetadataReadinessFilter implements Filter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataReadinessFilter.class);
+
+    static final String ERROR_MESSAGE = "IDP metadata is not available yet. Please try again later.";
+
+    private final IDPMetadataResolver idpMetadataResolver;
+
+    private final int retryAfter;
+
+    private final AtomicBoolean rejecting = new AtomicBoolean();
+
+    public MetadataReadinessFilter(final IDPMetadataResolver idpMetadataResolver, final int retryAfter) {
+        this.idpMetadataResolver = idpMetadataResolver;
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        if (idpMetadataResolver.isReady()) {
+            if (rejecting.compareAndSet(true, false)) {
+                LOGGER.info("IDP metadata is available, accepting authentication requests");
+            }
+            filterChain.doFilter(servletRequest, servletResponse);
+        } else {
+            sendServiceUnavailableResponse((HttpServletResponse) servletResponse);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private void sendServiceUnavailableResponse(final HttpServletResponse response) throws IOException {
+        if (rejecting.compareAndSet(false, true)) {
+            LOGGER.warn(ERROR_MESSAGE);
+        } else {
+            LOGGER.debug(ERROR_MESSAGE);
+        }
+
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+
+        try (PrintWriter writer = response.getWriter()) {
+            writer.format("{\"error\":\"%s\",\"message\":\"%s\"}",
+                    HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase(),
+                    ERROR_MESSAGE
+            );
+            writer.flush();
+        }
+    }
+
+}
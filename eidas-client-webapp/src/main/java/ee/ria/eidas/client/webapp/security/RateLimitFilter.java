@@ -0,0 +1,116 @@
+package ee.ria.eidas.client.webapp.security;
+
+import ee.ria.eidas.client.webapp.EidasClientApi;
+import ee.ria.eidas.client.webapp.logging.ErrorLogAggregator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * This filter limits the rate of requests to the authentication endpoints per client address and, for the login
+ * endpoint, per requested country.
+ * When the rate limits are not exceeded, the processing of the incoming request is continued as if this filter didn't exist.
+ * Otherwise the further processing of the incoming request is stopped and a 429 response, with a simple JSON object
+ * describing the error and the Retry-After header, is sent.
+ */
+public class RateLimitFilter implements Filter {
+
+    static final String ERROR_MESSAGE = "Too many requests. Please try again later.";
+
+    static final String CLIENT_RATE_LIMIT_EXCEEDED = "CLIENT_RATE_LIMIT_EXCEEDED";
+    static final String COUNTRY_RATE_LIMIT_EXCEEDED = "COUNTRY_RATE_LIMIT_EXCEEDED";
+
+    private static final String COUNTRY_PARAMETER = "Country";
+    private static final Pattern COUNTRY_PATTERN = Pattern.compile("^[A-Za-z]{2}$");
+
+    private static final int EVICTION_INTERVAL = 10;
+
+    private final RateLimiter clientRateLimiter;
+
+    private final RateLimiter countryRateLimiter;
+
+    private final ErrorLogAggregator errorLogAggregator;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rate-limit-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RateLimitFilter(final RateLimiter clientRateLimiter, final RateLimiter countryRateLimiter, final ErrorLogAggregator errorLogAggregator) {
+        this.clientRateLimiter = clientRateLimiter;
+        this.countryRateLimiter = countryRateLimiter;
+        this.errorLogAggregator = errorLogAggregator;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        executor.scheduleWithFixedDelay(() -> {
+            clientRateLimiter.evictExpired();
+            countryRateLimiter.evictExpired();
+        }, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        final HttpServletRequest request = (HttpServletRequest) servletRequest;
+
+        long waitTime = clientRateLimiter.tryAcquire(request.getRemoteAddr());
+        if (waitTime > 0) {
+            sendTooManyRequestsResponse(request, (HttpServletResponse) servletResponse, CLIENT_RATE_LIMIT_EXCEEDED, waitTime);
+            return;
+        }
+
+        final String country = getCountry(request);
+        if (country != null) {
+            waitTime = countryRateLimiter.tryAcquire(country);
+            if (waitTime > 0) {
+                sendTooManyRequestsResponse(request, (HttpServletResponse) servletResponse, COUNTRY_RATE_LIMIT_EXCEEDED, waitTime);
+                return;
+            }
+        }
+
+        filterChain.doFilter(servletRequest, servletResponse);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private String getCountry(HttpServletRequest request) {
+        if (!countryRateLimiter.isEnabled() || !EidasClientApi.ENDPOINT_AUTHENTICATION_LOGIN.equals(request.getServletPath())) {
+            return null;
+        }
+        final String country = request.getParameter(COUNTRY_PARAMETER);
+        return country != null && COUNTRY_PATTERN.matcher(country).matches() ? country.toUpperCase(Locale.ROOT) : null;
+    }
+
+    private void sendTooManyRequestsResponse(final HttpServletRequest request, final HttpServletResponse response,
+                                             final String errorCode, final long waitTime) throws IOException {
+        errorLogAggregator.log(ErrorLogAggregator.Category.TOO_MANY_REQUESTS, errorCode, request, ERROR_MESSAGE, null);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (waitTime + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1))));
+
+        try (PrintWriter writer = response.getWriter()) {
+            writer.format("{\"error\":\"%s\",\"message\":\"%s\"}",
+                    HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase(),
+                    ERROR_MESSAGE
+            );
+            writer.flush();
+        }
+    }
+
+}
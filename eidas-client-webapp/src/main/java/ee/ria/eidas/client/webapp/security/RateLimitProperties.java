@@ -0,0 +1,51 @@
+package ee.ria.eidas.client.webapp.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+@Validated
+@ConfigurationProperties(prefix = "security.rate-limit")
+@Data
+public class RateLimitProperties {
+
+    private static final int DEFAULT_CLIENT_REQUESTS_PER_SECOND = 5;
+    private static final int DEFAULT_CLIENT_BURST = 20;
+    private static final int DEFAULT_COUNTRY_REQUESTS_PER_SECOND = 100;
+    private static final int DEFAULT_COUNTRY_BURST = 200;
+    private static final int DEFAULT_MAX_ENTRIES = 100000;
+    private static final int DEFAULT_HAZELCAST_SYNC_INTERVAL = 1;
+
+    private boolean enabled = false;
+
+    @Valid
+    private Limit client = new Limit(DEFAULT_CLIENT_REQUESTS_PER_SECOND, DEFAULT_CLIENT_BURST);
+
+    @Valid
+    private Limit country = new Limit(DEFAULT_COUNTRY_REQUESTS_PER_SECOND, DEFAULT_COUNTRY_BURST);
+
+    @Min(1)
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private boolean hazelcastSyncEnabled = false;
+
+    @Min(1)
+    private int hazelcastSyncInterval = DEFAULT_HAZELCAST_SYNC_INTERVAL;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        @Min(0)
+        private int requestsPerSecond;
+
+        @Min(1)
+        private int burst;
+    }
+}
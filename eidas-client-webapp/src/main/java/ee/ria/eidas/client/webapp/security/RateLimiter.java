@@ -0,0 +1,153 @@
+package ee.ria.eidas.client.webapp.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter with a bucket per key, implemented as a generic cell rate algorithm. The state of a bucket
+ * is a single theoretical arrival time, which is advanced by one emission interval for every admitted request with a
+ * compare-and-set, so the bucket table is updated without locking.
+ * <p>
+ * Buckets that have been refilled completely are evicted by {@link #evictExpired()}. When the table holds the maximum
+ * number of buckets, requests of new keys are admitted without limiting until expired buckets have been evicted, so
+ * that a flood of distinct keys cannot lock out the legitimate clients.
+ */
+public class RateLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimiter.class);
+
+    private final String name;
+
+    private final long emissionInterval;
+
+    private final long burstTolerance;
+
+    private final int maxEntries;
+
+    private final LongSupplier nanoClock;
+
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean full = new AtomicBoolean();
+
+    private volatile boolean admittedCountsTracked;
+
+    private volatile ConcurrentMap<String, LongAdder> admittedCounts = new ConcurrentHashMap<>();
+
+    public RateLimiter(String name, RateLimitProperties.Limit limit, int maxEntries) {
+        this(name, limit, maxEntries, System::nanoTime);
+    }
+
+    RateLimiter(String name, RateLimitProperties.Limit limit, int maxEntries, LongSupplier nanoClock) {
+        this.name = name;
+        this.emissionInterval = limit.getRequestsPerSecond() > 0 ? TimeUnit.SECONDS.toNanos(1) / limit.getRequestsPerSecond() : 0;
+        this.burstTolerance = emissionInterval * limit.getBurst();
+        this.maxEntries = maxEntries;
+        this.nanoClock = nanoClock;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEnabled() {
+        return emissionInterval > 0;
+    }
+
+    /**
+     * @return 0 if the request is admitted, otherwise the time in nanoseconds after which it would be admitted
+     */
+    public long tryAcquire(String key) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        AtomicLong bucket = getBucket(key);
+        if (bucket == null) {
+            return 0;
+        }
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long arrivalTime = bucket.get();
+            long nextArrivalTime = Math.max(arrivalTime, now) + emissionInterval;
+            long waitTime = nextArrivalTime - now - burstTolerance;
+            if (waitTime > 0) {
+                return waitTime;
+            }
+            if (bucket.compareAndSet(arrivalTime, nextArrivalTime)) {
+                if (admittedCountsTracked) {
+                    admittedCounts.computeIfAbsent(key, k -> new LongAdder()).increment();
+                }
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Consumes tokens admitted elsewhere from the bucket of an existing key, without emptying it further than a burst.
+     */
+    void charge(String key, long requests) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null || requests <= 0 || !isEnabled()) {
+            return;
+        }
+        bucket.updateAndGet(arrivalTime -> {
+            long now = nanoClock.getAsLong();
+            long chargedArrivalTime = Math.min(Math.max(arrivalTime, now) + requests * emissionInterval, now + burstTolerance);
+            return Math.max(arrivalTime, chargedArrivalTime);
+        });
+    }
+
+    /**
+     * Starts counting the admitted requests per key, for them to be shared with the other cluster members.
+     */
+    void trackAdmittedCounts() {
+        admittedCountsTracked = true;
+    }
+
+    /**
+     * @return the number of requests admitted per key since the previous call
+     */
+    Map<String, Long> drainAdmittedCounts() {
+        ConcurrentMap<String, LongAdder> counts = admittedCounts;
+        admittedCounts = new ConcurrentHashMap<>();
+        Map<String, Long> result = new HashMap<>();
+        counts.forEach((key, count) -> result.put(key, count.sum()));
+        return result;
+    }
+
+    public void evictExpired() {
+        long now = nanoClock.getAsLong();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        if (buckets.size() < maxEntries && full.compareAndSet(true, false)) {
+            LOGGER.info("Rate limiter '{}' is limiting new keys again", name);
+        }
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong getBucket(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxEntries) {
+            if (full.compareAndSet(false, true)) {
+                LOGGER.warn("Rate limiter '{}' has reached the maximum of {} keys, requests of new keys are not limited", name, maxEntries);
+            }
+            return null;
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(nanoClock.getAsLong()));
+    }
+}
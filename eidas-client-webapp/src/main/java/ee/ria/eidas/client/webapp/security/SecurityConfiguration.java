@@ -1,8 +1,15 @@
 package ee.ria.eidas.client.webapp.security;
 
+import com.hazelcast.core.HazelcastInstance;
+import ee.ria.eidas.client.config.EidasClientProperties;
+import ee.ria.eidas.client.metadata.IDPMetadataResolver;
 import ee.ria.eidas.client.webapp.EidasClientApi;
+import ee.ria.eidas.client.webapp.logging.ErrorLogAggregator;
 import org.apache.commons.collections.CollectionUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,10 +26,13 @@ import static java.util.Arrays.asList;
 import static org.springframework.util.StringUtils.tokenizeToStringArray;
 
 @Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
 public class SecurityConfiguration {
 
     public static final String SECURITY_DISABLED_HTTP_METHODS = "security.disabled-http-methods";
     public static final String SECURITY_ALLOWED_AUTHENTICATION_PORT = "security.allowed-authentication-port";
+    public static final String SECURITY_RATE_LIMIT_ENABLED = "security.rate-limit.enabled";
+    public static final String SECURITY_RATE_LIMIT_HAZELCAST_SYNC_ENABLED = "security.rate-limit.hazelcast-sync-enabled";
 
     @Bean
     @ConditionalOnProperty(value = SECURITY_DISABLED_HTTP_METHODS)
@@ -56,14 +66,75 @@ public class SecurityConfiguration {
         bean.setInitParameters(new HashMap<>());
         bean.setName("authenticationPortFilter");
         bean.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
-        bean.setUrlPatterns(
-                Arrays.stream(EidasClientApi.Endpoint.values())
-                        .filter(ep -> ep.getType() == EidasClientApi.Endpoint.Type.AUTHENTICATION)
-                        .map(ep -> ep.getUrlPattern())
-                        .collect(Collectors.toList())
-        );
+        bean.setUrlPatterns(getAuthenticationEndpointUrlPatterns());
 
         return bean;
     }
 
+    @Bean
+    @ConditionalOnProperty(value = SECURITY_RATE_LIMIT_ENABLED, havingValue = "true")
+    public RateLimiter clientRateLimiter(RateLimitProperties rateLimitProperties) {
+        return new RateLimiter("client", rateLimitProperties.getClient(), rateLimitProperties.getMaxEntries());
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = SECURITY_RATE_LIMIT_ENABLED, havingValue = "true")
+    public RateLimiter countryRateLimiter(RateLimitProperties rateLimitProperties) {
+        return new RateLimiter("country", rateLimitProperties.getCountry(), rateLimitProperties.getMaxEntries());
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = SECURITY_RATE_LIMIT_ENABLED, havingValue = "true")
+    public FilterRegistrationBean rateLimitFilter(@Qualifier("clientRateLimiter") RateLimiter clientRateLimiter,
+                                                  @Qualifier("countryRateLimiter") RateLimiter countryRateLimiter,
+                                                  ErrorLogAggregator errorLogAggregator) {
+        final FilterRegistrationBean bean = new FilterRegistrationBean();
+        bean.setFilter(new RateLimitFilter(clientRateLimiter, countryRateLimiter, errorLogAggregator));
+        bean.setInitParameters(new HashMap<>());
+        bean.setName("rateLimitFilter");
+        bean.setOrder(Ordered.HIGHEST_PRECEDENCE + 3);
+        bean.setUrlPatterns(getAuthenticationEndpointUrlPatterns());
+
+        return bean;
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = {SECURITY_RATE_LIMIT_ENABLED, SECURITY_RATE_LIMIT_HAZELCAST_SYNC_ENABLED}, havingValue = "true")
+    public HazelcastRateLimitSynchronizer rateLimitSynchronizer(ObjectProvider<HazelcastInstance> hazelcastInstance,
+                                                                RateLimitProperties rateLimitProperties,
+                                                                @Qualifier("clientRateLimiter") RateLimiter clientRateLimiter,
+                                                                @Qualifier("countryRateLimiter") RateLimiter countryRateLimiter) {
+        final HazelcastInstance instance = hazelcastInstance.getIfAvailable();
+        if (instance == null) {
+            throw new IllegalStateException("Please check your configuration. " + SECURITY_RATE_LIMIT_HAZELCAST_SYNC_ENABLED
+                    + " requires eidas.client.hazelcast-enabled");
+        }
+        return new HazelcastRateLimitSynchronizer(instance, rateLimitProperties.getHazelcastSyncInterval(), clientRateLimiter, countryRateLimiter);
+    }
+
+    @Bean
+    public FilterRegistrationBean metadataReadinessFilter(IDPMetadataResolver idpMetadataResolver, EidasClientProperties eidasClientProperties) {
+        final FilterRegistrationBean bean = new FilterRegistrationBean();
+        bean.setFilter(new MetadataReadinessFilter(idpMetadataResolver, eidasClientProperties.getIdpMetadataInitializationRetryInterval()));
+        bean.setInitParameters(new HashMap<>());
+        bean.setName("metadataReadinessFilter");
+        bean.setOrder(Ordered.HIGHEST_PRECEDENCE + 4);
+        bean.setUrlPatterns(getMetadataDependentUrlPatterns());
+
+        return bean;
+    }
+
+    private static List<String> getMetadataDependentUrlPatterns() {
+        List<String> urlPatterns = new ArrayList<>(getAuthenticationEndpointUrlPatterns());
+        urlPatterns.add(EidasClientApi.Endpoint.SUPPORTED_COUNTRIES.getUrlPattern());
+        return urlPatterns;
+    }
+
+    private static List<String> getAuthenticationEndpointUrlPatterns() {
+        return Arrays.stream(EidasClientApi.Endpoint.values())
+                .filter(ep -> ep.getType() == EidasClientApi.Endpoint.Type.AUTHENTICATION)
+                .map(ep -> ep.getUrlPattern())
+                .collect(Collectors.toList());
+    }
+
 }
@@ -0,0 +1,63 @@
+package ee.ria.eidas.client.webapp.status;
+
+import ee.ria.eidas.client.config.SPCredentialRegistry;
+import ee.ria.eidas.client.config.SPCredentials;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.x509.X509Credential;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ConditionalOnAvailableEndpoint(endpoint = CredentialsEndpoint.class)
+@Endpoint(id = "credentials", enableByDefault = false)
+@Component
+public class CredentialsEndpoint {
+
+    @Autowired
+    private SPCredentialRegistry spCredentialRegistry;
+
+    @ReadOperation(produces = {"application/json"})
+    public Map<String, Object> invoke() {
+        return describe(spCredentialRegistry.getCurrent());
+    }
+
+    @WriteOperation(produces = {"application/json"})
+    public Map<String, Object> reload() {
+        boolean reloaded = spCredentialRegistry.reload();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("reloaded", reloaded);
+        result.putAll(describe(spCredentialRegistry.getCurrent()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Map<String, Object> describe(SPCredentials credentials) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("metadataSigningCertificate", describe(credentials.getMetadataSigningCredential()));
+        result.put("requestSigningCertificate", describe(credentials.getAuthnReqSigningCredential()));
+        result.put("responseDecryptionCertificate", describe(credentials.getResponseDecryptionCredential()));
+        if (credentials.getPreviousResponseDecryptionCredential() != null) {
+            result.put("previousResponseDecryptionCertificate", describe(credentials.getPreviousResponseDecryptionCredential()));
+            result.put("previousResponseDecryptionCertificateAcceptedUntil", credentials.getPreviousResponseDecryptionCredentialExpiry().toString());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Map<String, Object> describe(Credential credential) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (credential instanceof X509Credential) {
+            X509Certificate certificate = ((X509Credential) credential).getEntityCertificate();
+            result.put("subject", certificate.getSubjectX500Principal().getName());
+            result.put("serialNumber", certificate.getSerialNumber().toString(16));
+            result.put("notAfter", certificate.getNotAfter().toInstant().toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,23 @@
+package ee.ria.eidas.client.webapp.status;
+
+import ee.ria.eidas.client.metadata.IDPMetadataResolver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the application as out of service until the IDP metadata has been loaded. Can be included in the
+ * readiness health group (see <code>management.endpoint.health.group.readiness.include</code>).
+ */
+@Component("idpMetadata")
+public class IDPMetadataHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private IDPMetadataResolver idpMetadataResolver;
+
+    @Override
+    public Health health() {
+        return idpMetadataResolver.isReady() ? Health.up().build() : Health.outOfService().build();
+    }
+}
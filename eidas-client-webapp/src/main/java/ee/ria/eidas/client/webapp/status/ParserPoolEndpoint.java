@@ -0,0 +1,25 @@
+package ee.ria.eidas.client.webapp.status;
+
+import ee.ria.eidas.client.config.InstrumentedParserPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+@ConditionalOnAvailableEndpoint(endpoint = ParserPoolEndpoint.class)
+@Endpoint(id = "parserpool", enableByDefault = false)
+@Component
+public class ParserPoolEndpoint {
+
+    @Autowired
+    private InstrumentedParserPool parserPool;
+
+    @ReadOperation(produces = {"application/json"})
+    public Map<String, Object> invoke() {
+        return Collections.unmodifiableMap(parserPool.getStatistics());
+    }
+}
@@ -1,16 +1,21 @@
 package ee.ria.eidas.client.webapp;
 
+import com.hazelcast.core.HazelcastInstance;
+import ee.ria.eidas.client.metadata.IDPMetadataDocument;
 import io.restassured.http.ContentType;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import static ee.ria.eidas.client.metadata.HazelcastIDPMetadataCoordinator.IDP_METADATA_MAP;
 import static ee.ria.eidas.client.session.HazelcastRequestSessionServiceImpl.UNANSWERED_REQUESTS_MAP;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(
@@ -27,6 +32,19 @@ import static org.hamcrest.core.IsEqual.equalTo;
                 "management.endpoint.hazelcast.enabled=true"} )
 public class EidasClientApplicationHazelcastEnabledTest extends EidasClientApplicationTest {
 
+    @Autowired
+    private HazelcastInstance hazelcastInstance;
+
+    @Test
+    public void idpMetadata_shouldBePublishedToCluster_whenServerIsUp() {
+        IDPMetadataDocument document = hazelcastInstance.<String, IDPMetadataDocument>getReplicatedMap(IDP_METADATA_MAP)
+                .get("http://localhost:7771/EidasNode/ConnectorResponderMetadata");
+
+        assertThat(document, notNullValue());
+        assertThat(document.getVersion(), greaterThanOrEqualTo(1L));
+        assertThat(document.getDocument().length, greaterThan(0));
+    }
+
     @Test
     public void hazelcast_shouldSucceed_whenServerIsUp() {
         given()
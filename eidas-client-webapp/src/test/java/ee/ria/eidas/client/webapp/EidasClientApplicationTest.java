@@ -9,6 +9,7 @@ import ee.ria.eidas.client.authnrequest.AssuranceLevel;
 import ee.ria.eidas.client.authnrequest.EidasAttribute;
 import ee.ria.eidas.client.config.EidasClientProperties;
 import ee.ria.eidas.client.fixtures.ResponseBuilder;
+import ee.ria.eidas.client.metadata.IDPMetadataResolver;
 import ee.ria.eidas.client.session.RequestSessionService;
 import ee.ria.eidas.client.session.UnencodedRequestSession;
 import ee.ria.eidas.client.util.OpenSAMLUtils;
@@ -53,6 +54,7 @@ import static io.restassured.internal.matcher.xml.XmlXsdMatcher.matchesXsdInClas
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.core.IsEqual.equalTo;
 
 @Slf4j
@@ -73,6 +75,9 @@ public abstract class EidasClientApplicationTest {
     @Autowired
     EidasClientProperties eidasClientProperties;
 
+    @Autowired
+    IDPMetadataResolver idpMetadataResolver;
+
     private final static WireMockServer wireMockServer = new WireMockServer(WireMockConfiguration.wireMockConfig().port(7771));
 
     @LocalServerPort
@@ -121,6 +126,13 @@ public abstract class EidasClientApplicationTest {
                 .body("attributesTransliterated.FirstName", equalTo("Alexander"));
     }
 
+    @Before
+    public void waitForIdpMetadata() throws InterruptedException {
+        for (int i = 0; i < 100 && !idpMetadataResolver.isReady(); i++) {
+            Thread.sleep(100);
+        }
+    }
+
     @Before
     public void removeDefaultRequestIdFromSessionStore() {
         requestSessionService.getAndRemoveRequestSession(ResponseBuilder.DEFAULT_IN_RESPONSE_TO);
@@ -153,6 +165,28 @@ public abstract class EidasClientApplicationTest {
         SignatureValidator.validate(signableObj.getSignature(), metadataSigningCredential);
     }
 
+    @Test
+    public void metadata_shouldReturnNotModified_whenETagMatches() {
+        String etag = given()
+                .port(port)
+                .when()
+                .get("/metadata")
+                .then()
+                .statusCode(200)
+                .header("ETag", notNullValue())
+                .header("Cache-Control", equalTo("max-age=600"))
+                .extract().header("ETag");
+
+        given()
+                .port(port)
+                .header("If-None-Match", etag)
+                .when()
+                .get("/metadata")
+                .then()
+                .statusCode(304)
+                .header("ETag", equalTo(etag));
+    }
+
     @Test
     public void httpPostBinding_shouldPass_whenAllAllowedParamsPresent() {
         given()
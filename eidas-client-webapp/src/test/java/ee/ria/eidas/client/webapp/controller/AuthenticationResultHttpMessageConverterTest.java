@@ -0,0 +1,97 @@
+package ee.ria.eidas.client.webapp.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ee.ria.eidas.client.authnrequest.EidasAttribute;
+import ee.ria.eidas.client.fixtures.ResponseBuilder;
+import ee.ria.eidas.client.response.AuthenticationResult;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opensaml.core.config.InitializationService;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import org.opensaml.saml.saml2.core.impl.AttributeStatementBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AuthenticationResultHttpMessageConverterTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    private final ResponseBuilder responseBuilder = new ResponseBuilder(null, null);
+
+    private final AuthenticationResultHttpMessageConverter converter = new AuthenticationResultHttpMessageConverter();
+
+    @BeforeClass
+    public static void initialize() throws Exception {
+        InitializationService.initialize();
+    }
+
+    @Test
+    public void writesSameJsonAsJackson_whenTransliteratedAttributesPresent() throws Exception {
+        assertSameAsJackson(new AuthenticationResult(responseBuilder.buildAssertion("issuer", null)));
+    }
+
+    @Test
+    public void writesSameJsonAsJackson_whenAllAttributesPresent() throws Exception {
+        AttributeStatement attributeStatement = new AttributeStatementBuilder().buildObject();
+        for (EidasAttribute eidasAttribute : EidasAttribute.values()) {
+            attributeStatement.getAttributes().add(responseBuilder.buildAttribute(eidasAttribute.getFriendlyName(), eidasAttribute.getName(), Attribute.URI_REFERENCE, "xs:string", eidasAttribute.name()));
+        }
+        AuthenticationResult result = new AuthenticationResult(responseBuilder.buildAssertion("issuer",
+                Collections.singletonMap(ResponseBuilder.InputType.ATTRIBUTE_STATEMENT, Optional.of(attributeStatement))));
+
+        assertSameAsJackson(result);
+    }
+
+    @Test
+    public void writesSameJsonAsJackson_whenValuesNeedEscaping() throws Exception {
+        AuthenticationResult result = new AuthenticationResult(responseBuilder.buildAssertion("issuer", null));
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("Quote\"Backslash\\", "Line\nTab\tReturn\rFeed\fBack\bNul\u0000Unit\u001fDel\u007f/");
+        attributes.put("Unicode", "Ωνάσης Õäöü 漢字 😀  ");
+        attributes.put("Empty", "");
+        attributes.put("Null", null);
+        result.setAttributes(attributes);
+        result.setAttributesTransliterated(Collections.singletonMap("FamilyName", "O'Neil <tag> & more"));
+
+        assertSameAsJackson(result);
+    }
+
+    @Test
+    public void writesSameJsonAsJackson_whenPropertiesAreNullOrEmpty() throws Exception {
+        AuthenticationResult result = new AuthenticationResult(responseBuilder.buildAssertion("issuer", null));
+        result.setLevelOfAssurance(null);
+        result.setAttributes(null);
+        result.setAttributesTransliterated(Collections.emptyMap());
+        assertSameAsJackson(result);
+
+        result.setAttributes(Collections.emptyMap());
+        result.setAttributesTransliterated(null);
+        assertSameAsJackson(result);
+    }
+
+    @Test
+    public void supportsWritingJsonOnly() {
+        assertTrue(converter.canWrite(AuthenticationResult.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(AuthenticationResult.class, MediaType.APPLICATION_XML));
+        assertFalse(converter.canWrite(String.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canRead(AuthenticationResult.class, MediaType.APPLICATION_JSON));
+    }
+
+    private void assertSameAsJackson(AuthenticationResult result) throws Exception {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        converter.write(result, MediaType.APPLICATION_JSON, outputMessage);
+
+        assertArrayEquals(OBJECT_MAPPER.writeValueAsString(result), OBJECT_MAPPER.writeValueAsBytes(result), outputMessage.getBodyAsBytes());
+    }
+}
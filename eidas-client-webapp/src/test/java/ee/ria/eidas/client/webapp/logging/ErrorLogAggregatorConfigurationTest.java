@@ -0,0 +1,41 @@
+package ee.ria.eidas.client.webapp.logging;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+public class ErrorLogAggregatorConfigurationTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(TestConfiguration.class);
+
+    @Test
+    public void contextStartsWithDefaultProperties() {
+        contextRunner.run(context -> {
+            Assert.assertNull(context.getStartupFailure());
+            Assert.assertEquals(60, context.getBean(ErrorLogAggregator.class).getWindow());
+        });
+    }
+
+    @Test
+    public void contextFailsToStart_whenWindowIsNotPositive() {
+        contextRunner.withPropertyValues("eidas.client.error-logging.window=0")
+                .run(context -> Assert.assertNotNull(context.getStartupFailure()));
+    }
+
+    @Test
+    public void contextFailsToStart_whenMaxKeysIsNotPositive() {
+        contextRunner.withPropertyValues("eidas.client.error-logging.max-keys=-1")
+                .run(context -> Assert.assertNotNull(context.getStartupFailure()));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(ErrorLogAggregator.class)
+    static class TestConfiguration {
+    }
+}
@@ -0,0 +1,161 @@
+package ee.ria.eidas.client.webapp.logging;
+
+import ee.ria.eidas.client.webapp.logging.ErrorLogAggregator.Category;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ErrorLogAggregatorTest {
+
+    private ErrorLogAggregator errorLogAggregator;
+
+    private Logger logger;
+
+    private CapturingAppender appender;
+
+    @Before
+    public void setUp() {
+        errorLogAggregator = new ErrorLogAggregator();
+        errorLogAggregator.setMaxExemplars(2);
+
+        logger = (Logger) LogManager.getLogger(ErrorLogAggregator.class);
+        appender = new CapturingAppender();
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @After
+    public void tearDown() {
+        logger.removeAppender(appender);
+        appender.stop();
+    }
+
+    @Test
+    public void identicalErrorsAreLoggedAsExemplarsAndSummarized() {
+        for (int i = 0; i < 5; i++) {
+            errorLogAggregator.log(Category.BAD_REQUEST, "RESPONSE_NOT_SIGNED", request("/returnUrl", null), "Invalid SAMLResponse. Response not signed.", null);
+        }
+        Assert.assertEquals(2, appender.messages.size());
+        Assert.assertEquals("Bad request! RESPONSE_NOT_SIGNED: Invalid SAMLResponse. Response not signed.", appender.messages.get(0));
+
+        errorLogAggregator.flush();
+
+        Assert.assertEquals(3, appender.messages.size());
+        Assert.assertEquals("Bad request! 3 identical errors not logged in the last 60 seconds, 5 in total: errorCode=RESPONSE_NOT_SIGNED, endpoint=/returnUrl, country=null",
+                appender.messages.get(2));
+
+        errorLogAggregator.flush();
+        Assert.assertEquals(3, appender.messages.size());
+    }
+
+    @Test
+    public void countingStartsOverInEveryWindow() {
+        for (int i = 0; i < 3; i++) {
+            errorLogAggregator.log(Category.BAD_REQUEST, "RESPONSE_NOT_SIGNED", request("/returnUrl", null), "Invalid SAMLResponse. Response not signed.", null);
+        }
+        errorLogAggregator.flush();
+        Assert.assertEquals(3, appender.messages.size());
+
+        for (int i = 0; i < 4; i++) {
+            errorLogAggregator.log(Category.BAD_REQUEST, "RESPONSE_NOT_SIGNED", request("/returnUrl", null), "Invalid SAMLResponse. Response not signed.", null);
+        }
+        Assert.assertEquals(5, appender.messages.size());
+        errorLogAggregator.flush();
+
+        Assert.assertEquals(6, appender.messages.size());
+        Assert.assertTrue(appender.messages.get(5).startsWith("Bad request! 2 identical errors not logged in the last 60 seconds, 4 in total"));
+    }
+
+    @Test
+    public void errorsAreAggregatedByEndpointAndCountry() {
+        errorLogAggregator.setMaxExemplars(1);
+
+        errorLogAggregator.log(Category.BAD_REQUEST, "InvalidRequestException", request("/login", "EE"), "Invalid country!", null);
+        errorLogAggregator.log(Category.BAD_REQUEST, "InvalidRequestException", request("/login", "ee"), "Invalid country!", null);
+        errorLogAggregator.log(Category.BAD_REQUEST, "InvalidRequestException", request("/login", "CA"), "Invalid country!", null);
+        errorLogAggregator.log(Category.BAD_REQUEST, "InvalidRequestException", request("/login", "<script>"), "Invalid country!", null);
+        errorLogAggregator.log(Category.BAD_REQUEST, "InvalidRequestException", request("/returnUrl", "EE"), "Invalid country!", null);
+        Assert.assertEquals(4, appender.messages.size());
+
+        errorLogAggregator.flush();
+
+        Assert.assertEquals(5, appender.messages.size());
+        Assert.assertTrue(appender.messages.get(4).endsWith("errorCode=InvalidRequestException, endpoint=/login, country=EE"));
+    }
+
+    @Test
+    public void exemplarLimitCanBeSetPerCategory() {
+        errorLogAggregator.setMaxExemplarsPerCategory(Collections.singletonMap(Category.AUTHENTICATION_FAILED, 0));
+
+        errorLogAggregator.log(Category.AUTHENTICATION_FAILED, "AuthenticationFailedException", request("/returnUrl", null), "Authentication failed.", null);
+        errorLogAggregator.log(Category.METHOD_NOT_ALLOWED, "PUT", request("/login", null), "Request method 'PUT' not supported", null);
+        Assert.assertEquals(Collections.singletonList("Method not allowed! PUT: Request method 'PUT' not supported"), appender.messages);
+
+        errorLogAggregator.flush();
+
+        Assert.assertEquals(2, appender.messages.size());
+        Assert.assertTrue(appender.messages.get(1).startsWith("Authentication failed! 1 identical errors not logged"));
+    }
+
+    @Test
+    public void errorsExceedingKeyLimitAreCountedTogether() {
+        errorLogAggregator.setMaxExemplars(0);
+        errorLogAggregator.setMaxKeys(1);
+
+        errorLogAggregator.log(Category.BAD_REQUEST, "A", request("/login", null), "a", null);
+        errorLogAggregator.log(Category.BAD_REQUEST, "B", request("/login", null), "b", null);
+        errorLogAggregator.log(Category.BAD_REQUEST, "C", request("/login", null), "c", null);
+        errorLogAggregator.flush();
+
+        List<String> summaries = appender.messages.stream().sorted().collect(Collectors.toList());
+        Assert.assertEquals(2, summaries.size());
+        Assert.assertTrue(summaries.get(0).endsWith("1 in total: errorCode=A, endpoint=/login, country=null"));
+        Assert.assertTrue(summaries.get(1).endsWith("2 in total: errorCode=*, endpoint=*, country=*"));
+    }
+
+    @Test
+    public void disabledAggregationLogsEveryError() {
+        errorLogAggregator.setEnabled(false);
+
+        for (int i = 0; i < 5; i++) {
+            errorLogAggregator.log(Category.BAD_REQUEST, "RESPONSE_NOT_SIGNED", request("/returnUrl", null), "Invalid SAMLResponse. Response not signed.", null);
+        }
+        errorLogAggregator.flush();
+
+        Assert.assertEquals(5, appender.messages.size());
+    }
+
+    private static MockHttpServletRequest request(String uri, String country) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        if (country != null) {
+            request.setParameter("Country", country);
+        }
+        return request;
+    }
+
+    private static final class CapturingAppender extends AbstractAppender {
+
+        private final List<String> messages = new ArrayList<>();
+
+        private CapturingAppender() {
+            super("capturing", null, null, true, Property.EMPTY_ARRAY);
+        }
+
+        @Override
+        public void append(LogEvent event) {
+            messages.add(event.getMessage().getFormattedMessage());
+        }
+    }
+}
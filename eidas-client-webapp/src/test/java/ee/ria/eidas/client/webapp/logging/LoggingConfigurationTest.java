@@ -33,4 +33,10 @@ public class LoggingConfigurationTest {
         Assert.assertEquals(Ordered.HIGHEST_PRECEDENCE + 1, filterRegistrationBean.getOrder());
     }
 
+    @Test
+    public void verifyMdcTaskDecoratorBeanPresence() {
+        Object bean = applicationContext.getBean("mdcTaskDecorator");
+        Assert.assertEquals(MDCTaskDecorator.class, bean.getClass());
+    }
+
 }
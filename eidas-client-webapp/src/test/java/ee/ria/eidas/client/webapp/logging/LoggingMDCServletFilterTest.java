@@ -1,6 +1,5 @@
 package ee.ria.eidas.client.webapp.logging;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,14 +12,15 @@ import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
-import javax.servlet.http.HttpSession;
+import javax.servlet.http.Cookie;
 import java.io.IOException;
-import java.util.Base64;
 import java.util.function.BiConsumer;
 
 public class LoggingMDCServletFilterTest {
 
     private static final String REQUEST_ID_REGEX = "[A-Z0-9]{16}";
+    private static final String CORRELATION_ID_REGEX = "[A-Za-z0-9_-]{43}";
+    private static final String CORRELATION_ID = "n4bQgYhMfWWaL-qgxVrQFaO_TxsrC4Is0V1sJbDv3SA";
 
     private LoggingMDCServletFilter servletFilter;
 
@@ -81,42 +81,80 @@ public class LoggingMDCServletFilterTest {
     }
 
     @Test
-    public void doFilterShouldGenerateSessionIdHashFromSessionIntoMdc() throws IOException, ServletException {
-        final MockHttpServletRequest request = new MockHttpServletRequest();
+    public void doFilterShouldGetCorrelationIdFromCookieAndPutIntoMdc() throws IOException, ServletException {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/returnUrl");
         final MockHttpServletResponse response = new MockHttpServletResponse();
 
-        request.setSession(new MockHttpSession(null, "someSessionIdValue"));
-        final String sessionIdHash = Base64.getUrlEncoder().encodeToString(DigestUtils.sha256("someSessionIdValue"));
+        request.setServletPath("/returnUrl");
+        request.setCookies(new Cookie("EIDAS_CORRELATION_ID", CORRELATION_ID));
 
         FilterChain filterChain = mockFilterChain(request, response, (req, resp) -> {
-            Assert.assertEquals(sessionIdHash, MDC.get("sessionId"));
+            Assert.assertEquals(CORRELATION_ID, MDC.get("sessionId"));
             verifyAttributePresenceInMDC("request", "requestId");
         });
 
         servletFilter.doFilter(request, response, filterChain);
         verifyMDCIsEmpty();
+        Assert.assertNull(request.getSession(false));
+        Assert.assertNull(response.getHeader("Set-Cookie"));
     }
 
     @Test
-    public void doFilterShouldGenerateSessionAndSessionIdHashIntoMdc() throws IOException, ServletException {
-        final MockHttpServletRequest request = new MockHttpServletRequest();
+    public void doFilterShouldIgnoreInvalidCorrelationIdCookie() throws IOException, ServletException {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/returnUrl");
         final MockHttpServletResponse response = new MockHttpServletResponse();
 
-        request.setSession(null);
+        request.setServletPath("/returnUrl");
+        request.setCookies(new Cookie("EIDAS_CORRELATION_ID", "\"}, \"level\":\"FATAL"));
 
         FilterChain filterChain = mockFilterChain(request, response, (req, resp) -> {
-            final HttpSession session = request.getSession(false);
-            Assert.assertNotNull("Session cannot be null!", session);
+            String sessionId = MDC.get("sessionId");
+            Assert.assertTrue(
+                    String.format("Expected sessionId to match \"%s\", but found \"%s\"!", CORRELATION_ID_REGEX, sessionId),
+                    sessionId.matches(CORRELATION_ID_REGEX));
+        });
+
+        servletFilter.doFilter(request, response, filterChain);
+        verifyMDCIsEmpty();
+        Assert.assertNull(response.getHeader("Set-Cookie"));
+    }
+
+    @Test
+    public void doFilterShouldGenerateCorrelationIdWithoutCreatingSession() throws IOException, ServletException {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/heartbeat");
+        final MockHttpServletResponse response = new MockHttpServletResponse();
 
-            final String sessionId = session.getId();
-            final String sessionIdHash = Base64.getUrlEncoder().encodeToString(DigestUtils.sha256(sessionId));
-            Assert.assertEquals(sessionIdHash, MDC.get("sessionId"));
+        request.setServletPath("/heartbeat");
 
+        FilterChain filterChain = mockFilterChain(request, response, (req, resp) -> {
+            String sessionId = MDC.get("sessionId");
+            Assert.assertTrue(
+                    String.format("Expected sessionId to match \"%s\", but found \"%s\"!", CORRELATION_ID_REGEX, sessionId),
+                    sessionId.matches(CORRELATION_ID_REGEX));
             verifyAttributePresenceInMDC("request", "requestId");
         });
 
         servletFilter.doFilter(request, response, filterChain);
         verifyMDCIsEmpty();
+        Assert.assertNull(request.getSession(false));
+        Assert.assertNull(response.getHeader("Set-Cookie"));
+    }
+
+    @Test
+    public void doFilterShouldIssueCorrelationIdCookieOnLogin() throws IOException, ServletException {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/login");
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        request.setServletPath("/login");
+        request.setSecure(true);
+        final String[] sessionId = new String[1];
+
+        FilterChain filterChain = mockFilterChain(request, response, (req, resp) -> sessionId[0] = MDC.get("sessionId"));
+
+        servletFilter.doFilter(request, response, filterChain);
+        verifyMDCIsEmpty();
+        Assert.assertNull(request.getSession(false));
+        Assert.assertEquals("EIDAS_CORRELATION_ID=" + sessionId[0] + "; Path=/; HttpOnly; Secure; SameSite=None", response.getHeader("Set-Cookie"));
     }
 
     @Test
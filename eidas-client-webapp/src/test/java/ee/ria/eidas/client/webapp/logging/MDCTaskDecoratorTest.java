@@ -0,0 +1,53 @@
+package ee.ria.eidas.client.webapp.logging;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class MDCTaskDecoratorTest {
+
+    private final MDCTaskDecorator taskDecorator = new MDCTaskDecorator();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        MDC.clear();
+    }
+
+    @Test
+    public void decoratedTaskShouldRunWithMdcOfSubmittingThread() throws Exception {
+        executor.submit(() -> MDC.put("sessionId", "staleSessionIdValue")).get(1, TimeUnit.SECONDS);
+
+        MDC.put("requestId", "someRequestIdValue");
+        final String[] seen = new String[2];
+        Runnable task = taskDecorator.decorate(() -> {
+            seen[0] = MDC.get("requestId");
+            seen[1] = MDC.get("sessionId");
+        });
+        MDC.clear();
+
+        executor.submit(task).get(1, TimeUnit.SECONDS);
+
+        Assert.assertEquals("someRequestIdValue", seen[0]);
+        Assert.assertNull(seen[1]);
+        Future<String> restored = executor.submit(() -> MDC.get("sessionId"));
+        Assert.assertEquals("staleSessionIdValue", restored.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void decoratedTaskShouldRunWithEmptyMdcWhenSubmittingThreadHasNone() throws Exception {
+        executor.submit(() -> MDC.put("requestId", "staleRequestIdValue")).get(1, TimeUnit.SECONDS);
+
+        Future<?> result = executor.submit(taskDecorator.decorate(() -> Assert.assertNull(MDC.get("requestId"))));
+
+        result.get(1, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,76 @@
+package ee.ria.eidas.client.webapp.security;
+
+import ee.ria.eidas.client.metadata.IDPMetadataResolver;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+public class MetadataReadinessFilterTest {
+
+    private static final int TEST_RETRY_AFTER = 10;
+
+    private IDPMetadataResolver idpMetadataResolver;
+
+    private MetadataReadinessFilter filter;
+
+    @Before
+    public void setUp() {
+        this.idpMetadataResolver = Mockito.mock(IDPMetadataResolver.class);
+        this.filter = new MetadataReadinessFilter(idpMetadataResolver, TEST_RETRY_AFTER);
+    }
+
+    @After
+    public void cleanUp() {
+        this.filter.destroy();
+        this.filter = null;
+    }
+
+    @Test
+    public void doFilterShouldDoNothingWhenMetadataIsReady() throws Exception {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        FilterChain filterChain = Mockito.mock(FilterChain.class);
+
+        Mockito.doReturn(true).when(idpMetadataResolver).isReady();
+
+        this.filter.doFilter(request, response, filterChain);
+
+        Mockito.verifyNoInteractions(response);
+        Mockito.verify(filterChain, Mockito.times(1))
+                .doFilter(request, response);
+    }
+
+    @Test
+    public void doFilterShouldRespondErrorWhenMetadataIsNotReady() throws Exception {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain filterChain = Mockito.mock(FilterChain.class);
+
+        Mockito.doReturn(false).when(idpMetadataResolver).isReady();
+
+        this.filter.doFilter(request, response, filterChain);
+
+        Mockito.verifyNoInteractions(filterChain);
+        Assert.assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        Assert.assertEquals("application/json;charset=UTF-8", response.getContentType());
+        Assert.assertEquals(String.valueOf(TEST_RETRY_AFTER), response.getHeader("Retry-After"));
+        JSONAssert.assertEquals(
+                "{" +
+                        "\"error\": \"Service Unavailable\", " +
+                        "\"message\": \"IDP metadata is not available yet. Please try again later.\"" +
+                        "}",
+                response.getContentAsString(),
+                true
+        );
+    }
+
+}
@@ -0,0 +1,125 @@
+package ee.ria.eidas.client.webapp.security;
+
+import ee.ria.eidas.client.webapp.logging.ErrorLogAggregator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+
+public class RateLimitFilterTest {
+
+    private long now;
+
+    private ErrorLogAggregator errorLogAggregator;
+
+    private RateLimitFilter filter;
+
+    @Before
+    public void setUp() {
+        this.errorLogAggregator = Mockito.mock(ErrorLogAggregator.class);
+        this.filter = new RateLimitFilter(
+                new RateLimiter("client", new RateLimitProperties.Limit(1, 2), 100, () -> now),
+                new RateLimiter("country", new RateLimitProperties.Limit(1, 3), 100, () -> now),
+                errorLogAggregator);
+    }
+
+    @After
+    public void cleanUp() {
+        this.filter.destroy();
+        this.filter = null;
+    }
+
+    @Test
+    public void doFilterShouldDoNothingWhenRateLimitIsNotExceeded() throws Exception {
+        MockHttpServletRequest request = loginRequest("10.0.0.1", "EE");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain filterChain = Mockito.mock(FilterChain.class);
+
+        this.filter.doFilter(request, response, filterChain);
+
+        Mockito.verify(filterChain, Mockito.times(1))
+                .doFilter(request, response);
+        Assert.assertEquals(HttpStatus.OK.value(), response.getStatus());
+    }
+
+    @Test
+    public void doFilterShouldRespondErrorWhenClientRateLimitIsExceeded() throws Exception {
+        FilterChain filterChain = Mockito.mock(FilterChain.class);
+        this.filter.doFilter(loginRequest("10.0.0.1", "EE"), new MockHttpServletResponse(), filterChain);
+        this.filter.doFilter(loginRequest("10.0.0.1", "EE"), new MockHttpServletResponse(), filterChain);
+
+        MockHttpServletRequest request = loginRequest("10.0.0.1", "EE");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        this.filter.doFilter(request, response, filterChain);
+
+        Mockito.verify(filterChain, Mockito.never()).doFilter(request, response);
+        verifyErroneousResponse(response);
+        Mockito.verify(errorLogAggregator).log(ErrorLogAggregator.Category.TOO_MANY_REQUESTS, RateLimitFilter.CLIENT_RATE_LIMIT_EXCEEDED,
+                request, RateLimitFilter.ERROR_MESSAGE, null);
+    }
+
+    @Test
+    public void doFilterShouldRespondErrorWhenCountryRateLimitIsExceeded() throws Exception {
+        FilterChain filterChain = Mockito.mock(FilterChain.class);
+        this.filter.doFilter(loginRequest("10.0.0.1", "EE"), new MockHttpServletResponse(), filterChain);
+        this.filter.doFilter(loginRequest("10.0.0.2", "ee"), new MockHttpServletResponse(), filterChain);
+        this.filter.doFilter(loginRequest("10.0.0.3", "EE"), new MockHttpServletResponse(), filterChain);
+        this.filter.doFilter(loginRequest("10.0.0.4", "CA"), new MockHttpServletResponse(), filterChain);
+
+        MockHttpServletRequest request = loginRequest("10.0.0.5", "EE");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        this.filter.doFilter(request, response, filterChain);
+
+        Mockito.verify(filterChain, Mockito.times(4)).doFilter(Mockito.any(), Mockito.any());
+        verifyErroneousResponse(response);
+        Mockito.verify(errorLogAggregator).log(ErrorLogAggregator.Category.TOO_MANY_REQUESTS, RateLimitFilter.COUNTRY_RATE_LIMIT_EXCEEDED,
+                request, RateLimitFilter.ERROR_MESSAGE, null);
+    }
+
+    @Test
+    public void doFilterShouldNotLimitCountryOnReturnUrl() throws Exception {
+        FilterChain filterChain = Mockito.mock(FilterChain.class);
+
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/returnUrl");
+            request.setServletPath("/returnUrl");
+            request.setRemoteAddr("10.0.0." + i);
+            request.setParameter("Country", "EE");
+            this.filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        }
+
+        Mockito.verify(filterChain, Mockito.times(5)).doFilter(Mockito.any(), Mockito.any());
+        Mockito.verifyNoInteractions(errorLogAggregator);
+    }
+
+    private static MockHttpServletRequest loginRequest(String remoteAddress, String country) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/login");
+        request.setServletPath("/login");
+        request.setRemoteAddr(remoteAddress);
+        request.setParameter("Country", country);
+        return request;
+    }
+
+    private static void verifyErroneousResponse(final MockHttpServletResponse response) throws Exception {
+        Assert.assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+        Assert.assertEquals("application/json;charset=UTF-8", response.getContentType());
+        Assert.assertEquals("1", response.getHeader("Retry-After"));
+
+        JSONAssert.assertEquals(
+                "{" +
+                        "\"error\": \"Too Many Requests\", " +
+                        "\"message\": \"Too many requests. Please try again later.\"" +
+                        "}",
+                response.getContentAsString(),
+                true
+        );
+    }
+
+}
@@ -0,0 +1,111 @@
+package ee.ria.eidas.client.webapp.security;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+
+    private static final long EMISSION_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private long now;
+
+    private RateLimiter rateLimiter;
+
+    @Before
+    public void setUp() {
+        now = 0;
+        rateLimiter = new RateLimiter("client", new RateLimitProperties.Limit(10, 3), 100, () -> now);
+    }
+
+    @Test
+    public void tryAcquireShouldAdmitBurstAndThenRejectUntilTokenIsRefilled() {
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.1"));
+        }
+        Assert.assertEquals(EMISSION_INTERVAL, rateLimiter.tryAcquire("127.0.0.1"));
+        Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.2"));
+
+        now += EMISSION_INTERVAL;
+        Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.1"));
+        Assert.assertEquals(EMISSION_INTERVAL, rateLimiter.tryAcquire("127.0.0.1"));
+    }
+
+    @Test
+    public void tryAcquireShouldAlwaysAdmitWhenRateIsZero() {
+        rateLimiter = new RateLimiter("client", new RateLimitProperties.Limit(0, 1), 100, () -> now);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.1"));
+        }
+        Assert.assertFalse(rateLimiter.isEnabled());
+        Assert.assertEquals(0, rateLimiter.size());
+    }
+
+    @Test
+    public void newKeysShouldNotBeLimitedWhenTableIsFull() {
+        rateLimiter = new RateLimiter("client", new RateLimitProperties.Limit(10, 1), 2, () -> now);
+
+        Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.1"));
+        Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.2"));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.1." + i));
+            Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.3"));
+        }
+        Assert.assertEquals(2, rateLimiter.size());
+        Assert.assertEquals(EMISSION_INTERVAL, rateLimiter.tryAcquire("127.0.0.1"));
+    }
+
+    @Test
+    public void newKeysShouldBeLimitedAgainAfterExpiredBucketsAreEvicted() {
+        rateLimiter = new RateLimiter("client", new RateLimitProperties.Limit(10, 1), 1, () -> now);
+        rateLimiter.tryAcquire("127.0.0.1");
+        Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.2"));
+
+        now += EMISSION_INTERVAL;
+        rateLimiter.evictExpired();
+
+        Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.2"));
+        Assert.assertEquals(EMISSION_INTERVAL, rateLimiter.tryAcquire("127.0.0.2"));
+    }
+
+    @Test
+    public void evictExpiredShouldRemoveRefilledBuckets() {
+        rateLimiter.tryAcquire("127.0.0.1");
+        rateLimiter.tryAcquire("127.0.0.1");
+        rateLimiter.tryAcquire("127.0.0.2");
+
+        now += EMISSION_INTERVAL;
+        rateLimiter.evictExpired();
+        Assert.assertEquals(1, rateLimiter.size());
+
+        now += EMISSION_INTERVAL;
+        rateLimiter.evictExpired();
+        Assert.assertEquals(0, rateLimiter.size());
+    }
+
+    @Test
+    public void chargeShouldConsumeTokensAtMostUpToBurst() {
+        rateLimiter.tryAcquire("127.0.0.1");
+
+        rateLimiter.charge("127.0.0.1", 5);
+
+        Assert.assertEquals(EMISSION_INTERVAL, rateLimiter.tryAcquire("127.0.0.1"));
+        now += EMISSION_INTERVAL;
+        Assert.assertEquals(0, rateLimiter.tryAcquire("127.0.0.1"));
+    }
+
+    @Test
+    public void drainAdmittedCountsShouldReturnCountsSincePreviousDrain() {
+        rateLimiter.trackAdmittedCounts();
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.tryAcquire("127.0.0.1");
+        }
+
+        Assert.assertEquals(Collections.singletonMap("127.0.0.1", 3L), rateLimiter.drainAdmittedCounts());
+        Assert.assertEquals(Collections.emptyMap(), rateLimiter.drainAdmittedCounts());
+    }
+}
@@ -1,5 +1,9 @@
 package ee.ria.eidas.client.webapp.security;
 
+import com.hazelcast.core.HazelcastInstance;
+import ee.ria.eidas.client.config.EidasClientProperties;
+import ee.ria.eidas.client.metadata.IDPMetadataResolver;
+import ee.ria.eidas.client.webapp.logging.ErrorLogAggregator;
 import io.restassured.http.Method;
 import org.junit.Assert;
 import org.junit.Before;
@@ -11,6 +15,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.core.Ordered;
@@ -81,6 +86,37 @@ public class SecurityConfigurationTest {
         Assert.assertEquals(Ordered.HIGHEST_PRECEDENCE + 2, bean.getOrder());
     }
 
+    @Test
+    public void metadataReadinessFilterShouldCoverEndpointsDependingOnMetadata() {
+        FilterRegistrationBean bean = configuration.metadataReadinessFilter(Mockito.mock(IDPMetadataResolver.class), new EidasClientProperties());
+        Assert.assertTrue(MetadataReadinessFilter.class.isInstance(bean.getFilter()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("/login", "/returnUrl", "/supportedCountries")), bean.getUrlPatterns());
+        Assert.assertEquals(Ordered.HIGHEST_PRECEDENCE + 4, bean.getOrder());
+    }
+
+    @Test
+    public void rateLimitFilterShouldReturnValidFilter() {
+        RateLimitProperties properties = new RateLimitProperties();
+
+        FilterRegistrationBean bean = configuration.rateLimitFilter(configuration.clientRateLimiter(properties),
+                configuration.countryRateLimiter(properties), Mockito.mock(ErrorLogAggregator.class));
+        Assert.assertTrue(RateLimitFilter.class.isInstance(bean.getFilter()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("/login", "/returnUrl")), bean.getUrlPatterns());
+        Assert.assertEquals(Ordered.HIGHEST_PRECEDENCE + 3, bean.getOrder());
+    }
+
+    @Test
+    public void rateLimitSynchronizerShouldFailWhenHazelcastIsDisabled() {
+        RateLimitProperties properties = new RateLimitProperties();
+        ObjectProvider<HazelcastInstance> hazelcastInstance = Mockito.mock(ObjectProvider.class);
+
+        expectedEx.expect(IllegalStateException.class);
+        expectedEx.expectMessage("Please check your configuration. security.rate-limit.hazelcast-sync-enabled requires eidas.client.hazelcast-enabled");
+
+        configuration.rateLimitSynchronizer(hazelcastInstance, properties,
+                configuration.clientRateLimiter(properties), configuration.countryRateLimiter(properties));
+    }
+
     @Test
     public void authenticationPortFilterShouldFailWhenAllowedPortIsZero() {
         Mockito.doReturn("0").when(environment)